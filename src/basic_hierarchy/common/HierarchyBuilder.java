@@ -3,9 +3,13 @@ package basic_hierarchy.common;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import basic_hierarchy.implementation.BasicNode;
 import basic_hierarchy.interfaces.Hierarchy;
@@ -17,6 +21,13 @@ import basic_hierarchy.interfaces.Node;
  */
 public class HierarchyBuilder
 {
+	/**
+	 * Default number of instances below which centroids are calculated sequentially when a pool is used,
+	 * see {@link #recalculateCentroids(List, boolean, ForkJoinPool, int)}.
+	 */
+	public static final int DEFAULT_CENTROID_SEQUENTIAL_THRESHOLD = 1 << 14;
+
+
 	private HierarchyBuilder()
 	{
 		// Static class -- disallow instantiation.
@@ -41,6 +52,23 @@ public class HierarchyBuilder
 	public static List<? extends Node> buildCompleteHierarchy(
 		BasicNode root, List<BasicNode> nodes,
 		boolean fixBreadthGaps, boolean useSubtree )
+	{
+		return buildCompleteHierarchy( root, nodes, fixBreadthGaps, useSubtree, null );
+	}
+
+	/**
+	 * Builds a complete hierarchy of nodes, like {@link #buildCompleteHierarchy(BasicNode, List, boolean, boolean)},
+	 * and calculates centroids of its nodes in parallel on the specified pool.
+	 * 
+	 * @param pool
+	 *            the pool to calculate centroids on, with {@link #DEFAULT_CENTROID_SEQUENTIAL_THRESHOLD},
+	 *            or null to calculate them sequentially on the calling thread.
+	 * @see #recalculateCentroids(List, boolean, ForkJoinPool, int)
+	 */
+	public static List<? extends Node> buildCompleteHierarchy(
+		BasicNode root, List<BasicNode> nodes,
+		boolean fixBreadthGaps, boolean useSubtree,
+		ForkJoinPool pool )
 	{
 		if ( root == null ) {
 			// Root node was missing from input file - create it artificially.
@@ -56,15 +84,85 @@ public class HierarchyBuilder
 			nodes.addAll( fixBreadthGaps( root, useSubtree ) );
 		}
 
-		for ( BasicNode n : nodes ) {
-			n.recalculateCentroid( useSubtree );
-		}
+		recalculateCentroids( nodes, useSubtree, pool, DEFAULT_CENTROID_SEQUENTIAL_THRESHOLD );
 
 		Collections.sort( nodes, new NodeIdComparator() );
 
 		return nodes;
 	}
 
+	/**
+	 * Recalculates centroids of all nodes in the specified collection.
+	 * <p>
+	 * Subtree centroids are calculated in a single pass over each tree in the collection, starting from
+	 * nodes without a parent, so that each node's instances are summed only once.
+	 * </p>
+	 * 
+	 * @param nodes
+	 *            the nodes whose centroids are to be recalculated, along with all of their ancestors
+	 * @param useSubtree
+	 *            whether the centroid calculation should also include child nodes' instances.
+	 */
+	public static void recalculateCentroids( List<BasicNode> nodes, boolean useSubtree )
+	{
+		recalculateCentroids( nodes, useSubtree, null, DEFAULT_CENTROID_SEQUENTIAL_THRESHOLD );
+	}
+
+	/**
+	 * Recalculates centroids of all nodes in the specified collection, in parallel on the specified pool.
+	 * <p>
+	 * Subtree centroids are calculated in separate tasks for independent subtrees, and node centroids in
+	 * separate tasks for ranges of nodes. Results are the same as when calculating them sequentially.
+	 * </p>
+	 * 
+	 * @param nodes
+	 *            the nodes whose centroids are to be recalculated, along with all of their ancestors
+	 * @param useSubtree
+	 *            whether the centroid calculation should also include child nodes' instances.
+	 * @param pool
+	 *            the pool to calculate centroids on, or null to calculate them sequentially on the calling thread.
+	 * @param sequentialThreshold
+	 *            subtrees (or ranges of nodes) with fewer instances than this are calculated sequentially,
+	 *            in a single task.
+	 */
+	public static void recalculateCentroids(
+		List<BasicNode> nodes, boolean useSubtree,
+		ForkJoinPool pool, int sequentialThreshold )
+	{
+		if ( sequentialThreshold < 1 ) {
+			throw new IllegalArgumentException( "Sequential threshold must be positive: " + sequentialThreshold );
+		}
+
+		if ( !useSubtree ) {
+			if ( pool == null ) {
+				for ( BasicNode n : nodes ) {
+					n.recalculateCentroid( false );
+				}
+			}
+			else {
+				// Copy the nodes, in case they are not in a random access list.
+				List<BasicNode> indexedNodes = new ArrayList<BasicNode>( nodes );
+				long[] instanceOffsets = new long[indexedNodes.size() + 1];
+				for ( int i = 0; i < indexedNodes.size(); ++i ) {
+					instanceOffsets[i + 1] = instanceOffsets[i] + indexedNodes.get( i ).getNodeInstances().size();
+				}
+				pool.invoke( new NodeCentroidsTask( indexedNodes, instanceOffsets, sequentialThreshold, 0, indexedNodes.size() ) );
+			}
+			return;
+		}
+
+		for ( BasicNode n : nodes ) {
+			if ( n.getParent() == null ) {
+				if ( pool == null ) {
+					n.recalculateSubtreeCentroids();
+				}
+				else {
+					n.recalculateSubtreeCentroids( pool, sequentialThreshold );
+				}
+			}
+		}
+	}
+
 	/**
 	 * Updates all nodes in the specified collection so that their actual parent-child relations match
 	 * up with their IDs.
@@ -89,20 +187,25 @@ public class HierarchyBuilder
 			node.setParent( null );
 		}
 
-		for ( int i = 0; i < nodes.size(); ++i ) {
-			BasicNode parent = nodes.get( i );
-			String[] parentBranchIds = getNodeIdSegments( parent );
-
-			for ( int j = 0; j < nodes.size(); ++j ) {
-				if ( i == j ) {
-					// Can't become a parent unto itself.
-					continue;
-				}
+		// Index nodes by their IDs, so that each node's parent can be looked up directly.
+		// Several nodes can share the same ID if their IDs differ only in the prefix.
+		Map<NodeId, List<BasicNode>> nodesById = new HashMap<NodeId, List<BasicNode>>( nodes.size() * 2 );
 
-				BasicNode child = nodes.get( j );
-				String[] childBranchIds = getNodeIdSegments( child );
+		for ( BasicNode node : nodes ) {
+			List<BasicNode> sameId = nodesById.get( node.getNodeId() );
+			if ( sameId == null ) {
+				sameId = new ArrayList<BasicNode>( 1 );
+				nodesById.put( node.getNodeId(), sameId );
+			}
+			sameId.add( node );
+		}
 
-				if ( areIdsParentAndChild( parentBranchIds, childBranchIds ) ) {
+		// Children are visited in order, so that each parent lists its children in the order of the collection.
+		for ( BasicNode child : nodes ) {
+			NodeId parentId = child.getNodeId().getParent();
+			List<BasicNode> parents = parentId == null ? null : nodesById.get( parentId );
+			if ( parents != null ) {
+				for ( BasicNode parent : parents ) {
 					child.setParent( parent );
 					parent.addChild( child );
 				}
@@ -129,35 +232,21 @@ public class HierarchyBuilder
 	{
 		List<BasicNode> artificialNodes = new ArrayList<BasicNode>();
 
+		// Holds the nodes preceding the current one, and all artificial nodes created so far.
+		AncestorIndex index = new AncestorIndex();
+
 		for ( int i = 0; i < nodes.size(); ++i ) {
 			BasicNode node = nodes.get( i );
 
-			if ( node == root ) {
-				// Don't consider the root node.
-				continue;
-			}
-
-			if ( node.getParent() == null ) {
-				String[] nodeBranchIds = getNodeIdSegments( node );
-
-				BasicNode nearestAncestor = null;
-				int candidateHeight = -1;
-
-				// Try to find nearest parent in 'real' nodes
-				BasicNode candidate = findNearestAncestor( nodes, nodeBranchIds, -1, i );
-				if ( candidate != null ) {
-					nearestAncestor = candidate;
-					candidateHeight = getNodeIdSegments( candidate ).length;
-				}
-
-				// Try to find nearest parent in artificial nodes
-				candidate = findNearestAncestor( artificialNodes, nodeBranchIds, candidateHeight );
-				if ( candidate != null ) {
-					nearestAncestor = candidate;
-				}
+			if ( node != root && node.getParent() == null ) {
+				BasicNode nearestAncestor = index.findNearestAncestor( node.getNodeId() );
 
 				if ( nearestAncestor != null ) {
-					artificialNodes.addAll( fixDepthGapsBetween( nearestAncestor, node, useSubtree ) );
+					List<BasicNode> newNodes = fixDepthGapsBetween( nearestAncestor, node, useSubtree );
+					for ( BasicNode newNode : newNodes ) {
+						index.put( newNode, true );
+					}
+					artificialNodes.addAll( newNodes );
 				}
 				else {
 					throw new RuntimeException(
@@ -168,6 +257,8 @@ public class HierarchyBuilder
 					);
 				}
 			}
+
+			index.put( node, false );
 		}
 
 		return artificialNodes;
@@ -188,12 +279,12 @@ public class HierarchyBuilder
 	{
 		List<BasicNode> artificialNodes = new ArrayList<BasicNode>();
 
-		String[] descendantBranchIds = getNodeIdSegments( descendant );
-		int ancestorHeight = getNodeIdSegments( ancestor ).length;
+		NodeId descendantId = descendant.getNodeId();
+		int ancestorHeight = ancestor.getNodeId().getDepth();
 
 		BasicNode newParent = ancestor;
-		for ( int j = ancestorHeight; j < descendantBranchIds.length - 1; ++j ) {
-			String newId = newParent.getId() + Constants.HIERARCHY_BRANCH_SEPARATOR + descendantBranchIds[j];
+		for ( int j = ancestorHeight; j < descendantId.getDepth() - 1; ++j ) {
+			NodeId newId = newParent.getNodeId().getChild( descendantId.getSegment( j ) );
 
 			// Add an empty node
 			BasicNode newNode = new BasicNode(
@@ -271,10 +362,9 @@ public class HierarchyBuilder
 		for ( int i = 0; i < children.size(); ++i ) {
 			Node child = children.get( i );
 
-			String[] ids = getNodeIdSegments( child );
-			if ( ids[ids.length - 1].equals( Integer.toString( i ) ) ) {
+			if ( child.getNodeId().getLastSegment() == i ) {
 				// Assert that the existing nodes have correct relationships.
-				if ( !areNodesAncestorAndDescendant( node, child ) ) {
+				if ( !node.getNodeId().isAncestorOf( child.getNodeId() ) ) {
 					throw new RuntimeException(
 						String.format(
 							"Fatal error while filling breadth gaps! '%s' IS NOT an ancestor of '%s', " +
@@ -286,7 +376,7 @@ public class HierarchyBuilder
 			}
 			else {
 				// i-th node's id isn't equal to i - there's a gap. Fix it.
-				String newId = node.getId() + Constants.HIERARCHY_BRANCH_SEPARATOR + i;
+				NodeId newId = node.getNodeId().getChild( i );
 				BasicNode newNode = new BasicNode( newId, node, useSubtree );
 				newNode.setParent( node );
 
@@ -308,128 +398,102 @@ public class HierarchyBuilder
 	}
 
 	/**
-	 * {@link #findNearestAncestor(List, String[], int, int)}
+	 * Index of nodes by their IDs, used to find the nearest existing ancestor of a node
+	 * without scanning all nodes.
 	 */
-	private static BasicNode findNearestAncestor( List<BasicNode> nodes, String[] childBranchIds, int nearestHeight )
+	private static class AncestorIndex
 	{
-		return findNearestAncestor( nodes, childBranchIds, nearestHeight, -1 );
-	}
-
-	/**
-	 * Attempts to find the nearest existing node that can act as an ancestor to the node specified in argument. IF no such
-	 * node could be found, this method returns null.
-	 * <p>
-	 * This method relies on the nodes' IDs being correctly formatted and allowing us to infer the parent-child relations.
-	 * </p>
-	 * 
-	 * @param nodes
-	 *            list of nodes to search in
-	 * @param childBranchIds
-	 *            ID segments of the node for which we're trying to find an ancestor
-	 * @param nearestHeight
-	 *            number of segments of the best candidate we have available currently (can be negative to mean 'none')
-	 * @param maxIndex
-	 *            max index to search to in the list of nodes, for bounding purposes (can be negative to perform an unbounded search)
-	 * @return the nearest node that can act as an ancestor, or null if not found
-	 */
-	private static BasicNode findNearestAncestor( List<BasicNode> nodes, String[] childBranchIds, int nearestHeight, int maxIndex )
-	{
-		if ( maxIndex < 0 ) {
-			maxIndex = nodes.size();
+		/** The first real node added with each ID. */
+		private final Map<NodeId, BasicNode> realNodes = new HashMap<NodeId, BasicNode>();
+		/** The first artificial node added with each ID. */
+		private final Map<NodeId, BasicNode> artificialNodes = new HashMap<NodeId, BasicNode>();
+
+
+		/**
+		 * Adds the specified node, unless a node of the same kind with the same ID has already been added.
+		 */
+		public void put( BasicNode node, boolean artificial )
+		{
+			Map<NodeId, BasicNode> index = artificial ? artificialNodes : realNodes;
+			if ( !index.containsKey( node.getNodeId() ) ) {
+				index.put( node.getNodeId(), node );
+			}
 		}
 
-		BasicNode result = null;
-
-		for ( int i = 0; i < maxIndex; ++i ) {
-			BasicNode parent = nodes.get( i );
-			String[] parentBranchIds = getNodeIdSegments( parent );
-
-			if ( parentBranchIds.length > nearestHeight ) {
-				if ( areIdsAncestorAndDescendant( parentBranchIds, childBranchIds ) ) {
-					result = parent;
-					nearestHeight = parentBranchIds.length;
+		/**
+		 * Finds the deepest node which can act as an ancestor to the node with the specified ID.
+		 * Real nodes are preferred over artificial nodes of the same depth.
+		 * <p>
+		 * Ancestors are looked up from the deepest one, so the search ends at the first one that exists.
+		 * </p>
+		 * 
+		 * @param childId
+		 *            ID of the node for which we're trying to find an ancestor
+		 * @return the nearest node that can act as an ancestor, or null if not found
+		 */
+		public BasicNode findNearestAncestor( NodeId childId )
+		{
+			for ( NodeId id = childId.getParent(); id != null; id = id.getParent() ) {
+				BasicNode result = realNodes.get( id );
+				if ( result == null ) {
+					result = artificialNodes.get( id );
+				}
+				if ( result != null ) {
+					return result;
 				}
 			}
-		}
 
-		return result;
-	}
-
-	/**
-	 * Convenience method to split a node's IDs into segments for easier processing.
-	 */
-	private static String[] getNodeIdSegments( Node n )
-	{
-		String[] result = n.getId().split( Constants.HIERARCHY_BRANCH_SEPARATOR_REGEX );
-		// Ignore the first index ('gen')
-		return Arrays.copyOfRange( result, 1, result.length );
-	}
-
-	/**
-	 * {@link #areIdsParentAndChild(String[], String[])}
-	 */
-	private static boolean areNodesParentAndChild( Node parent, Node child )
-	{
-		return areIdsParentAndChild(
-			getNodeIdSegments( parent ),
-			getNodeIdSegments( child )
-		);
-	}
-
-	/**
-	 * {@link #areIdsAncestorAndDescendant(String[], String[])}
-	 */
-	private static boolean areNodesAncestorAndDescendant( Node ancestor, Node descendant )
-	{
-		return areIdsAncestorAndDescendant(
-			getNodeIdSegments( ancestor ),
-			getNodeIdSegments( descendant )
-		);
+			return null;
+		}
 	}
 
 	/**
-	 * Checks whether the two IDs represent nodes that are directly related (parent-child).
-	 * This method returns false if both IDs point to the same node.
-	 * 
-	 * @param parentIds
-	 *            ID segments of the node acting as parent
-	 * @param childIds
-	 *            ID segments of the node acting as child
-	 * @return whether the two nodes are in a direct parent-child relationship.
+	 * Recalculates centroids of a range of nodes, using only their own instances. Ranges holding enough instances
+	 * are split in two, so that the halves hold roughly the same number of instances.
 	 */
-	private static boolean areIdsParentAndChild( String[] parentIds, String[] childIds )
+	private static class NodeCentroidsTask extends RecursiveAction
 	{
-		// Check that the child is exactly one level 'deeper' than the parent, and then
-		// compare the node IDs to verify that they are related.
-		return ( parentIds.length + 1 == childIds.length ) &&
-			areIdsAncestorAndDescendant( parentIds, childIds );
-	}
+		private static final long serialVersionUID = 1L;
+
+		private final List<BasicNode> nodes;
+		/** Number of instances held by nodes preceding each index; has one more element than {@link #nodes}. */
+		private final long[] instanceOffsets;
+		private final int sequentialThreshold;
+		private final int from;
+		private final int to;
+
+
+		public NodeCentroidsTask( List<BasicNode> nodes, long[] instanceOffsets, int sequentialThreshold, int from, int to )
+		{
+			this.nodes = nodes;
+			this.instanceOffsets = instanceOffsets;
+			this.sequentialThreshold = sequentialThreshold;
+			this.from = from;
+			this.to = to;
+		}
 
-	/**
-	 * Checks whether the two IDs represent nodes that are indirectly related (ancestor-descendant).
-	 * This method returns false if both IDs point to the same node.
-	 * 
-	 * @param ancestorIds
-	 *            ID segments of the node acting as ancestor
-	 * @param descendantIds
-	 *            ID segments of the node acting as descendant
-	 * @return whether the two nodes are in a ancestor-descendant relationship.
-	 */
-	private static boolean areIdsAncestorAndDescendant( String[] ancestorIds, String[] descendantIds )
-	{
-		if ( ancestorIds.length < descendantIds.length ) {
-			for ( int i = 0; i < ancestorIds.length; ++i ) {
-				if ( !ancestorIds[i].equals( descendantIds[i] ) ) {
-					return false;
+		@Override
+		protected void compute()
+		{
+			if ( to - from < 2 || instanceOffsets[to] - instanceOffsets[from] < sequentialThreshold ) {
+				for ( int i = from; i < to; ++i ) {
+					nodes.get( i ).recalculateCentroid( false );
 				}
+				return;
 			}
 
-			return true;
-		}
-		else {
-			// 'ancestor' ID has more segments than 'descendant', which means there's no way
-			// it can be an ancestor to the other node.
-			return false;
+			// Split at the node holding the middle instance, but leave at least one node in each half.
+			long middle = ( instanceOffsets[from] + instanceOffsets[to] ) / 2;
+			int split = Arrays.binarySearch( instanceOffsets, from, to + 1, middle );
+			if ( split < 0 ) {
+				split = -split - 1;
+			}
+			split = Math.max( from + 1, Math.min( to - 1, split ) );
+
+			invokeAll(
+				new NodeCentroidsTask( nodes, instanceOffsets, sequentialThreshold, from, split ),
+				new NodeCentroidsTask( nodes, instanceOffsets, sequentialThreshold, split, to )
+			);
 		}
 	}
 }
@@ -0,0 +1,119 @@
+package basic_hierarchy.common;
+
+import basic_hierarchy.implementation.BasicInstance;
+import basic_hierarchy.implementation.FloatInstance;
+import basic_hierarchy.implementation.SparseInstance;
+import basic_hierarchy.interfaces.Instance;
+
+
+/**
+ * Determines how readers store feature values of the instances they load.
+ */
+public enum InstanceStorage
+{
+	/** Feature values are kept in double precision, in {@link BasicInstance}s. */
+	DOUBLE
+	{
+		@Override
+		public Instance createInstance( String instanceName, String nodeId, double[] data, String trueClass )
+		{
+			return new BasicInstance( instanceName, nodeId, data, trueClass );
+		}
+
+		@Override
+		public boolean retainsData()
+		{
+			return true;
+		}
+	},
+
+	/**
+	 * Feature values are rounded to single precision, and kept in {@link FloatInstance}s.
+	 * This halves the memory needed for feature values. Centroids are still computed in double precision.
+	 */
+	FLOAT
+	{
+		@Override
+		public Instance createInstance( String instanceName, String nodeId, double[] data, String trueClass )
+		{
+			return new FloatInstance( instanceName, nodeId, data, trueClass );
+		}
+
+		@Override
+		public boolean retainsData()
+		{
+			return false;
+		}
+	},
+
+	/**
+	 * Only non-zero feature values are kept, in {@link SparseInstance}s. This saves memory and speeds up
+	 * centroid computation for data in which most values are zero.
+	 */
+	SPARSE
+	{
+		@Override
+		public Instance createInstance( String instanceName, String nodeId, double[] data, String trueClass )
+		{
+			return new SparseInstance( instanceName, nodeId, data, trueClass );
+		}
+
+		@Override
+		public Instance createSparseInstance(
+			String instanceName, String nodeId,
+			int dimension, int[] indices, double[] values, int count,
+			String trueClass )
+		{
+			int[] instanceIndices = new int[count];
+			double[] instanceValues = new double[count];
+			System.arraycopy( indices, 0, instanceIndices, 0, count );
+			System.arraycopy( values, 0, instanceValues, 0, count );
+			return new SparseInstance( instanceName, nodeId, dimension, instanceIndices, instanceValues, trueClass );
+		}
+
+		@Override
+		public boolean retainsData()
+		{
+			return false;
+		}
+	};
+
+
+	/**
+	 * Creates an instance storing its feature values in this format.
+	 *
+	 * @param data
+	 *            feature values of the instance. Retained by the instance only if {@link #retainsData()} is true.
+	 */
+	public abstract Instance createInstance( String instanceName, String nodeId, double[] data, String trueClass );
+
+	/**
+	 * Creates an instance storing its feature values in this format, out of sparse feature values.
+	 *
+	 * @param dimension
+	 *            number of feature values of the instance, including zeros
+	 * @param indices
+	 *            indices of the non-zero feature values, in ascending order. The array is not retained.
+	 * @param values
+	 *            the non-zero feature values, corresponding to {@code indices}. The array is not retained.
+	 * @param count
+	 *            number of non-zero feature values, at the beginning of {@code indices} and {@code values}
+	 */
+	public Instance createSparseInstance(
+		String instanceName, String nodeId,
+		int dimension, int[] indices, double[] values, int count,
+		String trueClass )
+	{
+		double[] data = new double[dimension];
+		for ( int i = 0; i < count; ++i ) {
+			data[indices[i]] = values[i];
+		}
+		return createInstance( instanceName, nodeId, data, trueClass );
+	}
+
+	/**
+	 * @return true if instances created by {@link #createInstance(String, String, double[], String)} keep
+	 *         the array they are given. Otherwise the values are copied, and the array can be reused.
+	 */
+	public abstract boolean retainsData();
+}
@@ -0,0 +1,283 @@
+package basic_hierarchy.common;
+
+import java.util.Arrays;
+
+
+/**
+ * Parsed node id, such as '{@code gen.0.3.1}'.
+ * <p>
+ * The id is kept as its numeric segments following the prefix ('{@code gen}'), which are parsed only once.
+ * Ids are immutable, and are compared by their segments only, ignoring the prefix, so that ordering
+ * is the same as that of {@link StringIdComparator}.
+ * Ancestors of an id share its array of segments, so walking up the hierarchy does not copy them.
+ * </p>
+ */
+public final class NodeId implements Comparable<NodeId>
+{
+	private static final char SEPARATOR = Constants.HIERARCHY_BRANCH_SEPARATOR.charAt( 0 );
+
+	/** Text of this id, or of a descendant whose first {@link #depth} segments are those of this id. */
+	private final String source;
+	/** Segments of {@link #source}, of which only the first {@link #depth} belong to this id. */
+	private final int[] path;
+	private final int depth;
+	private final int hash;
+	private String text;
+
+
+	private NodeId( String source, int[] path, int depth )
+	{
+		this.source = source;
+		this.path = path;
+		this.depth = depth;
+
+		int result = 1;
+		for ( int i = 0; i < depth; ++i ) {
+			result = 31 * result + path[i];
+		}
+		this.hash = result;
+
+		if ( depth == path.length ) {
+			text = source;
+		}
+	}
+
+	/**
+	 * Parses the specified node id. The prefix (up to the first dot) can be anything, and each following
+	 * segment is parsed with {@link Integer#parseInt(String)}.
+	 *
+	 * @param id
+	 *            the id to parse
+	 * @return the parsed id
+	 * @throws NumberFormatException
+	 *             if one of the segments is not an integer
+	 */
+	public static NodeId parse( String id )
+	{
+		int start = id.indexOf( SEPARATOR );
+		if ( start < 0 ) {
+			return new NodeId( id, new int[0], 0 );
+		}
+
+		int segmentCount = 0;
+		for ( int i = start; i >= 0; i = id.indexOf( SEPARATOR, i + 1 ) ) {
+			++segmentCount;
+		}
+
+		int[] path = new int[segmentCount];
+		for ( int i = 0; i < segmentCount; ++i ) {
+			int end = id.indexOf( SEPARATOR, start + 1 );
+			if ( end < 0 ) {
+				end = id.length();
+			}
+			path[i] = Integer.parseInt( id.substring( start + 1, end ) );
+			start = end;
+		}
+
+		return new NodeId( id, path, segmentCount );
+	}
+
+	/**
+	 * Parses the specified string as an id of a generated node, ie. '{@code gen}' followed by one or more segments
+	 * of digits, each preceded by a dot. Accepts exactly the same strings as the regular expression {@code gen(\.\d+)+}.
+	 *
+	 * @param id
+	 *            the string to parse
+	 * @return the parsed id, or null if the string is not a valid node id.
+	 * @throws NumberFormatException
+	 *             if the string is a valid node id, but one of its segments does not fit in an {@code int}
+	 */
+	public static NodeId parseGenerated( String id )
+	{
+		int length = id.length();
+		int start = Constants.NODES_PREFIX.length();
+		if ( !id.startsWith( Constants.NODES_PREFIX ) || length == start || id.charAt( start ) != SEPARATOR ) {
+			return null;
+		}
+
+		// Validate the whole string first, so that invalid ids are never reported as overflows.
+		int segmentCount = 0;
+		for ( int i = start; i < length; ++i ) {
+			char c = id.charAt( i );
+
+			if ( c == SEPARATOR ) {
+				if ( i + 1 == length || id.charAt( i + 1 ) == SEPARATOR ) {
+					// Empty segment.
+					return null;
+				}
+				++segmentCount;
+			}
+			else if ( c < '0' || c > '9' ) {
+				return null;
+			}
+		}
+
+		int[] path = new int[segmentCount];
+		int segment = -1;
+
+		for ( int i = start; i < length; ++i ) {
+			char c = id.charAt( i );
+
+			if ( c == SEPARATOR ) {
+				++segment;
+			}
+			else {
+				int value = path[segment] * 10 + ( c - '0' );
+				if ( value < 0 || path[segment] > Integer.MAX_VALUE / 10 ) {
+					// Let the JDK report the overflow.
+					int end = id.indexOf( SEPARATOR, i );
+					Integer.parseInt( id.substring( id.lastIndexOf( SEPARATOR, i ) + 1, end < 0 ? length : end ) );
+				}
+				path[segment] = value;
+			}
+		}
+
+		return new NodeId( id, path, segmentCount );
+	}
+
+	/**
+	 * @return number of segments of this id, excluding the prefix. The root node ('{@code gen.0}') has depth 1.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * @param index
+	 *            index of the segment, excluding the prefix
+	 * @return the specified segment of this id.
+	 */
+	public int getSegment( int index )
+	{
+		if ( index < 0 || index >= depth ) {
+			throw new IndexOutOfBoundsException( "Segment index: " + index + ", depth: " + depth );
+		}
+		return path[index];
+	}
+
+	/**
+	 * @return the last segment of this id, ie. the index of the node among its siblings.
+	 */
+	public int getLastSegment()
+	{
+		return getSegment( depth - 1 );
+	}
+
+	/**
+	 * @return id of the parent node, or null if this id has no segments.
+	 */
+	public NodeId getParent()
+	{
+		return depth == 0 ? null : getAncestor( depth - 1 );
+	}
+
+	/**
+	 * @param ancestorDepth
+	 *            depth of the ancestor, not greater than the depth of this id
+	 * @return id of the ancestor at the specified depth.
+	 */
+	public NodeId getAncestor( int ancestorDepth )
+	{
+		if ( ancestorDepth < 0 || ancestorDepth > depth ) {
+			throw new IndexOutOfBoundsException( "Ancestor depth: " + ancestorDepth + ", depth: " + depth );
+		}
+		return ancestorDepth == depth ? this : new NodeId( source, path, ancestorDepth );
+	}
+
+	/**
+	 * @param segment
+	 *            last segment of the child id
+	 * @return id of the child node with the specified index.
+	 */
+	public NodeId getChild( int segment )
+	{
+		int[] childPath = Arrays.copyOf( path, depth + 1 );
+		childPath[depth] = segment;
+		return new NodeId( toString() + SEPARATOR + segment, childPath, depth + 1 );
+	}
+
+	/**
+	 * @return true if this id is an ancestor of the specified id. An id is not its own ancestor.
+	 */
+	public boolean isAncestorOf( NodeId descendant )
+	{
+		if ( depth >= descendant.depth ) {
+			return false;
+		}
+		for ( int i = 0; i < depth; ++i ) {
+			if ( path[i] != descendant.path[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if this id is the parent of the specified id.
+	 */
+	public boolean isParentOf( NodeId child )
+	{
+		return depth + 1 == child.depth && isAncestorOf( child );
+	}
+
+	@Override
+	public int compareTo( NodeId other )
+	{
+		int end = Math.min( depth, other.depth );
+		for ( int i = 0; i < end; ++i ) {
+			if ( path[i] != other.path[i] ) {
+				// Id with smaller generation index is 'smaller'.
+				return path[i] < other.path[i] ? -1 : 1;
+			}
+		}
+
+		// Both ids have equal segments, so consider the shorter id as 'smaller'.
+		return depth - other.depth;
+	}
+
+	@Override
+	public boolean equals( Object o )
+	{
+		if ( this == o ) {
+			return true;
+		}
+		if ( !( o instanceof NodeId ) ) {
+			return false;
+		}
+
+		NodeId other = (NodeId)o;
+		if ( hash != other.hash || depth != other.depth ) {
+			return false;
+		}
+		for ( int i = 0; i < depth; ++i ) {
+			if ( path[i] != other.path[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	/**
+	 * @return text of this id, as it was parsed. Ancestors keep the prefix and formatting of their descendant's text.
+	 */
+	@Override
+	public String toString()
+	{
+		if ( text == null ) {
+			// Cut the source text just before the separator following the last segment of this id.
+			int end = source.indexOf( SEPARATOR );
+			for ( int i = 0; i < depth; ++i ) {
+				end = source.indexOf( SEPARATOR, end + 1 );
+			}
+			text = source.substring( 0, end );
+		}
+		return text;
+	}
+}
@@ -8,14 +8,12 @@ import basic_hierarchy.interfaces.Node;
 /**
  * Compares two nodes.
  * <p>
- * Implementation compares the two nodes' IDs using {@linkplain StringIdComparator}.
+ * Implementation compares the two nodes' parsed IDs ({@link Node#getNodeId()}), in the same order as
+ * {@linkplain StringIdComparator}.
  * </p>
  */
 public class NodeIdComparator implements Comparator<Node>
 {
-	private StringIdComparator idComparator = new StringIdComparator();
-
-
 	/**
 	 * Note: this comparator imposes orderings that are <b>inconsistent with {@code equals}</b>.
 	 * 
@@ -24,9 +22,6 @@ public class NodeIdComparator implements Comparator<Node>
 	@Override
 	public int compare( Node o1, Node o2 )
 	{
-		String o1Id = o1.getId();
-		String o2Id = o2.getId();
-
-		return idComparator.compare( o1Id, o2Id );
+		return o1.getNodeId().compareTo( o2.getNodeId() );
 	}
 }
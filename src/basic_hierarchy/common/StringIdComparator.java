@@ -10,33 +10,15 @@ import java.util.Comparator;
  * Each segment is separated by a dot ('.').<br/>
  * For example: '{@code gen.0.15.1}'
  * </p>
+ * <p>
+ * Ids are parsed on each comparison. Where ids are compared repeatedly, compare {@link NodeId}s instead.
+ * </p>
  */
 public class StringIdComparator implements Comparator<String>
 {
 	@Override
 	public int compare( String o1, String o2 )
 	{
-		String[] id1 = o1.split( Constants.HIERARCHY_BRANCH_SEPARATOR_REGEX );
-		String[] id2 = o2.split( Constants.HIERARCHY_BRANCH_SEPARATOR_REGEX );
-
-		// Ignore the first segment - 'gen'
-		int end = Math.min( id1.length, id2.length );
-		for ( int i = 1; i < end; ++i ) {
-			int n1 = Integer.parseInt( id1[i] );
-			int n2 = Integer.parseInt( id2[i] );
-
-			if ( n1 != n2 ) {
-				// Id with smaller generation index is 'smaller'.
-				return n1 - n2;
-			}
-			else {
-				// Both numbers are equal -- proceed to the next segment.
-			}
-		}
-
-		// Both ids have equal segments, so they're effectively equal.
-		// In this case, consider the shorter id as 'smaller'.
-		// (if we ever even end up in such a situation)
-		return id1.length - id2.length;
+		return NodeId.parse( o1 ).compareTo( NodeId.parse( o2 ) );
 	}
 }
@@ -6,6 +6,8 @@ import java.util.Stack;
 import basic_hierarchy.implementation.BasicHierarchy;
 import basic_hierarchy.implementation.BasicInstance;
 import basic_hierarchy.implementation.BasicNode;
+import basic_hierarchy.implementation.FloatInstance;
+import basic_hierarchy.implementation.SparseInstance;
 import basic_hierarchy.interfaces.Hierarchy;
 import basic_hierarchy.interfaces.Instance;
 import basic_hierarchy.interfaces.Node;
@@ -42,7 +44,7 @@ public class Utils {
 	public static Hierarchy getOneClusterHierarchy(Hierarchy h) {
         LinkedList<Instance> instances = new LinkedList<>();
         for(Instance i: h.getRoot().getSubtreeInstances()) {
-            instances.add(new BasicInstance(i.getInstanceName(), Constants.ROOT_ID, i.getData().clone(), i.getTrueClass()));
+            instances.add(copyInstance(i, Constants.ROOT_ID));
         }
 
         Node root = new BasicNode(Constants.ROOT_ID, null, new LinkedList<Node>(), instances, false);
@@ -52,4 +54,125 @@ public class Utils {
 
         return new BasicHierarchy(root, nodes, h.getDataNames(), h.getClasses(), h.getClassesCount(), h.getOverallNumberOfInstances());
     }
+
+	/**
+	 * Creates a copy of the specified instance, assigned to the specified node.
+	 * Feature values are copied, and kept in the same precision as in the original instance.
+	 * 
+	 * @param instance
+	 *            the instance to copy
+	 * @param nodeId
+	 *            id of the node the copy is assigned to
+	 * @return the copy
+	 */
+	public static Instance copyInstance(Instance instance, String nodeId)
+	{
+		if(instance instanceof FloatInstance)
+		{
+			return new FloatInstance(instance.getInstanceName(), nodeId,
+					((FloatInstance)instance).getFloatData().clone(), instance.getTrueClass());
+		}
+		if(instance instanceof SparseInstance)
+		{
+			SparseInstance sparse = (SparseInstance)instance;
+			return new SparseInstance(instance.getInstanceName(), nodeId, sparse.getDimension(),
+					sparse.getIndices().clone(), sparse.getValues().clone(), instance.getTrueClass());
+		}
+		return new BasicInstance(instance.getInstanceName(), nodeId, instance.getData().clone(), instance.getTrueClass());
+	}
+
+	/**
+	 * @param instance
+	 *            the instance to inspect
+	 * @return number of feature values of the specified instance.
+	 */
+	public static int getDimensionCount(Instance instance)
+	{
+		if(instance instanceof FloatInstance)
+		{
+			return ((FloatInstance)instance).getFloatData().length;
+		}
+		if(instance instanceof SparseInstance)
+		{
+			return ((SparseInstance)instance).getDimension();
+		}
+		return instance.getData().length;
+	}
+
+	/**
+	 * Adds feature values of the specified instance to the specified sums, in double precision.
+	 * Unlike {@link Instance#getData()}, this does not create a copy of values stored in other precisions,
+	 * and only visits the non-zero values of sparse instances.
+	 * 
+	 * @param instance
+	 *            the instance whose values are to be added
+	 * @param sums
+	 *            sums of feature values to update
+	 */
+	public static void addData(Instance instance, double[] sums)
+	{
+		if(instance instanceof FloatInstance)
+		{
+			float[] data = ((FloatInstance)instance).getFloatData();
+			for(int i = 0; i < sums.length; i++)
+			{
+				sums[i] += data[i];
+			}
+		}
+		else if(instance instanceof SparseInstance)
+		{
+			int[] indices = ((SparseInstance)instance).getIndices();
+			double[] values = ((SparseInstance)instance).getValues();
+			for(int i = 0; i < indices.length; i++)
+			{
+				sums[indices[i]] += values[i];
+			}
+		}
+		else
+		{
+			double[] data = instance.getData();
+			for(int i = 0; i < sums.length; i++)
+			{
+				sums[i] += data[i];
+			}
+		}
+	}
+
+	/**
+	 * Subtracts feature values of the specified instance from the specified sums, in double precision.
+	 * This is the inverse of {@link #addData(Instance, double[])}.
+	 * 
+	 * @param instance
+	 *            the instance whose values are to be subtracted
+	 * @param sums
+	 *            sums of feature values to update
+	 */
+	public static void subtractData(Instance instance, double[] sums)
+	{
+		if(instance instanceof FloatInstance)
+		{
+			float[] data = ((FloatInstance)instance).getFloatData();
+			for(int i = 0; i < sums.length; i++)
+			{
+				sums[i] -= data[i];
+			}
+		}
+		else if(instance instanceof SparseInstance)
+		{
+			int[] indices = ((SparseInstance)instance).getIndices();
+			double[] values = ((SparseInstance)instance).getValues();
+			for(int i = 0; i < indices.length; i++)
+			{
+				sums[indices[i]] -= values[i];
+			}
+		}
+		else
+		{
+			double[] data = instance.getData();
+			for(int i = 0; i < sums.length; i++)
+			{
+				sums[i] -= data[i];
+			}
+		}
+	}
 }
@@ -0,0 +1,373 @@
+package basic_hierarchy.common;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import basic_hierarchy.implementation.FloatInstance;
+import basic_hierarchy.implementation.SparseInstance;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.Node;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instances;
+
+
+/**
+ * Weka {@link Instances} presenting instances of a {@link Hierarchy}, or of a single node's subtree,
+ * copying feature values of an instance only while it is used.
+ * <p>
+ * The assigned node and the true class of each instance are nominal attributes, at
+ * {@link Constants#INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE} and {@link Constants#INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE},
+ * followed by a numeric attribute for each feature. Instances without a true class have a missing value.
+ * No class attribute is set.
+ * </p>
+ * <p>
+ * Weka reads values of an instance from a single array holding all of its attributes, so the feature arrays of the
+ * hierarchy cannot be shared with it. Instead, the view only refers to the underlying {@link Instance}s, and every
+ * retrieval (with {@link #instance(int)}, {@link #firstInstance()}, {@link #lastInstance()} or
+ * {@link #enumerateInstances()}) returns a new Weka instance with its own copy of the values, which the view does not
+ * keep. Memory used by the view therefore does not grow as an algorithm visits its instances; only a copy of
+ * the instances the caller itself holds on to is retained.
+ * </p>
+ * <p>
+ * Values changed through a retrieved instance are kept by the view, and later retrievals return the changed instance.
+ * Instances retrieved before such a change do not see it, and weights set on retrieved instances are not kept.
+ * Adding or deleting attributes of the view copies the values of all its instances. Changes made in Weka are never
+ * reflected in the hierarchy.
+ * </p>
+ */
+public class WekaInstancesView extends Instances
+{
+	private static final long serialVersionUID = 1L;
+
+	public static final String ASSIGN_CLASS_ATTRIBUTE = "class";
+	public static final String GROUND_TRUTH_ATTRIBUTE = "trueclass";
+
+	private static final int FEATURE_OFFSET = 2;
+
+
+	/**
+	 * @param hierarchy
+	 *            the hierarchy to present
+	 */
+	public WekaInstancesView( Hierarchy hierarchy )
+	{
+		this( hierarchy, hierarchy.getRoot() );
+	}
+
+	/**
+	 * @param hierarchy
+	 *            the hierarchy, which provides names of features and classes
+	 * @param subtreeRoot
+	 *            node of the hierarchy whose subtree is to be presented. Instances are ordered by their nodes,
+	 *            in pre-order.
+	 */
+	public WekaInstancesView( Hierarchy hierarchy, Node subtreeRoot )
+	{
+		this( new Layout( hierarchy, subtreeRoot ) );
+	}
+
+	private WekaInstancesView( Layout layout )
+	{
+		super( layout.relationName, layout.attributeInfo, layout.instanceCount );
+
+		for ( Node node : layout.nodes ) {
+			double nodeValue = layout.nodeLabels.get( node.getId() );
+			for ( Instance instance : node.getNodeInstances() ) {
+				Integer classValue = instance.getTrueClass() == null ? null : layout.classLabels.get( instance.getTrueClass() );
+				InstanceView view = new InstanceView(
+					instance, nodeValue, classValue == null ? weka.core.Instance.missingValue() : classValue
+				);
+				// Instances.add() would store a copy.
+				view.setDataset( this );
+				m_Instances.addElement( view );
+			}
+		}
+	}
+
+	@Override
+	public weka.core.Instance instance( int index )
+	{
+		return retrieved( super.instance( index ) );
+	}
+
+	@Override
+	public weka.core.Instance firstInstance()
+	{
+		return retrieved( super.firstInstance() );
+	}
+
+	@Override
+	public weka.core.Instance lastInstance()
+	{
+		return retrieved( super.lastInstance() );
+	}
+
+	@Override
+	@SuppressWarnings( "rawtypes" )
+	public Enumeration enumerateInstances()
+	{
+		final Enumeration instances = super.enumerateInstances();
+		return new Enumeration() {
+			@Override
+			public boolean hasMoreElements()
+			{
+				return instances.hasMoreElements();
+			}
+
+			@Override
+			public Object nextElement()
+			{
+				return retrieved( (weka.core.Instance)instances.nextElement() );
+			}
+		};
+	}
+
+	/**
+	 * @return the specified instance of this view, or a copy of its values if they have not been kept yet
+	 */
+	private static weka.core.Instance retrieved( weka.core.Instance instance )
+	{
+		if ( instance instanceof InstanceView ) {
+			return ( (InstanceView)instance ).retrieve();
+		}
+		return instance;
+	}
+
+	@Override
+	public void deleteAttributeAt( int position )
+	{
+		// Instances modify the values of their instances directly, so they have to be kept first.
+		keepValues();
+		super.deleteAttributeAt( position );
+	}
+
+	@Override
+	public void insertAttributeAt( Attribute att, int position )
+	{
+		keepValues();
+		super.insertAttributeAt( att, position );
+	}
+
+	private void keepValues()
+	{
+		for ( int i = 0; i < numInstances(); ++i ) {
+			weka.core.Instance instance = super.instance( i );
+			if ( instance instanceof InstanceView ) {
+				( (InstanceView)instance ).keepValues( null );
+			}
+		}
+	}
+
+	/**
+	 * Attributes and nominal labels of a view, collected before it is constructed.
+	 */
+	private static class Layout
+	{
+		private final String relationName;
+		private final List<Node> nodes = new ArrayList<Node>();
+		private final Map<String, Integer> nodeLabels = new HashMap<String, Integer>();
+		private final Map<String, Integer> classLabels = new LinkedHashMap<String, Integer>();
+		private final FastVector attributeInfo;
+		private int instanceCount = 0;
+
+
+		public Layout( Hierarchy hierarchy, Node subtreeRoot )
+		{
+			relationName = subtreeRoot.getId();
+			collectSubtree( subtreeRoot );
+
+			if ( hierarchy.getClasses() != null ) {
+				for ( String trueClass : hierarchy.getClasses() ) {
+					classLabels.put( trueClass, classLabels.size() );
+				}
+			}
+
+			int dimensionCount = 0;
+			for ( Node node : nodes ) {
+				nodeLabels.put( node.getId(), nodeLabels.size() );
+				for ( Instance instance : node.getNodeInstances() ) {
+					if ( instance.getTrueClass() != null && !classLabels.containsKey( instance.getTrueClass() ) ) {
+						classLabels.put( instance.getTrueClass(), classLabels.size() );
+					}
+					if ( instanceCount++ == 0 ) {
+						dimensionCount = Utils.getDimensionCount( instance );
+					}
+				}
+			}
+
+			FastVector nodeValues = new FastVector( nodes.size() );
+			for ( Node node : nodes ) {
+				nodeValues.addElement( node.getId() );
+			}
+			FastVector classValues = new FastVector( classLabels.size() );
+			for ( String trueClass : classLabels.keySet() ) {
+				classValues.addElement( trueClass );
+			}
+
+			Attribute[] attributes = new Attribute[FEATURE_OFFSET + dimensionCount];
+			attributes[Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE] = new Attribute( ASSIGN_CLASS_ATTRIBUTE, nodeValues );
+			attributes[Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE] = new Attribute( GROUND_TRUTH_ATTRIBUTE, classValues );
+			String[] dataNames = hierarchy.getDataNames();
+			for ( int i = 0; i < dimensionCount; ++i ) {
+				String name = dataNames != null && i < dataNames.length ? dataNames[i] : "feature" + ( i + 1 );
+				attributes[FEATURE_OFFSET + i] = new Attribute( name );
+			}
+
+			attributeInfo = new FastVector( attributes.length );
+			for ( Attribute attribute : attributes ) {
+				attributeInfo.addElement( attribute );
+			}
+		}
+
+		private void collectSubtree( Node node )
+		{
+			nodes.add( node );
+			for ( Node child : node.getChildren() ) {
+				collectSubtree( child );
+			}
+		}
+	}
+
+	/**
+	 * Weka instance of the view, stored in {@link #m_Instances}. Until values are changed in Weka, it only holds a
+	 * reference to the source instance, and {@link #m_AttValues} is null.
+	 */
+	private static class InstanceView extends weka.core.Instance
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double nodeValue;
+		private final double trueClassValue;
+		/** Instance to copy values from, or null once values are kept in {@link #m_AttValues}. */
+		private Instance source;
+
+
+		public InstanceView( Instance source, double nodeValue, double trueClassValue )
+		{
+			this.nodeValue = nodeValue;
+			this.trueClassValue = trueClassValue;
+			this.source = source;
+			m_Weight = 1;
+		}
+
+		/**
+		 * @return this instance, if its values are kept, or otherwise a new instance with a copy of the values
+		 */
+		private synchronized weka.core.Instance retrieve()
+		{
+			if ( source == null ) {
+				return this;
+			}
+
+			RetrievedInstance instance = new RetrievedInstance( this, copyValues() );
+			instance.setDataset( dataset() );
+			return instance;
+		}
+
+		/**
+		 * Keeps the specified values in this instance, unless values are already kept.
+		 * 
+		 * @param values
+		 *            values to keep, or null to keep a copy of the values of the source instance
+		 * @return the kept values
+		 */
+		private synchronized double[] keepValues( double[] values )
+		{
+			if ( source != null ) {
+				m_AttValues = values == null ? copyValues() : values;
+				source = null;
+			}
+			return m_AttValues;
+		}
+
+		/**
+		 * Replaces the kept values, after they have been changed in a retrieved instance.
+		 */
+		private synchronized void replaceValues( double[] values )
+		{
+			m_AttValues = values;
+			source = null;
+		}
+
+		private double[] copyValues()
+		{
+			double[] values = new double[FEATURE_OFFSET + Utils.getDimensionCount( source )];
+			values[Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE] = nodeValue;
+			values[Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE] = trueClassValue;
+
+			if ( source instanceof FloatInstance ) {
+				float[] data = ( (FloatInstance)source ).getFloatData();
+				for ( int i = 0; i < data.length; ++i ) {
+					values[FEATURE_OFFSET + i] = data[i];
+				}
+			}
+			else if ( source instanceof SparseInstance ) {
+				int[] indices = ( (SparseInstance)source ).getIndices();
+				double[] sparseValues = ( (SparseInstance)source ).getValues();
+				for ( int i = 0; i < indices.length; ++i ) {
+					values[FEATURE_OFFSET + indices[i]] = sparseValues[i];
+				}
+			}
+			else {
+				double[] data = source.getData();
+				System.arraycopy( data, 0, values, FEATURE_OFFSET, data.length );
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * Weka instance returned by a single retrieval from the view, holding a copy of the values which is dropped
+	 * together with the instance. Changing its values makes the stored {@link InstanceView} keep them.
+	 */
+	private static class RetrievedInstance extends weka.core.Instance
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final InstanceView stored;
+
+
+		public RetrievedInstance( InstanceView stored, double[] values )
+		{
+			super( stored.weight(), values );
+			this.stored = stored;
+		}
+
+		@Override
+		public void setValue( int attIndex, double value )
+		{
+			synchronized ( stored ) {
+				// Weka copies values before changing them, so changes start from the kept values.
+				m_AttValues = stored.keepValues( m_AttValues );
+				super.setValue( attIndex, value );
+				stored.replaceValues( m_AttValues );
+			}
+		}
+
+		@Override
+		public void setValueSparse( int indexOfIndex, double value )
+		{
+			synchronized ( stored ) {
+				m_AttValues = stored.keepValues( m_AttValues );
+				super.setValueSparse( indexOfIndex, value );
+				stored.replaceValues( m_AttValues );
+			}
+		}
+
+		@Override
+		public void replaceMissingValues( double[] array )
+		{
+			synchronized ( stored ) {
+				m_AttValues = stored.keepValues( m_AttValues );
+				super.replaceMissingValues( array );
+				stored.replaceValues( m_AttValues );
+			}
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.util.*;
 
 import basic_hierarchy.common.Constants;
 import basic_hierarchy.common.StringIdComparator;
+import basic_hierarchy.common.Utils;
 import basic_hierarchy.interfaces.Hierarchy;
 import basic_hierarchy.interfaces.Instance;
 import basic_hierarchy.interfaces.Node;
@@ -210,8 +211,7 @@ public class BasicHierarchy implements Hierarchy
                         artificialRoot, new LinkedList<Node>(), new LinkedList<Instance>(), false);
 
                 for (Instance inst : n.getNodeInstances()) {
-                    nodeToAdd.addInstance(new BasicInstance(inst.getInstanceName(), nodeToAdd.getId(),
-                            inst.getData().clone(), inst.getTrueClass()));
+                    nodeToAdd.addInstance(Utils.copyInstance(inst, nodeToAdd.getId()));
                 }
 
                 groups.add(nodeToAdd);
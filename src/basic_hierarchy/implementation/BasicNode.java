@@ -1,18 +1,70 @@
 package basic_hierarchy.implementation;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+import basic_hierarchy.common.NodeId;
+import basic_hierarchy.common.Utils;
 import basic_hierarchy.interfaces.Node;
 import basic_hierarchy.interfaces.Instance;
 
 
+/**
+ * Basic implementation of {@link Node}.
+ * <p>
+ * Once its centroid has been recalculated with {@link #recalculateCentroid(boolean)} or
+ * {@link #recalculateSubtreeCentroids()} (which {@link basic_hierarchy.common.HierarchyBuilder} does for every node
+ * of a hierarchy it builds), the node maintains running sums of its instances' feature values, so that adding,
+ * removing and moving instances with {@link #addInstance(Instance)}, {@link #addInstances(Collection)},
+ * {@link #removeInstance(Instance)}, {@link #moveInstance(Instance, BasicNode)} and {@link #setInstances(LinkedList)}
+ * keeps centroids of the node and its ancestors up to date, without summing their instances again. Newly created
+ * nodes do not maintain any sums, so that instances can be added to them and linked while loading at no extra
+ * cost. Sums stop being maintained when the representation is set explicitly, until centroids are recalculated.
+ * </p>
+ * <p>
+ * Instances added to or removed from {@link #getNodeInstances()} directly bypass the sums. Such changes are
+ * detected from the number of instances, and the node's instances are summed again, when the node is next changed
+ * with one of the methods above - but not before, and not at all if the number of instances stays the same.
+ * </p>
+ * <p>
+ * Subtree sums are only maintained by nodes whose children maintain their own subtree sums, as after
+ * {@link #recalculateSubtreeCentroids()}, so that changes can be propagated to ancestors without visiting those
+ * that do not maintain them. Children set or added with {@link #setChildren(LinkedList)} or
+ * {@link #addChild(Node)} to such a node start maintaining their subtree sums, which are then added to those of
+ * the node and its ancestors. Children added to or removed from {@link #getChildren()} directly are not reflected
+ * in the sums, unless the list is set again with {@link #setChildren(LinkedList)}.
+ * </p>
+ * <p>
+ * Maintained centroids are calculated from the sums when {@link #getNodeRepresentation()} is first called after
+ * a change. That method can be called from multiple threads at once, but changes must not be made concurrently
+ * with any other access to the node, or to its ancestors.
+ * </p>
+ */
 public class BasicNode implements Node
 {
 	private String id;
+	/** Parsed {@link #id}, or null if it has not been parsed yet. */
+	private NodeId nodeId;
 	private Node parent;
 	private LinkedList<Node> children;
 	private LinkedList<Instance> instances;
 	private Instance representation;
+	/** Sums of this node's own instances, or null if they are not maintained. */
+	private CentroidSums nodeSums;
+	/** Sums of this node's subtree instances, or null if they are not maintained, or if the centroid is not a subtree centroid. */
+	private CentroidSums subtreeSums;
+	/**
+	 * Whether {@link #representation} has to be calculated again from the maintained sums.
+	 * Volatile, so that the representation calculated by one thread is visible to others once this is cleared.
+	 */
+	private volatile boolean representationStale;
+	/** Number of instances the node had before sampling, or -1 if it holds all of its instances. */
+	private int instanceCount = -1;
 
 
 	private BasicNode( String id, Node parent, LinkedList<Node> children, LinkedList<Instance> instances )
@@ -26,7 +78,7 @@ public class BasicNode implements Node
 	public BasicNode( String id, Node parent, LinkedList<Node> children, LinkedList<Instance> instances, boolean useSubtree )
 	{
 		this( id, parent, children, instances );
-		recalculateCentroid( useSubtree );
+		calculateCentroid( useSubtree, false );
 	}
 
 	public BasicNode( String id, Node parent, LinkedList<Node> children, LinkedList<Instance> instances, Instance representation )
@@ -45,6 +97,15 @@ public class BasicNode implements Node
 		this( id, parent, new LinkedList<Node>(), new LinkedList<Instance>(), representation );
 	}
 
+	/**
+	 * Creates a node with an already parsed id, so that the id does not have to be parsed again.
+	 */
+	public BasicNode( NodeId id, Node parent, boolean useSubtree )
+	{
+		this( id.toString(), parent, useSubtree );
+		this.nodeId = id;
+	}
+
 	@Override
 	public void setParent( Node parent )
 	{
@@ -54,36 +115,242 @@ public class BasicNode implements Node
 	public void setId( String id )
 	{
 		this.id = id;
+		this.nodeId = null;
 	}
 
 	@Override
 	public void setChildren( LinkedList<Node> children )
 	{
 		this.children = children;
+		if ( subtreeSums == null ) {
+			// Ancestors of a node without subtree sums do not maintain them either.
+			return;
+		}
+
+		CentroidSums newSums = nodeSums.copy();
+		for ( Node child : children ) {
+			CentroidSums childSums = getChildSubtreeSums( child );
+			if ( childSums == null ) {
+				return;
+			}
+			newSums.add( childSums );
+		}
+		replaceSubtreeSums( subtreeSums.copy(), newSums );
 	}
 
 	@Override
 	public void addChild( Node child )
 	{
 		this.children.add( child );
+		if ( subtreeSums == null ) {
+			return;
+		}
+
+		CentroidSums childSums = getChildSubtreeSums( child );
+		if ( childSums != null ) {
+			replaceSubtreeSums( null, childSums );
+		}
 	}
 
 	@Override
 	public void addInstance( Instance instance )
 	{
+		syncNodeSums();
 		this.instances.add( instance );
+		updateSums( instance, false, null );
+	}
+
+	/**
+	 * Adds the specified instances to this node. Their sums are added to subtree sums of the node and its
+	 * ancestors at once, rather than one instance at a time.
+	 * 
+	 * @param instances
+	 *            the instances to add
+	 */
+	public void addInstances( Collection<? extends Instance> instances )
+	{
+		syncNodeSums();
+		this.instances.addAll( instances );
+		if ( nodeSums == null || instances.isEmpty() ) {
+			return;
+		}
+
+		// Node sums are updated in order, so that they are the same as if all instances were summed again.
+		for ( Instance instance : instances ) {
+			nodeSums.update( instance, false );
+		}
+		representationStale |= subtreeSums == null;
+		if ( subtreeSums != null ) {
+			replaceSubtreeSums( null, new CentroidSums( instances ) );
+		}
+	}
+
+	@Override
+	public boolean removeInstance( Instance instance )
+	{
+		syncNodeSums();
+		if ( !this.instances.remove( instance ) ) {
+			return false;
+		}
+		updateSums( instance, true, null );
+		return true;
+	}
+
+	/**
+	 * Moves an instance of this node to the specified node, and assigns it to that node.
+	 * Sums of common ancestors of both nodes are not changed.
+	 * 
+	 * @param instance
+	 *            the instance to move
+	 * @param target
+	 *            the node to move the instance to
+	 * @return true if the instance belonged to this node, and has been moved.
+	 */
+	public boolean moveInstance( Instance instance, BasicNode target )
+	{
+		syncNodeSums();
+		target.syncNodeSums();
+		if ( !this.instances.remove( instance ) ) {
+			return false;
+		}
+
+		Set<Node> targetPath = Collections.newSetFromMap( new IdentityHashMap<Node, Boolean>() );
+		for ( Node node = target; node != null; node = node.getParent() ) {
+			targetPath.add( node );
+		}
+		Node commonAncestor = this;
+		while ( commonAncestor != null && !targetPath.contains( commonAncestor ) ) {
+			commonAncestor = commonAncestor.getParent();
+		}
+
+		updateSums( instance, true, commonAncestor );
+		instance.setNodeId( target.getId() );
+		target.instances.add( instance );
+		target.updateSums( instance, false, commonAncestor );
+		return true;
 	}
 
 	@Override
 	public void setInstances( LinkedList<Instance> instances )
 	{
 		this.instances = instances;
+		if ( nodeSums == null ) {
+			// Neither this node nor its ancestors maintain any sums of these instances.
+			return;
+		}
+
+		CentroidSums oldSums = nodeSums;
+		nodeSums = new CentroidSums( instances );
+		representationStale |= subtreeSums == null;
+		replaceSubtreeSums( oldSums, nodeSums );
 	}
 
 	@Override
 	public void setRepresentation( Instance representation )
 	{
 		this.representation = representation;
+		this.nodeSums = null;
+		this.subtreeSums = null;
+		this.representationStale = false;
+		stopMaintainingAncestorSubtreeSums();
+	}
+
+	/**
+	 * Adds the specified instance to, or removes it from, the maintained sums of this node's own instances,
+	 * and subtree sums of this node and its ancestors, up to but excluding the specified ancestor.
+	 */
+	private void updateSums( Instance instance, boolean remove, Node stopAncestor )
+	{
+		if ( nodeSums != null ) {
+			nodeSums.update( instance, remove );
+			representationStale |= subtreeSums == null;
+		}
+
+		// Ancestors of a node without subtree sums do not maintain them either.
+		for ( Node node = this; node != stopAncestor && maintainsSubtreeSums( node ); node = node.getParent() ) {
+			BasicNode ancestor = (BasicNode)node;
+			ancestor.subtreeSums.update( instance, remove );
+			ancestor.representationStale = true;
+		}
+	}
+
+	/**
+	 * Sums this node's instances again if they have been changed through {@link #getNodeInstances()} since its
+	 * sums were last updated, as far as can be told from their number, and updates subtree sums accordingly.
+	 */
+	private void syncNodeSums()
+	{
+		if ( nodeSums != null && nodeSums.count != instances.size() ) {
+			CentroidSums oldSums = nodeSums;
+			nodeSums = new CentroidSums( instances );
+			representationStale |= subtreeSums == null;
+			replaceSubtreeSums( oldSums, nodeSums );
+		}
+	}
+
+	/**
+	 * Replaces the specified sums with other ones in subtree sums of this node and its ancestors.
+	 * 
+	 * @param oldSums
+	 *            the sums to subtract, or null if there is nothing to subtract
+	 */
+	private void replaceSubtreeSums( CentroidSums oldSums, CentroidSums newSums )
+	{
+		for ( Node node = this; maintainsSubtreeSums( node ); node = node.getParent() ) {
+			BasicNode ancestor = (BasicNode)node;
+			if ( oldSums != null ) {
+				ancestor.subtreeSums.subtract( oldSums );
+			}
+			ancestor.subtreeSums.add( newSums );
+			ancestor.representationStale = true;
+		}
+	}
+
+	/**
+	 * @return maintained subtree sums of the specified child of this node, which starts maintaining them if it
+	 *         has not done so yet, or null if it cannot maintain them - in which case neither can this node
+	 *         and its ancestors, which then stop maintaining them.
+	 */
+	private CentroidSums getChildSubtreeSums( Node child )
+	{
+		if ( !maintainsSubtreeSums( child ) ) {
+			sumSubtree( child, true );
+			if ( !maintainsSubtreeSums( child ) ) {
+				stopMaintainingSubtreeSums( this );
+				return null;
+			}
+		}
+		return ( (BasicNode)child ).subtreeSums;
+	}
+
+	/**
+	 * Stops maintaining subtree sums of this node's ancestors, unless this node maintains its own subtree sums,
+	 * since changes made to this node would not be propagated to them.
+	 */
+	private void stopMaintainingAncestorSubtreeSums()
+	{
+		if ( subtreeSums == null ) {
+			stopMaintainingSubtreeSums( parent );
+		}
+	}
+
+	/**
+	 * Stops maintaining sums of the specified node and those of its ancestors which maintain subtree sums.
+	 * Their representations keep the last centroids calculated from the sums.
+	 */
+	private static void stopMaintainingSubtreeSums( Node node )
+	{
+		for ( ; maintainsSubtreeSums( node ); node = node.getParent() ) {
+			BasicNode ancestor = (BasicNode)node;
+			ancestor.getNodeRepresentation();
+			ancestor.nodeSums = null;
+			ancestor.subtreeSums = null;
+		}
+	}
+
+	private static boolean maintainsSubtreeSums( Node node )
+	{
+		return node instanceof BasicNode && ( (BasicNode)node ).subtreeSums != null;
 	}
 
 	@Override
@@ -92,6 +359,15 @@ public class BasicNode implements Node
 		return id;
 	}
 
+	@Override
+	public NodeId getNodeId()
+	{
+		if ( nodeId == null ) {
+			nodeId = NodeId.parse( id );
+		}
+		return nodeId;
+	}
+
 	@Override
 	public Node getParent()
 	{
@@ -110,12 +386,37 @@ public class BasicNode implements Node
 		return children;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The list is not a copy. Changes made to it bypass the maintained sums, see {@link BasicNode}, so instances
+	 * should be added and removed with {@link #addInstance(Instance)}, {@link #removeInstance(Instance)} and
+	 * similar methods instead.
+	 * </p>
+	 */
 	@Override
 	public LinkedList<Instance> getNodeInstances()
 	{
 		return instances;
 	}
 
+	@Override
+	public int getNodeInstanceCount()
+	{
+		return instanceCount < 0 ? instances.size() : instanceCount;
+	}
+
+	/**
+	 * Sets the number of instances this node had before its instances were sampled.
+	 * 
+	 * @param instanceCount
+	 *            the number of instances, or -1 if the node holds all of its instances
+	 */
+	public void setNodeInstanceCount( int instanceCount )
+	{
+		this.instanceCount = instanceCount;
+	}
+
 	@Override
 	public LinkedList<Instance> getSubtreeInstances()
 	{
@@ -131,6 +432,14 @@ public class BasicNode implements Node
 	@Override
 	public Instance getNodeRepresentation()
 	{
+		if ( representationStale ) {
+			synchronized ( this ) {
+				if ( representationStale ) {
+					representation = ( subtreeSums != null ? subtreeSums : nodeSums ).toCentroid();
+					representationStale = false;
+				}
+			}
+		}
 		return this.representation;
 	}
 
@@ -180,6 +489,10 @@ public class BasicNode implements Node
 
 	/**
 	 * Recalculates the centroid for this group, and updates this group's representation.
+	 * <p>
+	 * Subtree centroids are calculated from the sum of this group's own instances, to which sums of
+	 * child groups' subtrees are added in order, exactly as in {@link #recalculateSubtreeCentroids()}.
+	 * </p>
 	 * 
 	 * @param useSubtree
 	 *            whether the calculation should also include child groups' instances.
@@ -187,22 +500,290 @@ public class BasicNode implements Node
 	 */
 	public Instance recalculateCentroid( boolean useSubtree )
 	{
-		LinkedList<Instance> instances = useSubtree ? getSubtreeInstances() : getNodeInstances();
+		Instance oldRepresentation = getNodeRepresentation();
+		calculateCentroid( useSubtree, true );
+		stopMaintainingAncestorSubtreeSums();
+		return oldRepresentation;
+	}
 
-		double[] centroidCoordinates = new double[instances.isEmpty() ? 0 : instances.getFirst().getData().length];
-		for ( Instance inst : instances ) {
-			double[] instanceData = inst.getData();
-			for ( int i = 0; i < centroidCoordinates.length; i++ ) {
-				centroidCoordinates[i] += instanceData[i];
+	/**
+	 * @param maintainSums
+	 *            whether the sums the centroid is calculated from should be maintained from now on
+	 */
+	private void calculateCentroid( boolean useSubtree, boolean maintainSums )
+	{
+		CentroidSums sums = new CentroidSums( instances );
+		CentroidSums subtree = null;
+		if ( useSubtree ) {
+			subtree = sums.copy();
+			for ( Node child : children ) {
+				subtree.add( sumSubtree( child, false ) );
 			}
 		}
 
-		for ( int i = 0; i < centroidCoordinates.length; i++ ) {
-			centroidCoordinates[i] /= instances.size();
+		if ( maintainSums ) {
+			setCentroid( this, sums, subtree );
+		}
+		else {
+			representation = ( subtree != null ? subtree : sums ).toCentroid();
 		}
+	}
 
-		Instance oldRepresentation = this.representation;
-		this.representation = new BasicInstance( "centroid", "centroid", centroidCoordinates, "centroid" );
-		return oldRepresentation;
+	/**
+	 * Recalculates subtree centroids of this group and all of its descendants, and updates their representations.
+	 * <p>
+	 * This is done in a single post-order pass, in which each group's centroid is calculated from the sums and counts
+	 * of its child groups, so each instance is visited only once. Results are the same as those of calling
+	 * {@link #recalculateCentroid(boolean)} on each of the groups.
+	 * </p>
+	 * <p>
+	 * Centroids of groups without children are exactly the means of their instances, summed in order. Adding sums
+	 * of child groups rounds differently than summing all subtree instances one by one, in the order of
+	 * {@link #getSubtreeInstances()}, so other centroids are not bit-for-bit equal to such means. Each coordinate
+	 * differs from them by at most {@code 2 * (n - 1) * eps * sum(|x|) / n} (plus the final rounding), where
+	 * {@code n} is the number of instances, {@code eps} is {@code Math.ulp( 1.0 ) / 2}, and {@code sum(|x|)} is
+	 * the sum of absolute values of the coordinate - the error bound of recursive summation, for both orders.
+	 * </p>
+	 */
+	public void recalculateSubtreeCentroids()
+	{
+		sumSubtree( this, true );
+		stopMaintainingAncestorSubtreeSums();
+	}
+
+	/**
+	 * Recalculates subtree centroids of this group and all of its descendants in parallel, and updates their
+	 * representations. Results are the same as those of {@link #recalculateSubtreeCentroids()}.
+	 * 
+	 * @param pool
+	 *            the pool to calculate centroids on. Independent subtrees are calculated in separate tasks.
+	 * @param sequentialThreshold
+	 *            subtrees with fewer instances than this are calculated sequentially, in a single task.
+	 */
+	public void recalculateSubtreeCentroids( ForkJoinPool pool, int sequentialThreshold )
+	{
+		if ( sequentialThreshold < 1 ) {
+			throw new IllegalArgumentException( "Sequential threshold must be positive: " + sequentialThreshold );
+		}
+		pool.invoke( new SubtreeCentroidsTask( this, countSubtreeInstances( this ), sequentialThreshold ) );
+		stopMaintainingAncestorSubtreeSums();
+	}
+
+	private static long countSubtreeInstances( Node node )
+	{
+		long result = node.getNodeInstances().size();
+		for ( Node child : node.getChildren() ) {
+			result += countSubtreeInstances( child );
+		}
+		return result;
+	}
+
+	private static CentroidSums sumSubtree( Node node, boolean updateRepresentations )
+	{
+		CentroidSums sums = new CentroidSums( node.getNodeInstances() );
+		CentroidSums result = sums.copy();
+		for ( Node child : node.getChildren() ) {
+			result.add( sumSubtree( child, updateRepresentations ) );
+		}
+
+		if ( updateRepresentations ) {
+			setCentroid( node, sums, result );
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the representation of the specified node to the centroid calculated from the specified sums,
+	 * which are then maintained if the node is a {@link BasicNode} - subtree sums only if all of its children
+	 * maintain theirs.
+	 * 
+	 * @param subtreeSums
+	 *            sums of the node's subtree instances, or null to set the centroid of its own instances
+	 */
+	private static void setCentroid( Node node, CentroidSums nodeSums, CentroidSums subtreeSums )
+	{
+		Instance centroid = ( subtreeSums != null ? subtreeSums : nodeSums ).toCentroid();
+		if ( node instanceof BasicNode ) {
+			BasicNode basicNode = (BasicNode)node;
+			if ( subtreeSums != null ) {
+				for ( Node child : node.getChildren() ) {
+					if ( !maintainsSubtreeSums( child ) ) {
+						// Changes made in the child's subtree would not be reflected in the sums.
+						nodeSums = null;
+						subtreeSums = null;
+						break;
+					}
+				}
+			}
+			basicNode.representation = centroid;
+			basicNode.nodeSums = nodeSums;
+			basicNode.subtreeSums = subtreeSums;
+			basicNode.representationStale = false;
+		}
+		else {
+			node.setRepresentation( centroid );
+		}
+	}
+
+
+	/**
+	 * Calculates subtree centroids of a node's subtree, forking a separate task for each child subtree
+	 * which holds enough instances. Sums of child subtrees are added in the same order as in
+	 * {@link BasicNode#sumSubtree(Node, boolean)}, so the results do not depend on scheduling.
+	 */
+	private static class SubtreeCentroidsTask extends RecursiveTask<CentroidSums>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Node node;
+		private final long instanceCount;
+		private final int sequentialThreshold;
+
+
+		public SubtreeCentroidsTask( Node node, long instanceCount, int sequentialThreshold )
+		{
+			this.node = node;
+			this.instanceCount = instanceCount;
+			this.sequentialThreshold = sequentialThreshold;
+		}
+
+		@Override
+		protected CentroidSums compute()
+		{
+			if ( instanceCount < sequentialThreshold ) {
+				return sumSubtree( node, true );
+			}
+
+			LinkedList<Node> children = node.getChildren();
+			SubtreeCentroidsTask[] tasks = new SubtreeCentroidsTask[children.size()];
+			int i = 0;
+			for ( Node child : children ) {
+				long childCount = countSubtreeInstances( child );
+				if ( childCount >= sequentialThreshold ) {
+					tasks[i] = new SubtreeCentroidsTask( child, childCount, sequentialThreshold );
+					tasks[i].fork();
+				}
+				++i;
+			}
+
+			// Sum small subtrees and this node's own instances while the forked tasks are running.
+			CentroidSums sums = new CentroidSums( node.getNodeInstances() );
+			CentroidSums result = sums.copy();
+			CentroidSums[] childSums = new CentroidSums[tasks.length];
+			i = 0;
+			for ( Node child : children ) {
+				if ( tasks[i] == null ) {
+					childSums[i] = sumSubtree( child, true );
+				}
+				++i;
+			}
+
+			for ( i = tasks.length - 1; i >= 0; --i ) {
+				// Join in reverse order of forking, so that tasks not yet stolen are run by this thread.
+				if ( tasks[i] != null ) {
+					childSums[i] = tasks[i].join();
+				}
+			}
+			for ( CentroidSums childSum : childSums ) {
+				result.add( childSum );
+			}
+
+			setCentroid( node, sums, result );
+			return result;
+		}
+	}
+
+	/**
+	 * Sums of feature values, and the number of instances they were summed from.
+	 */
+	private static class CentroidSums
+	{
+		/** Sums of feature values, or null if there were no instances. */
+		private double[] values;
+		private int count;
+
+
+		private CentroidSums()
+		{
+		}
+
+		public CentroidSums( Collection<? extends Instance> instances )
+		{
+			if ( !instances.isEmpty() ) {
+				values = new double[Utils.getDimensionCount( instances.iterator().next() )];
+				for ( Instance inst : instances ) {
+					Utils.addData( inst, values );
+				}
+				count = instances.size();
+			}
+		}
+
+		public CentroidSums copy()
+		{
+			CentroidSums result = new CentroidSums();
+			result.values = values == null ? null : values.clone();
+			result.count = count;
+			return result;
+		}
+
+		public void update( Instance instance, boolean remove )
+		{
+			if ( remove ) {
+				if ( values == null ) {
+					// The instance was added without updating the sums.
+					return;
+				}
+				Utils.subtractData( instance, values );
+				if ( --count == 0 ) {
+					// Start from exact zeros again, discarding any rounding errors.
+					values = null;
+				}
+			}
+			else {
+				if ( values == null ) {
+					values = new double[Utils.getDimensionCount( instance )];
+				}
+				Utils.addData( instance, values );
+				++count;
+			}
+		}
+
+		public void add( CentroidSums other )
+		{
+			if ( other.count == 0 ) {
+				return;
+			}
+			if ( values == null ) {
+				values = new double[other.values.length];
+			}
+			for ( int i = 0; i < values.length; i++ ) {
+				values[i] += other.values[i];
+			}
+			count += other.count;
+		}
+
+		public void subtract( CentroidSums other )
+		{
+			if ( other.count == 0 || values == null ) {
+				return;
+			}
+			for ( int i = 0; i < values.length; i++ ) {
+				values[i] -= other.values[i];
+			}
+			count -= other.count;
+			if ( count <= 0 ) {
+				values = null;
+				count = 0;
+			}
+		}
+
+		public Instance toCentroid()
+		{
+			double[] centroidCoordinates = new double[values == null ? 0 : values.length];
+			for ( int i = 0; i < centroidCoordinates.length; i++ ) {
+				centroidCoordinates[i] = values[i] / count;
+			}
+			return new BasicInstance( "centroid", "centroid", centroidCoordinates, "centroid" );
+		}
 	}
 }
@@ -0,0 +1,97 @@
+package basic_hierarchy.implementation;
+
+import basic_hierarchy.interfaces.Instance;
+
+
+/**
+ * {@link Instance} storing its feature values in single precision, using half the memory of {@link BasicInstance}.
+ * <p>
+ * {@link #getData()} has to widen the values into a new array on every call. Code that only reads the values
+ * should use {@link #getFloatData()} instead (see {@link basic_hierarchy.common.Utils#addData(Instance, double[])}).
+ * </p>
+ */
+public class FloatInstance implements Instance
+{
+	private String instanceName;
+	private float[] data;
+	private String nodeId;
+	private String trueClass;
+
+
+	public FloatInstance( String instanceName, String nodeId, float[] data )
+	{
+		this.instanceName = instanceName;
+		this.nodeId = nodeId;
+		this.data = data;
+	}
+
+	public FloatInstance( String instanceName, String nodeId, float[] data, String trueClass )
+	{
+		this( instanceName, nodeId, data );
+		this.trueClass = trueClass;
+	}
+
+	/**
+	 * @param data
+	 *            feature values, rounded to single precision. The array is not retained.
+	 */
+	public FloatInstance( String instanceName, String nodeId, double[] data, String trueClass )
+	{
+		this( instanceName, nodeId, toFloats( data ), trueClass );
+	}
+
+	private static float[] toFloats( double[] data )
+	{
+		float[] result = new float[data.length];
+		for ( int i = 0; i < data.length; ++i ) {
+			result[i] = (float)data[i];
+		}
+		return result;
+	}
+
+	@Override
+	public String getInstanceName()
+	{
+		return instanceName;
+	}
+
+	/**
+	 * @return a new array containing feature values of this instance, widened to double precision.
+	 *         Changes to the array are not reflected in this instance.
+	 */
+	@Override
+	public double[] getData()
+	{
+		double[] result = new double[data.length];
+		for ( int i = 0; i < data.length; ++i ) {
+			result[i] = data[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @return feature values of this instance.
+	 */
+	public float[] getFloatData()
+	{
+		return data;
+	}
+
+	@Override
+	public String getNodeId()
+	{
+		return nodeId;
+	}
+
+	@Override
+	public void setNodeId( String assignedClass )
+	{
+		this.nodeId = assignedClass;
+	}
+
+	@Override
+	public String getTrueClass()
+	{
+		return trueClass;
+	}
+}
@@ -0,0 +1,136 @@
+package basic_hierarchy.implementation;
+
+import basic_hierarchy.interfaces.Instance;
+
+
+/**
+ * {@link Instance} storing only its non-zero feature values, as pairs of indices and values.
+ * Suitable for data in which most feature values are zero.
+ * <p>
+ * {@link #getData()} has to expand the values into a new dense array on every call. Code that only reads the values
+ * should use {@link #getIndices()} and {@link #getValues()} instead (see
+ * {@link basic_hierarchy.common.Utils#addData(Instance, double[])}).
+ * </p>
+ */
+public class SparseInstance implements Instance
+{
+	private String instanceName;
+	private String nodeId;
+	private String trueClass;
+	private int dimension;
+	private int[] indices;
+	private double[] values;
+
+
+	/**
+	 * @param dimension
+	 *            number of feature values of the instance, including zeros
+	 * @param indices
+	 *            indices of the non-zero feature values, in ascending order
+	 * @param values
+	 *            the non-zero feature values, corresponding to {@code indices}
+	 */
+	public SparseInstance( String instanceName, String nodeId, int dimension, int[] indices, double[] values, String trueClass )
+	{
+		if ( indices.length != values.length ) {
+			throw new IllegalArgumentException( "Indices and values must have the same length." );
+		}
+		this.instanceName = instanceName;
+		this.nodeId = nodeId;
+		this.dimension = dimension;
+		this.indices = indices;
+		this.values = values;
+		this.trueClass = trueClass;
+	}
+
+	/**
+	 * @param data
+	 *            feature values, of which only the non-zero ones are kept. The array is not retained.
+	 */
+	public SparseInstance( String instanceName, String nodeId, double[] data, String trueClass )
+	{
+		this.instanceName = instanceName;
+		this.nodeId = nodeId;
+		this.dimension = data.length;
+		this.trueClass = trueClass;
+
+		int count = 0;
+		for ( double value : data ) {
+			if ( value != 0 ) {
+				++count;
+			}
+		}
+
+		indices = new int[count];
+		values = new double[count];
+		for ( int i = 0, j = 0; i < data.length; ++i ) {
+			if ( data[i] != 0 ) {
+				indices[j] = i;
+				values[j] = data[i];
+				++j;
+			}
+		}
+	}
+
+	@Override
+	public String getInstanceName()
+	{
+		return instanceName;
+	}
+
+	/**
+	 * @return a new dense array containing feature values of this instance.
+	 *         Changes to the array are not reflected in this instance.
+	 */
+	@Override
+	public double[] getData()
+	{
+		double[] result = new double[dimension];
+		for ( int i = 0; i < indices.length; ++i ) {
+			result[indices[i]] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of feature values of this instance, including zeros.
+	 */
+	public int getDimension()
+	{
+		return dimension;
+	}
+
+	/**
+	 * @return indices of the non-zero feature values, in ascending order.
+	 */
+	public int[] getIndices()
+	{
+		return indices;
+	}
+
+	/**
+	 * @return the non-zero feature values, corresponding to {@link #getIndices()}.
+	 */
+	public double[] getValues()
+	{
+		return values;
+	}
+
+	@Override
+	public String getNodeId()
+	{
+		return nodeId;
+	}
+
+	@Override
+	public void setNodeId( String assignedClass )
+	{
+		this.nodeId = assignedClass;
+	}
+
+	@Override
+	public String getTrueClass()
+	{
+		return trueClass;
+	}
+}
@@ -31,4 +31,27 @@ public interface DataReader
 		boolean withColumnHeaders,
 		boolean fixBreadthGaps,
 		boolean useSubtree ) throws IOException;
+
+	/**
+	 * Parses the specified file in a single pass, passing each instance to the specified consumer as soon as
+	 * it is read. Instances are not retained, so memory use does not depend on the size of the file.
+	 * 
+	 * @param filePath
+	 *            path to the file to read
+	 * @param withInstancesNameAttribute
+	 *            if true, the reader will assume that the file includes a column containing instance names
+	 * @param withTrueClassAttribute
+	 *            if true, the reader will assume that the file includes a column containing true class
+	 * @param withColumnHeaders
+	 *            if true, the reader will assume that the first row contains column headers, specifying the name for each column
+	 * @param consumer
+	 *            the consumer to pass instances to
+	 * @return names for each data column, or null if the file doesn't specify them
+	 */
+	public String[] stream(
+		String filePath,
+		boolean withInstancesNameAttribute,
+		boolean withTrueClassAttribute,
+		boolean withColumnHeaders,
+		InstanceConsumer consumer ) throws IOException;
 }
@@ -0,0 +1,22 @@
+package basic_hierarchy.interfaces;
+
+/**
+ * Receives instances from a {@link DataReader} one at a time, as they are parsed from the input file.
+ */
+public interface InstanceConsumer
+{
+	/**
+	 * Called once for every instance read from the input file, in file order.
+	 *
+	 * @param nodeId
+	 *            id of the node the instance has been assigned to
+	 * @param trueClass
+	 *            id of the true class of the instance, or null if the file doesn't include true class
+	 * @param instanceName
+	 *            name of the instance, or null if the file doesn't include instance names
+	 * @param data
+	 *            feature values of the instance. The array is reused between calls, so it must not be
+	 *            retained - copy it if its values need to outlive this call.
+	 */
+	public void consume( String nodeId, String trueClass, String instanceName, double[] data );
+}
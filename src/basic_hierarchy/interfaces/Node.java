@@ -2,6 +2,8 @@ package basic_hierarchy.interfaces;
 
 import java.util.LinkedList;
 
+import basic_hierarchy.common.NodeId;
+
 
 /**
  * A {@link Node} is a collection of {@link Instance}s which were assigned to
@@ -14,6 +16,13 @@ public interface Node
 	 */
 	public String getId();
 
+	/**
+	 * @return the parsed id of this node.
+	 * @throws NumberFormatException
+	 *             if the id cannot be parsed (see {@link NodeId#parse(String)})
+	 */
+	public NodeId getNodeId();
+
 	/**
 	 * @return the parent node of this node, or null if this is the root node.
 	 */
@@ -34,6 +43,12 @@ public interface Node
 	 */
 	public LinkedList<Instance> getNodeInstances();
 
+	/**
+	 * @return number of instances which belong to this particular node. Equal to the size of
+	 *         {@link #getNodeInstances()}, unless the node only holds a sample of its instances.
+	 */
+	public int getNodeInstanceCount();
+
 	/**
 	 * @return list of instances which belong to this node or its child nodes.
 	 */
@@ -76,6 +91,15 @@ public interface Node
 	 */
 	public void addInstance( Instance instance );
 
+	/**
+	 * Removes an instance from this node.
+	 * 
+	 * @param instance
+	 *            the instance to remove
+	 * @return true if the instance belonged to this node, and has been removed.
+	 */
+	public boolean removeInstance( Instance instance );
+
 	/**
 	 * Sets the instance list of this node.
 	 * 
@@ -0,0 +1,20 @@
+package basic_hierarchy.interfaces;
+
+/**
+ * Receives progress updates from an asynchronous load.
+ */
+public interface ProgressListener
+{
+	/**
+	 * Called periodically while the input file is being read. Updates are never delivered concurrently,
+	 * but may come from different threads.
+	 *
+	 * @param bytesRead
+	 *            number of bytes of the input file processed so far. Can be approximate, since input is read ahead.
+	 * @param totalBytes
+	 *            size of the input file, in bytes
+	 * @param rowsRead
+	 *            number of instances read so far
+	 */
+	public void progress( long bytesRead, long totalBytes, long rowsRead );
+}
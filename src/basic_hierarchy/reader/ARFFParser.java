@@ -0,0 +1,465 @@
+package basic_hierarchy.reader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Streaming parser of Weka's ARFF format, reading the header and then one data row at a time.
+ * <p>
+ * Unlike Weka's loaders, the parser does not create an object for each row, nor does it keep values
+ * of string attributes. Numeric, integer, real, nominal and string attributes are supported. Values can be
+ * quoted with {@code '} or {@code "}, and {@code ?} denotes a missing value, which is read as {@link Double#NaN}.
+ * Lines beginning with {@code %} are comments.
+ * </p>
+ * <p>
+ * Rows can also be given in sparse form, as {@code {index value, ...}}, listing attributes in ascending order.
+ * Omitted attributes are zero, which for nominal attributes means their first label.
+ * </p>
+ */
+class ARFFParser implements Closeable
+{
+	/** Type of an attribute declared in the header. */
+	enum AttributeType
+	{
+		NUMERIC, NOMINAL, STRING
+	}
+
+	private final BufferedReader reader;
+	private long lineNumber = 0;
+
+	private final List<String> attributeNames = new ArrayList<String>();
+	private final List<AttributeType> attributeTypes = new ArrayList<AttributeType>();
+	/** Index of each label of nominal attributes, or null for other attributes. */
+	private final List<Map<String, Integer>> nominalLabels = new ArrayList<Map<String, Integer>>();
+	/** First label of nominal attributes (the value of omitted attributes in sparse rows), or null for other attributes. */
+	private final List<String> firstLabels = new ArrayList<String>();
+
+	private String line;
+	private String[] values;
+	private boolean[] missing;
+	/** Whether the last value read by {@link #readValue(String, int[], boolean)} was quoted. */
+	private boolean quoted;
+
+	private boolean sparseRow;
+	/** Number of the current row, used to tell which attributes have been given in a sparse row. */
+	private int rowNumber = 0;
+	/** Number of the last row in which each attribute has been given. */
+	private int[] valueRows;
+	/** Attributes given in the current sparse row, in ascending order. */
+	private int[] sparseAttributes;
+	private int sparseCount;
+
+
+	/**
+	 * @param reader
+	 *            reader of the ARFF file. It is closed along with the parser.
+	 */
+	public ARFFParser( BufferedReader reader )
+	{
+		this.reader = reader;
+	}
+
+	/**
+	 * Reads the header of the file, up to and including the {@code @data} line.
+	 *
+	 * @throws IOException
+	 *             if an IO error occurred while reading the file, or the header is malformed
+	 */
+	public void readHeader() throws IOException
+	{
+		String headerLine;
+		while ( ( headerLine = readContentLine() ) != null ) {
+			String keyword = headerLine.split( "\\s+", 2 )[0].toLowerCase( Locale.ROOT );
+
+			if ( keyword.equals( "@relation" ) ) {
+				continue;
+			}
+			else if ( keyword.equals( "@attribute" ) ) {
+				readAttribute( headerLine.substring( keyword.length() ).trim() );
+			}
+			else if ( keyword.equals( "@data" ) ) {
+				if ( attributeNames.isEmpty() ) {
+					throw error( "No attributes have been declared before @data." );
+				}
+				values = new String[attributeNames.size()];
+				missing = new boolean[attributeNames.size()];
+				valueRows = new int[attributeNames.size()];
+				sparseAttributes = new int[attributeNames.size()];
+				return;
+			}
+			else {
+				throw error( "Unexpected line in header." );
+			}
+		}
+
+		throw new IOException( "Premature end of file: @data has not been found." );
+	}
+
+	/**
+	 * Parses the declaration of an attribute, following the {@code @attribute} keyword.
+	 */
+	private void readAttribute( String declaration ) throws IOException
+	{
+		int[] position = { 0 };
+		String name = readValue( declaration, position, true );
+		if ( name == null || name.isEmpty() ) {
+			throw error( "Attribute name is missing." );
+		}
+
+		String type = declaration.substring( position[0] ).trim();
+		String lowerType = type.toLowerCase( Locale.ROOT );
+
+		Map<String, Integer> labels = null;
+		String firstLabel = null;
+		AttributeType attributeType;
+		if ( type.startsWith( "{" ) ) {
+			int end = type.lastIndexOf( '}' );
+			if ( end < 0 ) {
+				throw error( "Nominal attribute '" + name + "' is missing the closing brace." );
+			}
+
+			attributeType = AttributeType.NOMINAL;
+			labels = new HashMap<String, Integer>();
+			String list = type.substring( 1, end );
+			for ( int[] listPosition = { 0 }; listPosition[0] < list.length(); ) {
+				String label = readValue( list, listPosition, false );
+				if ( label != null && !labels.containsKey( label ) ) {
+					if ( labels.isEmpty() ) {
+						firstLabel = label;
+					}
+					labels.put( label, labels.size() );
+				}
+				skipSeparator( list, listPosition );
+			}
+		}
+		else if ( lowerType.equals( "numeric" ) || lowerType.equals( "real" ) || lowerType.equals( "integer" ) ) {
+			attributeType = AttributeType.NUMERIC;
+		}
+		else if ( lowerType.equals( "string" ) ) {
+			attributeType = AttributeType.STRING;
+		}
+		else {
+			throw error( "Unsupported type of attribute '" + name + "': " + type );
+		}
+
+		attributeNames.add( name );
+		attributeTypes.add( attributeType );
+		nominalLabels.add( labels );
+		firstLabels.add( firstLabel );
+	}
+
+	/**
+	 * Advances to the next data row.
+	 *
+	 * @return true if a row was read, false if the end of file has been reached.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the file, or the row is malformed
+	 */
+	public boolean nextRow() throws IOException
+	{
+		line = readContentLine();
+		if ( line == null ) {
+			return false;
+		}
+
+		++rowNumber;
+		if ( line.startsWith( "{" ) ) {
+			readSparseRow();
+			return true;
+		}
+
+		sparseRow = false;
+		int[] position = { 0 };
+		int count = 0;
+		while ( position[0] < line.length() ) {
+			if ( count == values.length ) {
+				throw error( String.format( "Expected %s values, but found more.", values.length ) );
+			}
+
+			setValue( count, readValue( line, position, false ) );
+			++count;
+
+			skipSeparator( line, position );
+		}
+
+		if ( count != values.length ) {
+			throw error( String.format( "Expected %s values, but found %s.", values.length, count ) );
+		}
+
+		return true;
+	}
+
+	/**
+	 * Parses the current line as a sparse row.
+	 */
+	private void readSparseRow() throws IOException
+	{
+		int end = line.lastIndexOf( '}' );
+		if ( end < 0 ) {
+			throw error( "Sparse row is missing the closing brace." );
+		}
+
+		sparseRow = true;
+		sparseCount = 0;
+		String content = line.substring( 1, end );
+		int[] position = { 0 };
+		while ( position[0] < content.length() ) {
+			String index = readValue( content, position, true );
+			if ( index == null ) {
+				break;
+			}
+
+			int attribute;
+			try {
+				attribute = Integer.parseInt( index );
+			}
+			catch ( NumberFormatException e ) {
+				throw error( "Invalid attribute index in sparse row: '" + index + "'" );
+			}
+			if ( attribute < 0 || attribute >= values.length ) {
+				throw error( "Attribute index in sparse row is out of range: " + attribute );
+			}
+			if ( sparseCount > 0 && attribute <= sparseAttributes[sparseCount - 1] ) {
+				throw error( "Attribute indices in sparse row are not in ascending order." );
+			}
+
+			setValue( attribute, readValue( content, position, false ) );
+			valueRows[attribute] = rowNumber;
+			sparseAttributes[sparseCount++] = attribute;
+
+			skipSeparator( content, position );
+		}
+	}
+
+	/**
+	 * Sets the value of the specified attribute in the current row, as read by {@link #readValue(String, int[], boolean)}.
+	 */
+	private void setValue( int attribute, String value )
+	{
+		values[attribute] = value;
+		missing[attribute] = value == null || ( value.equals( "?" ) && !quoted );
+	}
+
+	/**
+	 * @return true if the current row is a sparse row.
+	 */
+	public boolean isSparseRow()
+	{
+		return sparseRow;
+	}
+
+	/**
+	 * @return number of attributes given in the current sparse row.
+	 */
+	public int getSparseValueCount()
+	{
+		return sparseCount;
+	}
+
+	/**
+	 * @param index
+	 *            index of the value in the current sparse row
+	 * @return the attribute of the specified value. Attributes are listed in ascending order.
+	 */
+	public int getSparseAttribute( int index )
+	{
+		return sparseAttributes[index];
+	}
+
+	/**
+	 * @return false if the specified attribute has been omitted from the current sparse row.
+	 */
+	private boolean isGiven( int attribute )
+	{
+		return !sparseRow || valueRows[attribute] == rowNumber;
+	}
+
+	/**
+	 * @return the next line which is neither empty nor a comment, trimmed, or null at the end of file.
+	 */
+	private String readContentLine() throws IOException
+	{
+		String result;
+		while ( ( result = reader.readLine() ) != null ) {
+			++lineNumber;
+			result = result.trim();
+			if ( !result.isEmpty() && !result.startsWith( "%" ) ) {
+				return result;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a single, possibly quoted, value starting at the specified position (after any whitespace).
+	 * Unquoted values end at a comma, or also at whitespace if {@code stopAtWhitespace} is set.
+	 *
+	 * @param position
+	 *            position to start reading at. Updated to point just past the value.
+	 * @return the value, or null if it is empty.
+	 */
+	private String readValue( String text, int[] position, boolean stopAtWhitespace ) throws IOException
+	{
+		int i = position[0];
+		while ( i < text.length() && Character.isWhitespace( text.charAt( i ) ) ) {
+			++i;
+		}
+		if ( i == text.length() ) {
+			position[0] = i;
+			return null;
+		}
+
+		char quote = text.charAt( i );
+		quoted = quote == '\'' || quote == '"';
+		if ( quoted ) {
+			StringBuilder result = new StringBuilder();
+			for ( ++i; i < text.length() && text.charAt( i ) != quote; ++i ) {
+				char c = text.charAt( i );
+				if ( c == '\\' && i + 1 < text.length() ) {
+					c = text.charAt( ++i );
+					switch ( c ) {
+						case 'n':
+							c = '\n';
+							break;
+						case 'r':
+							c = '\r';
+							break;
+						case 't':
+							c = '\t';
+							break;
+						default:
+							break;
+					}
+				}
+				result.append( c );
+			}
+
+			if ( i == text.length() ) {
+				throw error( "Quoted value is missing the closing quote." );
+			}
+			position[0] = i + 1;
+			return result.toString();
+		}
+
+		int start = i;
+		while ( i < text.length() && text.charAt( i ) != ',' && !( stopAtWhitespace && Character.isWhitespace( text.charAt( i ) ) ) ) {
+			++i;
+		}
+		position[0] = i;
+
+		String result = text.substring( start, i ).trim();
+		return result.isEmpty() ? null : result;
+	}
+
+	/**
+	 * Skips whitespace and a single comma following a value.
+	 */
+	private void skipSeparator( String text, int[] position ) throws IOException
+	{
+		int i = position[0];
+		while ( i < text.length() && Character.isWhitespace( text.charAt( i ) ) ) {
+			++i;
+		}
+		if ( i < text.length() ) {
+			if ( text.charAt( i ) != ',' ) {
+				throw error( "Expected a comma after a value." );
+			}
+			++i;
+		}
+		position[0] = i;
+	}
+
+	private IOException error( String message )
+	{
+		return new IOException( String.format( "%s%nLine %s: %s", message, lineNumber, line ) );
+	}
+
+	/**
+	 * @return number of attributes declared in the header.
+	 */
+	public int getAttributeCount()
+	{
+		return attributeNames.size();
+	}
+
+	public String getAttributeName( int attribute )
+	{
+		return attributeNames.get( attribute );
+	}
+
+	public AttributeType getAttributeType( int attribute )
+	{
+		return attributeTypes.get( attribute );
+	}
+
+	/**
+	 * @return number of labels of the specified nominal attribute.
+	 */
+	public int getLabelCount( int attribute )
+	{
+		return nominalLabels.get( attribute ).size();
+	}
+
+	/**
+	 * @return the value of the specified attribute in the current row, or null if the value is missing.
+	 *         Nominal attributes omitted from a sparse row have their first label, and other omitted
+	 *         attributes are null.
+	 */
+	public String getString( int attribute )
+	{
+		if ( !isGiven( attribute ) ) {
+			return firstLabels.get( attribute );
+		}
+		return missing[attribute] ? null : values[attribute];
+	}
+
+	/**
+	 * @return the value of the specified attribute in the current row as a number: the value itself for
+	 *         numeric attributes, and the index of the label for nominal attributes. Missing values are
+	 *         returned as {@link Double#NaN}, and attributes omitted from a sparse row as zero.
+	 * @throws IOException
+	 *             if the value is not a number, or not one of the attribute's labels
+	 */
+	public double getValue( int attribute ) throws IOException
+	{
+		if ( !isGiven( attribute ) ) {
+			return 0;
+		}
+		if ( missing[attribute] ) {
+			return Double.NaN;
+		}
+
+		switch ( attributeTypes.get( attribute ) ) {
+			case NUMERIC:
+				try {
+					return Double.parseDouble( values[attribute] );
+				}
+				catch ( NumberFormatException e ) {
+					throw error( String.format( "Value of attribute '%s' is not a number: '%s'", attributeNames.get( attribute ), values[attribute] ) );
+				}
+
+			case NOMINAL:
+				Integer index = nominalLabels.get( attribute ).get( values[attribute] );
+				if ( index == null ) {
+					throw error( String.format( "Value of attribute '%s' has not been declared: '%s'", attributeNames.get( attribute ), values[attribute] ) );
+				}
+				return index;
+
+			default:
+				throw error( String.format( "String attribute '%s' cannot be read as a number.", attributeNames.get( attribute ) ) );
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+}
@@ -0,0 +1,360 @@
+package basic_hierarchy.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import basic_hierarchy.common.Constants;
+
+
+/**
+ * {@link RowTokenizer} working directly on the bytes of UTF-8 encoded input held in a {@link ByteBuffer}.
+ * <p>
+ * Rows and columns are located in place, without decoding the input into strings. Strings are only
+ * created on explicit request ({@link #getColumn(int)}), and numbers are parsed straight from the bytes.
+ * Rows are terminated by {@code \n} or {@code \r\n}.
+ * </p>
+ * <p>
+ * Subclasses can supply input in several successive buffers by overriding {@link #refill()}.
+ * </p>
+ */
+class ByteRowTokenizer extends RowTokenizer
+{
+	private static final byte DELIMITER = (byte)Constants.DELIMITER.charAt( 0 );
+
+	/** Powers of ten that are exactly representable as a {@code double}. */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/** Mantissas up to this value are exactly representable as a {@code double}. */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/** Maximum number of significant digits that is guaranteed to fit in a {@code long}. */
+	private static final int MAX_MANTISSA_DIGITS = 18;
+
+	protected ByteBuffer buffer;
+	/** Index in {@link #buffer} at which the next row begins. */
+	protected int position;
+	/** Offset of the first byte of {@link #buffer} within the whole input. */
+	protected long bufferOffset;
+
+	private int rowStart;
+	private int rowEnd;
+	/** Start and end indices (in {@link #buffer}) of each column in the current row, stored in pairs. */
+	private int[] columnBounds = new int[64];
+	private int columnCount;
+
+	private byte[] scratch = new byte[256];
+
+
+	/**
+	 * @param buffer
+	 *            buffer containing the whole input, from index 0 to its limit
+	 */
+	public ByteRowTokenizer( ByteBuffer buffer )
+	{
+		this( buffer, 0 );
+	}
+
+	/**
+	 * @param buffer
+	 *            buffer containing the input, from index 0 to its limit
+	 * @param bufferOffset
+	 *            offset of the first byte of the buffer within the whole input
+	 */
+	protected ByteRowTokenizer( ByteBuffer buffer, long bufferOffset )
+	{
+		this.buffer = buffer;
+		this.bufferOffset = bufferOffset;
+	}
+
+	/**
+	 * Called when the current buffer runs out before the end of a row has been found.
+	 * <p>
+	 * Implementations should make more input available after the current limit of {@link #buffer},
+	 * while keeping the bytes from {@link #position} onwards. If those bytes are moved, then
+	 * {@link #position} and {@link #bufferOffset} have to be updated accordingly.
+	 * </p>
+	 *
+	 * @return true if more input was made available, false if the end of input has been reached.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the input
+	 */
+	protected boolean refill() throws IOException
+	{
+		return false;
+	}
+
+	@Override
+	public boolean nextRow() throws IOException
+	{
+		while ( !tokenizeRow( position, buffer.limit() ) ) {
+			// Buffer ended before the row did.
+			if ( !refill() ) {
+				int limit = buffer.limit();
+				if ( position >= limit ) {
+					return false;
+				}
+
+				// Last row of the input, without a terminator. It may have been moved by refill(), so scan it again.
+				tokenizeRow( position, limit );
+				addColumn( columnCount == 0 ? position : columnBounds[2 * columnCount - 1] + 1, limit );
+				finishRow( position, limit, limit );
+				return true;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public long getRowOffset()
+	{
+		return bufferOffset + rowStart;
+	}
+
+	/**
+	 * @return offset of the row following the current row within the whole input.
+	 */
+	public long getNextRowOffset()
+	{
+		return bufferOffset + position;
+	}
+
+	/**
+	 * Scans a row starting at the specified index, recording column boundaries.
+	 *
+	 * @return true if a row terminator was found before {@code limit}, false otherwise.
+	 */
+	private boolean tokenizeRow( int start, int limit )
+	{
+		columnCount = 0;
+		int columnStart = start;
+
+		for ( int i = start; i < limit; ++i ) {
+			byte b = buffer.get( i );
+
+			if ( b == DELIMITER ) {
+				addColumn( columnStart, i );
+				columnStart = i + 1;
+			}
+			else if ( b == '\n' ) {
+				addColumn( columnStart, i );
+				finishRow( start, i, i + 1 );
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void finishRow( int start, int end, int next )
+	{
+		position = next;
+		rowStart = start;
+		rowEnd = end;
+
+		// Strip the carriage return of a '\r\n' terminator.
+		if ( rowEnd > rowStart && buffer.get( rowEnd - 1 ) == '\r' ) {
+			--rowEnd;
+			columnBounds[2 * columnCount - 1] = rowEnd;
+		}
+
+		// Mimic String.split(): a row without delimiters is a single column, otherwise trailing
+		// empty columns are discarded.
+		if ( columnCount > 1 ) {
+			while ( columnCount > 0 && columnBounds[2 * columnCount - 2] == columnBounds[2 * columnCount - 1] ) {
+				--columnCount;
+			}
+		}
+	}
+
+	private void addColumn( int start, int end )
+	{
+		if ( 2 * columnCount + 2 > columnBounds.length ) {
+			int[] newBounds = new int[columnBounds.length * 2];
+			System.arraycopy( columnBounds, 0, newBounds, 0, columnBounds.length );
+			columnBounds = newBounds;
+		}
+
+		columnBounds[2 * columnCount] = start;
+		columnBounds[2 * columnCount + 1] = end;
+		++columnCount;
+	}
+
+	@Override
+	public int getColumnCount()
+	{
+		return columnCount;
+	}
+
+	@Override
+	public String getColumn( int column )
+	{
+		return decode( columnBounds[2 * column], columnBounds[2 * column + 1] );
+	}
+
+	@Override
+	public boolean columnEquals( int column, String value )
+	{
+		if ( value == null ) {
+			return false;
+		}
+
+		int start = columnBounds[2 * column];
+		int end = columnBounds[2 * column + 1];
+		int length = value.length();
+
+		for ( int i = 0; i < length; ++i ) {
+			char c = value.charAt( i );
+			if ( c >= 0x80 ) {
+				// Non-ASCII characters can't be compared byte by byte.
+				return getColumn( column ).equals( value );
+			}
+			if ( start + i >= end || buffer.get( start + i ) != c ) {
+				return false;
+			}
+		}
+
+		return end - start == length;
+	}
+
+	@Override
+	public String getLine()
+	{
+		return decode( rowStart, rowEnd );
+	}
+
+	@Override
+	public double getDouble( int column )
+	{
+		int start = columnBounds[2 * column];
+		int end = columnBounds[2 * column + 1];
+
+		int i = start;
+		boolean negative = false;
+		if ( i < end && ( buffer.get( i ) == '-' || buffer.get( i ) == '+' ) ) {
+			negative = buffer.get( i ) == '-';
+			++i;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+
+		for ( ; i < end; ++i ) {
+			int d = buffer.get( i ) - '0';
+			if ( d < 0 || d > 9 ) {
+				break;
+			}
+			anyDigits = true;
+			if ( mantissa != 0 || d != 0 ) {
+				if ( ++digits > MAX_MANTISSA_DIGITS ) {
+					return parseDoubleSlow( column );
+				}
+				mantissa = mantissa * 10 + d;
+			}
+		}
+
+		if ( i < end && buffer.get( i ) == '.' ) {
+			for ( ++i; i < end; ++i ) {
+				int d = buffer.get( i ) - '0';
+				if ( d < 0 || d > 9 ) {
+					break;
+				}
+				anyDigits = true;
+				if ( mantissa != 0 || d != 0 ) {
+					if ( ++digits > MAX_MANTISSA_DIGITS ) {
+						return parseDoubleSlow( column );
+					}
+					mantissa = mantissa * 10 + d;
+				}
+				--exponent;
+			}
+		}
+
+		if ( !anyDigits ) {
+			return parseDoubleSlow( column );
+		}
+
+		if ( i < end && ( buffer.get( i ) == 'e' || buffer.get( i ) == 'E' ) ) {
+			++i;
+			boolean negativeExponent = false;
+			if ( i < end && ( buffer.get( i ) == '-' || buffer.get( i ) == '+' ) ) {
+				negativeExponent = buffer.get( i ) == '-';
+				++i;
+			}
+
+			int explicitExponent = 0;
+			boolean anyExponentDigits = false;
+			for ( ; i < end; ++i ) {
+				int d = buffer.get( i ) - '0';
+				if ( d < 0 || d > 9 ) {
+					break;
+				}
+				anyExponentDigits = true;
+				if ( explicitExponent < 10000 ) {
+					explicitExponent = explicitExponent * 10 + d;
+				}
+			}
+
+			if ( !anyExponentDigits ) {
+				return parseDoubleSlow( column );
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if ( i != end ) {
+			// Trailing characters (whitespace, type suffixes, garbage) - let the JDK deal with those.
+			return parseDoubleSlow( column );
+		}
+
+		if ( mantissa == 0 ) {
+			return negative ? -0.0 : 0.0;
+		}
+
+		if ( mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22 ) {
+			return parseDoubleSlow( column );
+		}
+
+		// Both operands are exact, so a single multiplication or division yields the correctly
+		// rounded result - the same value Double.parseDouble() would return.
+		double value = mantissa;
+		if ( exponent < 0 ) {
+			value /= POWERS_OF_TEN[-exponent];
+		}
+		else {
+			value *= POWERS_OF_TEN[exponent];
+		}
+
+		return negative ? -value : value;
+	}
+
+	private double parseDoubleSlow( int column )
+	{
+		return Double.parseDouble( getColumn( column ) );
+	}
+
+	private String decode( int start, int end )
+	{
+		int length = end - start;
+		if ( scratch.length < length ) {
+			scratch = new byte[Math.max( length, scratch.length * 2 )];
+		}
+
+		for ( int i = 0; i < length; ++i ) {
+			scratch[i] = buffer.get( start + i );
+		}
+
+		return new String( scratch, 0, length, StandardCharsets.UTF_8 );
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		// Nothing to release by default.
+	}
+}
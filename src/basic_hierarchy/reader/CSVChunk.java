@@ -0,0 +1,151 @@
+package basic_hierarchy.reader;
+
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
+import basic_hierarchy.common.InstanceStorage;
+import basic_hierarchy.common.NodeId;
+import basic_hierarchy.interfaces.Instance;
+
+
+/**
+ * Parses a region of a generated CSV file, which begins and ends on row boundaries.
+ * <p>
+ * Results are kept per chunk, and are meant to be merged in file order once all chunks have been parsed.
+ * Any exception raised while parsing is stored in {@link #failure} instead of being thrown, so that
+ * it can be rethrown unchanged on the merging thread.
+ * </p>
+ * <p>
+ * In lenient mode, rows that fail to parse are recorded in {@link #errors} instead, with line numbers
+ * relative to the beginning of the chunk.
+ * </p>
+ */
+class CSVChunk extends RecursiveAction
+{
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private final CSVRowParser parser;
+    private final InstanceStorage instanceStorage;
+    private final LoadProgress progress;
+
+    /**
+     * Instances of each node, with nodes in order of their first appearance in the chunk. Instances are assigned
+     * to the id as it was written in the first row of the node, which is the key's text.
+     */
+    final LinkedHashMap<NodeId, LinkedList<Instance>> instancesByNode = new LinkedHashMap<>();
+    final Map<String, Integer> classCounts = new HashMap<>();
+    int instanceCount = 0;
+    /** Number of rows in the chunk, including those that failed to parse. */
+    long rowCount = 0;
+    final ParseErrorReport errors;
+    Throwable failure = null;
+
+
+    /**
+     * @param channel
+     *            channel of the file to parse
+     * @param start
+     *            offset of the first row of the chunk
+     * @param end
+     *            offset one past the last row of the chunk
+     * @param layout
+     *            parser that has already read the column layout of the file
+     * @param instanceStorage
+     *            how feature values of instances are to be stored
+     * @param progress
+     *            progress of the whole load, updated as rows of the chunk are parsed
+     * @param maxErrors
+     *            maximum number of errors kept in {@link #errors} in lenient mode, or -1 to fail on the first error
+     */
+    public CSVChunk(
+        FileChannel channel, long start, long end, CSVRowParser layout,
+        InstanceStorage instanceStorage, LoadProgress progress, int maxErrors )
+    {
+        this.errors = maxErrors < 0 ? null : new ParseErrorReport( maxErrors );
+        this.channel = channel;
+        this.start = start;
+        this.end = end;
+        this.parser = new CSVRowParser( layout );
+        this.instanceStorage = instanceStorage;
+        this.progress = progress;
+    }
+
+    @Override
+    protected void compute()
+    {
+        try ( RowTokenizer tokenizer = new MappedFileTokenizer( channel, start, end, MappedFileTokenizer.DEFAULT_WINDOW_SIZE ) ) {
+            String lastAssignedClass = null;
+            LinkedList<Instance> lastInstances = null;
+            String lastNodeId = null;
+            double[] featureBuffer = instanceStorage.retainsData() ? null : new double[parser.getDataColumnCount()];
+            int rowsSinceUpdate = 0;
+            long lastBytesRead = start;
+
+            while ( tokenizer.nextRow() ) {
+                ++rowCount;
+
+                double[] values = featureBuffer != null ? featureBuffer : new double[parser.getDataColumnCount()];
+                try {
+                    parser.parseRow( tokenizer );
+                    parser.parseFeatures( tokenizer, values );
+                }
+                catch ( RuntimeException e ) {
+                    if ( errors == null ) {
+                        throw e;
+                    }
+                    errors.add( rowCount, tokenizer.getRowOffset(), e.getMessage() );
+                    continue;
+                }
+
+                String trueClass = parser.getTrueClass();
+                if ( trueClass != null ) {
+                    Integer count = classCounts.get( trueClass );
+                    classCounts.put( trueClass, count == null ? 1 : count + 1 );
+                }
+
+                String assignedClass = parser.getAssignedClass();
+                // The parser keeps returning the same string for as long as the id does not change.
+                if ( assignedClass != lastAssignedClass ) {
+                    lastAssignedClass = assignedClass;
+                    lastInstances = instancesByNode.get( parser.getAssignedClassId() );
+                    if ( lastInstances == null ) {
+                        lastInstances = new LinkedList<>();
+                        instancesByNode.put( parser.getAssignedClassId(), lastInstances );
+                        lastNodeId = assignedClass;
+                    }
+                    else {
+                        // The id may be formatted differently than in the node's first row.
+                        lastNodeId = lastInstances.getFirst().getNodeId();
+                    }
+                }
+
+                lastInstances.add( instanceStorage.createInstance( parser.getInstanceName(), lastNodeId, values, trueClass ) );
+                instanceCount++;
+
+                if ( ++rowsSinceUpdate == LoadProgress.ROWS_PER_UPDATE ) {
+                    if ( isCancelled() ) {
+                        // Results of this chunk are no longer needed.
+                        return;
+                    }
+
+                    long bytesRead = tokenizer.getBytesRead();
+                    progress.advance( rowsSinceUpdate, bytesRead - lastBytesRead );
+                    rowsSinceUpdate = 0;
+                    lastBytesRead = bytesRead;
+                }
+            }
+
+            progress.advance( rowsSinceUpdate, end - lastBytesRead );
+        }
+        catch ( Throwable e ) {
+            failure = e;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package basic_hierarchy.reader;
+
+import basic_hierarchy.common.NodeId;
+
+
+/**
+ * Validates rows of a generated CSV file, and extracts their attributes.
+ * <p>
+ * The parser remembers ids from the previous row, since consecutive rows usually share them.
+ * In that case the strings are reused, and validation is skipped.
+ * </p>
+ */
+class CSVRowParser
+{
+    private final boolean withInstancesNameAttribute;
+    private final boolean withTrueClassAttribute;
+    private final int minimumColumnCount;
+    private int totalColumnCount = -1;
+    private int dataColumnCount = -1;
+
+    private int[] projectedColumns = null;
+    private String[] projectedColumnNames = null;
+    /** Indices of the columns (within the row) parsed as instance features. */
+    private int[] featureColumns = null;
+
+    private String assignedClass;
+    private NodeId assignedClassId;
+    private String trueClass;
+    private String instanceName;
+
+
+    /**
+     * @param withInstancesNameAttribute
+     *            whether rows include a column containing instance names
+     * @param withTrueClassAttribute
+     *            whether rows include a column containing true class
+     */
+    public CSVRowParser( boolean withInstancesNameAttribute, boolean withTrueClassAttribute )
+    {
+        this.withInstancesNameAttribute = withInstancesNameAttribute;
+        this.withTrueClassAttribute = withTrueClassAttribute;
+        this.minimumColumnCount = 1 + boolToInt( withTrueClassAttribute ) + boolToInt( withInstancesNameAttribute );
+    }
+
+    /**
+     * Creates a new parser with the same settings and column layout as the specified parser.
+     *
+     * @param layout
+     *            the parser to copy settings from
+     */
+    public CSVRowParser( CSVRowParser layout )
+    {
+        this( layout.withInstancesNameAttribute, layout.withTrueClassAttribute );
+        this.totalColumnCount = layout.totalColumnCount;
+        this.dataColumnCount = layout.dataColumnCount;
+        this.projectedColumns = layout.projectedColumns;
+        this.projectedColumnNames = layout.projectedColumnNames;
+        this.featureColumns = layout.featureColumns;
+    }
+
+    /**
+     * Restricts instance features to the specified data columns. Must be called before the layout is read.
+     *
+     * @param columns
+     *            indices of data columns to parse (0 being the first data column), in the order in which they
+     *            should appear in instance features, or null to parse all data columns.
+     */
+    public void setProjectedColumns( int[] columns )
+    {
+        this.projectedColumns = columns;
+        this.projectedColumnNames = null;
+    }
+
+    /**
+     * Restricts instance features to the data columns with the specified header names. Must be called before
+     * the layout is read. The projection is resolved once {@link #readDataNames(RowTokenizer)} has been called.
+     *
+     * @param names
+     *            names of data columns to parse, in the order in which they should appear in instance features,
+     *            or null to parse all data columns.
+     */
+    public void setProjectedColumnNames( String[] names )
+    {
+        this.projectedColumnNames = names;
+        this.projectedColumns = null;
+    }
+
+    /**
+     * Determines the column layout of the file from its first row.
+     *
+     * @param tokenizer
+     *            tokenizer positioned at the first row of the file
+     */
+    public void readLayout( RowTokenizer tokenizer )
+    {
+        int columnCount = tokenizer.getColumnCount();
+
+        // Make sure that the file is valid -- it needs to have a node ID column,
+        // at most 2 optional columns, and at least one data column.
+        if ( columnCount <= minimumColumnCount ) {
+            throw new RuntimeException(
+                String.format(
+                    "Input data is not formatted correctly. Each line should contain at least a node ID columm and a value column " +
+                        "(and optionally class attribute and/or instance name).%nLine: %s",
+                    tokenizer.getLine()
+                )
+            );
+        }
+        else {
+            // File seems to be valid -- compute column counts for all the other rows.
+            totalColumnCount = columnCount;
+            dataColumnCount = totalColumnCount - minimumColumnCount;
+        }
+
+        if ( projectedColumns != null ) {
+            for ( int column : projectedColumns ) {
+                if ( column < 0 || column >= dataColumnCount ) {
+                    throw new RuntimeException(
+                        String.format(
+                            "Projected column index %s is out of range - input data has %s data columns.",
+                            column, dataColumnCount
+                        )
+                    );
+                }
+            }
+            projectFeatures( projectedColumns );
+        }
+        else if ( projectedColumnNames == null ) {
+            int[] allColumns = new int[dataColumnCount];
+            for ( int i = 0; i < dataColumnCount; ++i ) {
+                allColumns[i] = i;
+            }
+            projectFeatures( allColumns );
+        }
+    }
+
+    private void projectFeatures( int[] dataColumns )
+    {
+        featureColumns = new int[dataColumns.length];
+        for ( int i = 0; i < dataColumns.length; ++i ) {
+            featureColumns[i] = minimumColumnCount + dataColumns[i];
+        }
+    }
+
+    /**
+     * @param tokenizer
+     *            tokenizer positioned at the header row of the file
+     * @return names of the data columns that are parsed as instance features
+     */
+    public String[] readDataNames( RowTokenizer tokenizer )
+    {
+        if ( projectedColumnNames != null ) {
+            int[] dataColumns = new int[projectedColumnNames.length];
+            for ( int i = 0; i < projectedColumnNames.length; ++i ) {
+                dataColumns[i] = -1;
+                for ( int j = 0; j < dataColumnCount && dataColumns[i] < 0; ++j ) {
+                    if ( tokenizer.columnEquals( minimumColumnCount + j, projectedColumnNames[i] ) ) {
+                        dataColumns[i] = j;
+                    }
+                }
+
+                if ( dataColumns[i] < 0 ) {
+                    throw new RuntimeException(
+                        String.format(
+                            "Projected column '%s' does not exist in input data.%nLine: %s",
+                            projectedColumnNames[i], tokenizer.getLine()
+                        )
+                    );
+                }
+            }
+            projectFeatures( dataColumns );
+        }
+
+        String[] dataNames = new String[featureColumns.length];
+        for ( int i = 0; i < featureColumns.length; ++i ) {
+            dataNames[i] = tokenizer.getColumn( featureColumns[i] );
+        }
+        return dataNames;
+    }
+
+    /**
+     * Validates the current row of the specified tokenizer, and extracts its assigned class,
+     * true class and instance name.
+     *
+     * @param tokenizer
+     *            the tokenizer to read from
+     */
+    public void parseRow( RowTokenizer tokenizer )
+    {
+        int columnCount = tokenizer.getColumnCount();
+
+        // Assert that the row has the expected number of columns.
+        if ( columnCount != totalColumnCount ) {
+            throw new RuntimeException(
+                String.format(
+                    "Input data not formatted corectly - each line should contain a total of %s columns (this line has %s).%nLine: %s%n",
+                    totalColumnCount, columnCount, tokenizer.getLine()
+                )
+            );
+        }
+
+        // Ids are only remembered once they have been validated, so that rows repeating an invalid id
+        // are rejected as well (when invalid rows are skipped rather than aborting the load).
+        if ( !tokenizer.columnEquals( 0, assignedClass ) ) {
+            String newAssignedClass = tokenizer.getColumn( 0 );
+            NodeId newAssignedClassId = NodeId.parseGenerated( newAssignedClass );
+            if ( newAssignedClassId == null ) {
+                throw new RuntimeException(
+                    String.format(
+                        "Assigned class is not a valid node id: '%s'%nLine:%s%n",
+                        newAssignedClass, tokenizer.getLine()
+                    )
+                );
+            }
+            assignedClass = newAssignedClass;
+            assignedClassId = newAssignedClassId;
+        }
+
+        if ( withTrueClassAttribute ) {
+            // If present, true class is always assumed to be in the second column.
+            if ( !tokenizer.columnEquals( 1, trueClass ) ) {
+                String newTrueClass = tokenizer.getColumn( 1 );
+                if ( NodeId.parseGenerated( newTrueClass ) == null ) {
+                    throw new RuntimeException(
+                        String.format(
+                            "True class is not a valid node id: '%s'%nLine: %s%n",
+                            newTrueClass, tokenizer.getLine()
+                        )
+                    );
+                }
+                trueClass = newTrueClass;
+            }
+        }
+
+        if ( withInstancesNameAttribute ) {
+            // If present, instance name is assumed to be in the second column, unless
+            // true class is also present - then it is assumed to be in the third column.
+            instanceName = tokenizer.getColumn( 1 + boolToInt( withTrueClassAttribute ) );
+        }
+    }
+
+    /**
+     * Attempts to extract instance features from the current row of the specified tokenizer.
+     *
+     * @param tokenizer
+     *            the tokenizer to read from; its current line is used for error reporting.
+     * @return array of data values - instance features
+     * @throws NumberFormatException
+     *             if one of the data values was not a parsable {@code double}
+     *             (indicating error in input file, or incorrect reader settings)
+     */
+    public double[] parseFeatures( RowTokenizer tokenizer )
+    {
+        double[] values = new double[featureColumns.length];
+        parseFeatures( tokenizer, values );
+        return values;
+    }
+
+    /**
+     * Attempts to extract instance features from the current row of the specified tokenizer into
+     * the specified array.
+     *
+     * @param tokenizer
+     *            the tokenizer to read from; its current line is used for error reporting.
+     * @param values
+     *            array to store the instance features in. Must be at least {@link #getDataColumnCount()} long.
+     * @throws NumberFormatException
+     *             if one of the data values was not a parsable {@code double}
+     *             (indicating error in input file, or incorrect reader settings)
+     */
+    public void parseFeatures( RowTokenizer tokenizer, double[] values )
+    {
+        // Columns that are not projected are never converted.
+        for ( int j = 0; j < featureColumns.length; ++j ) {
+            try {
+                values[j] = tokenizer.getDouble( featureColumns[j] );
+            }
+            catch ( NumberFormatException e ) {
+                throw new NumberFormatException(
+                    String.format(
+                        "Failed to parse '%s' as double. All instance features should be valid floating point numbers.%nLine: %s%n",
+                        tokenizer.getColumn( featureColumns[j] ), tokenizer.getLine()
+                    )
+                );
+            }
+        }
+    }
+
+    /**
+     * @return number of instance features (data columns that are parsed), or -1 if the projection
+     *         hasn't been determined yet.
+     */
+    public int getDataColumnCount()
+    {
+        return featureColumns == null ? -1 : featureColumns.length;
+    }
+
+    /**
+     * @return assigned class of the last parsed row.
+     */
+    public String getAssignedClass()
+    {
+        return assignedClass;
+    }
+
+    /**
+     * @return parsed assigned class of the last parsed row. The id is parsed only when the assigned class changes.
+     */
+    public NodeId getAssignedClassId()
+    {
+        return assignedClassId;
+    }
+
+    /**
+     * @return true class of the last parsed row, or null if the file has no true class column.
+     */
+    public String getTrueClass()
+    {
+        return withTrueClassAttribute ? trueClass : null;
+    }
+
+    /**
+     * @return instance name of the last parsed row, or null if the file has no instance name column.
+     */
+    public String getInstanceName()
+    {
+        return instanceName;
+    }
+
+    /**
+     * Converts boolean value to an integer.
+     *
+     * @param b
+     *            the boolean value to convert
+     * @return 1 if argument is true, 0 otherwise.
+     */
+    private static int boolToInt( boolean b )
+    {
+        return b ? 1 : 0;
+    }
+}
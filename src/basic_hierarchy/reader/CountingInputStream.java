@@ -0,0 +1,62 @@
+package basic_hierarchy.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * {@link FilterInputStream} counting the bytes read from the underlying stream, for progress reporting.
+ */
+class CountingInputStream extends FilterInputStream
+{
+	private volatile long count = 0;
+
+
+	public CountingInputStream( InputStream in )
+	{
+		super( in );
+	}
+
+	/**
+	 * @return number of bytes read from the underlying stream so far.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int result = super.read();
+		if ( result >= 0 ) {
+			++count;
+		}
+		return result;
+	}
+
+	@Override
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		int result = super.read( b, off, len );
+		if ( result > 0 ) {
+			count += result;
+		}
+		return result;
+	}
+
+	@Override
+	public long skip( long n ) throws IOException
+	{
+		long result = super.skip( n );
+		count += result;
+		return result;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+}
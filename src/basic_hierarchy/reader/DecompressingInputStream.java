@@ -0,0 +1,371 @@
+package basic_hierarchy.reader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+
+/**
+ * Stream of decompressed contents of a gzip file, or of the first file entry of a zip archive.
+ * <p>
+ * Decompression runs on a separate thread, which fills a small ring of buffers ahead of the reader,
+ * so that inflating the input overlaps with parsing it. Buffers are recycled once they have been read.
+ * Any exception raised while decompressing is rethrown by the next read.
+ * </p>
+ */
+class DecompressingInputStream extends InputStream
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int BUFFER_COUNT = 4;
+
+	private static final byte[] GZIP_SIGNATURE = { 0x1f, (byte)0x8b };
+	private static final byte[] ZIP_SIGNATURE = { 'P', 'K', 3, 4 };
+
+	/** Marks the end of input. */
+	private static final Chunk END = new Chunk( 0 );
+
+	private final InputStream source;
+	private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<Chunk>( BUFFER_COUNT );
+	private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>( BUFFER_COUNT );
+	private final Thread producer;
+
+	private volatile IOException failure = null;
+	private volatile boolean closed = false;
+	private Chunk current = null;
+	private int currentPosition = 0;
+	private boolean finished = false;
+
+
+	/**
+	 * @param source
+	 *            stream of decompressed data. It is read on a separate thread, and closed once
+	 *            all of its data has been read, or once this stream is closed.
+	 */
+	public DecompressingInputStream( InputStream source )
+	{
+		this.source = source;
+
+		for ( int i = 0; i < BUFFER_COUNT; ++i ) {
+			free.add( new Chunk( BUFFER_SIZE ) );
+		}
+
+		producer = new Thread(
+			new Runnable() {
+				@Override
+				public void run()
+				{
+					decompress();
+				}
+			},
+			"hierarchy-decompressor"
+		);
+		producer.setDaemon( true );
+		producer.start();
+	}
+
+	/**
+	 * @param file
+	 *            the file to check
+	 * @return true if the file begins with a gzip or zip signature.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the file
+	 */
+	public static boolean isCompressed( File file ) throws IOException
+	{
+		try ( InputStream in = new FileInputStream( file ) ) {
+			byte[] header = readHeader( in );
+			return startsWith( header, GZIP_SIGNATURE ) || startsWith( header, ZIP_SIGNATURE );
+		}
+	}
+
+	/**
+	 * @return up to the first 4 bytes of the specified stream.
+	 */
+	private static byte[] readHeader( InputStream in ) throws IOException
+	{
+		byte[] header = new byte[ZIP_SIGNATURE.length];
+		int length = 0;
+		for ( int read; length < header.length && ( read = in.read( header, length, header.length - length ) ) > 0; ) {
+			length += read;
+		}
+
+		byte[] result = new byte[length];
+		System.arraycopy( header, 0, result, 0, length );
+		return result;
+	}
+
+	private static boolean startsWith( byte[] header, byte[] signature )
+	{
+		if ( header.length < signature.length ) {
+			return false;
+		}
+		for ( int i = 0; i < signature.length; ++i ) {
+			if ( header[i] != signature[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Opens the specified compressed file. Zip archives are read from their first entry that is not a directory.
+	 *
+	 * @param file
+	 *            the file to open
+	 * @return stream of the decompressed contents of the file
+	 * @throws IOException
+	 *             if an IO error occurred while opening the file, the file is neither a gzip file nor a zip archive,
+	 *             or the zip archive does not contain any files
+	 */
+	public static DecompressingInputStream open( File file ) throws IOException
+	{
+		return open( new FileInputStream( file ), file.getPath() );
+	}
+
+	/**
+	 * Opens the specified compressed stream. Zip archives are read from their first entry that is not a directory.
+	 *
+	 * @param stream
+	 *            stream of the compressed file. It is closed along with the returned stream.
+	 * @param name
+	 *            name of the file, used for error reporting
+	 * @return stream of the decompressed contents
+	 * @throws IOException
+	 *             if an IO error occurred while reading the stream, the stream contains neither a gzip file nor
+	 *             a zip archive, or the zip archive does not contain any files
+	 */
+	public static DecompressingInputStream open( InputStream stream, String name ) throws IOException
+	{
+		InputStream in = openIfCompressed( stream, name );
+		if ( !( in instanceof DecompressingInputStream ) ) {
+			in.close();
+			throw new IOException( "File is neither a gzip file nor a zip archive: " + name );
+		}
+		return (DecompressingInputStream)in;
+	}
+
+	/**
+	 * Opens the specified stream, decompressing it if it begins with a gzip or zip signature.
+	 *
+	 * @param stream
+	 *            stream of the file. It is closed along with the returned stream.
+	 * @param name
+	 *            name of the file, used for error reporting
+	 * @return stream of the decompressed contents, or of the original contents if the stream is not compressed
+	 * @throws IOException
+	 *             if an IO error occurred while reading the stream, or the zip archive does not contain any files
+	 */
+	public static InputStream openIfCompressed( InputStream stream, String name ) throws IOException
+	{
+		InputStream in = new BufferedInputStream( stream, BUFFER_SIZE );
+
+		try {
+			in.mark( ZIP_SIGNATURE.length );
+			byte[] header = readHeader( in );
+			in.reset();
+
+			if ( startsWith( header, GZIP_SIGNATURE ) ) {
+				return new DecompressingInputStream( new GZIPInputStream( in, BUFFER_SIZE ) );
+			}
+
+			if ( startsWith( header, ZIP_SIGNATURE ) ) {
+				ZipInputStream zip = new ZipInputStream( in );
+				for ( ZipEntry entry; ( entry = zip.getNextEntry() ) != null; ) {
+					if ( !entry.isDirectory() ) {
+						return new DecompressingInputStream( zip );
+					}
+				}
+				throw new IOException( "Zip archive does not contain any files: " + name );
+			}
+
+			return in;
+		}
+		catch ( IOException | RuntimeException e ) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Body of the producer thread.
+	 */
+	private void decompress()
+	{
+		try {
+			while ( !closed ) {
+				Chunk chunk = free.take();
+
+				int length = 0;
+				for ( int read; length < BUFFER_SIZE && ( read = source.read( chunk.data, length, BUFFER_SIZE - length ) ) >= 0; ) {
+					length += read;
+				}
+				if ( closed ) {
+					return;
+				}
+				if ( length == 0 ) {
+					filled.put( END );
+					return;
+				}
+
+				chunk.length = length;
+				filled.put( chunk );
+			}
+		}
+		catch ( InterruptedException e ) {
+			// Stream has been closed.
+		}
+		catch ( IOException e ) {
+			failure = e;
+			signalEnd();
+		}
+		catch ( RuntimeException e ) {
+			failure = new IOException( e );
+			signalEnd();
+		}
+		finally {
+			try {
+				source.close();
+			}
+			catch ( IOException e ) {
+				// Nothing more can be done about it.
+			}
+		}
+	}
+
+	private void signalEnd()
+	{
+		try {
+			filled.put( END );
+		}
+		catch ( InterruptedException e ) {
+			// Stream has been closed.
+		}
+	}
+
+	/**
+	 * Makes sure that {@link #current} has data left to read.
+	 *
+	 * @return false if the end of input has been reached.
+	 */
+	private boolean ensureData() throws IOException
+	{
+		if ( current != null && currentPosition < current.length ) {
+			return true;
+		}
+		if ( finished ) {
+			return false;
+		}
+
+		if ( current != null && current != END ) {
+			free.add( current );
+			current = null;
+		}
+
+		try {
+			current = filled.take();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while waiting for decompressed data." );
+		}
+		currentPosition = 0;
+
+		if ( current == END ) {
+			finished = true;
+			if ( failure != null ) {
+				throw failure;
+			}
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if ( !ensureData() ) {
+			return -1;
+		}
+		return current.data[currentPosition++] & 0xff;
+	}
+
+	@Override
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		if ( len == 0 ) {
+			return 0;
+		}
+		if ( !ensureData() ) {
+			return -1;
+		}
+
+		int count = Math.min( len, current.length - currentPosition );
+		System.arraycopy( current.data, currentPosition, b, off, count );
+		currentPosition += count;
+		return count;
+	}
+
+	@Override
+	public int available()
+	{
+		return current == null ? 0 : current.length - currentPosition;
+	}
+
+	/**
+	 * Stops the producer thread, and waits for it to finish. Unread data is discarded.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		finished = true;
+		closed = true;
+
+		boolean interrupted = false;
+		while ( producer.isAlive() ) {
+			producer.interrupt();
+
+			// The source may have swallowed the interrupt while being read, so also make room for the producer,
+			// in case it is blocked waiting for a free buffer, or for space in the full queue.
+			for ( Chunk chunk; ( chunk = filled.poll() ) != null; ) {
+				if ( chunk != END ) {
+					free.offer( chunk );
+				}
+			}
+
+			try {
+				producer.join( 100 );
+			}
+			catch ( InterruptedException e ) {
+				interrupted = true;
+			}
+		}
+
+		if ( interrupted ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Buffer of decompressed data passed from the producer thread to the reader.
+	 */
+	private static class Chunk
+	{
+		private final byte[] data;
+		private int length;
+
+
+		public Chunk( int size )
+		{
+			this.data = new byte[size];
+		}
+	}
+}
@@ -0,0 +1,421 @@
+package basic_hierarchy.reader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import basic_hierarchy.common.Constants;
+import basic_hierarchy.common.NodeId;
+
+
+/**
+ * Sorts rows of a generated CSV file by their assigned class, using an external merge sort.
+ * <p>
+ * Rows are collected in memory until the memory budget is exhausted, at which point they are sorted
+ * and written out to a temporary file (a run). Runs are then merged, and the merged rows are supplied
+ * by the returned tokenizer. If all rows fit within the budget, nothing is written to disk.
+ * </p>
+ * <p>
+ * The sort is stable: rows with the same assigned class keep their relative order from the input file.
+ * </p>
+ */
+class ExternalRowSorter
+{
+	/** Maximum number of runs merged at once, to limit the number of simultaneously open files. */
+	private static final int MAX_MERGE_FAN_IN = 64;
+
+	/** Estimated memory used by a buffered row, excluding the characters of its line. */
+	private static final long ROW_OVERHEAD = 96;
+
+	private static final Comparator<SortedRow> ROW_COMPARATOR = new Comparator<SortedRow>() {
+		@Override
+		public int compare( SortedRow o1, SortedRow o2 )
+		{
+			return o1.nodeId.compareTo( o2.nodeId );
+		}
+	};
+
+	private static final Comparator<RunReader> RUN_COMPARATOR = new Comparator<RunReader>() {
+		@Override
+		public int compare( RunReader o1, RunReader o2 )
+		{
+			int result = o1.nodeId.compareTo( o2.nodeId );
+			// Earlier runs contain earlier rows of the input file - prefer them to keep the sort stable.
+			return result != 0 ? result : Integer.compare( o1.index, o2.index );
+		}
+	};
+
+
+	private ExternalRowSorter()
+	{
+		// Static class.
+	}
+
+	/**
+	 * Reads all rows from the specified tokenizer, validates them, and sorts them by their assigned class.
+	 * The source tokenizer is closed once all of its rows have been read.
+	 *
+	 * @param source
+	 *            tokenizer supplying rows of the input file
+	 * @param parser
+	 *            parser configured for the layout of the input file, used to validate rows
+	 * @param withColumnHeaders
+	 *            whether the first row contains column headers. If so, it is supplied first by the returned tokenizer.
+	 * @param memoryBudget
+	 *            approximate amount of memory, in bytes, that may be used to buffer rows
+	 * @param errorReport
+	 *            if not null, rows that fail to parse (including their instance features) are recorded in this
+	 *            report and left out of the sorted output, instead of causing an exception
+	 * @param progress
+	 *            progress of the load, which is advanced by the bytes of the input file read while sorting.
+	 *            Rows are not reported, since they are counted once the sorted rows are loaded.
+	 * @return tokenizer supplying the rows in sorted order. Closing it deletes any temporary files.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the input or writing temporary files
+	 * @throws java.io.InterruptedIOException
+	 *             if the current thread has been interrupted while sorting
+	 */
+	public static RowTokenizer sort(
+		RowTokenizer source,
+		CSVRowParser parser,
+		boolean withColumnHeaders,
+		long memoryBudget,
+		ParseErrorReport errorReport,
+		LoadProgress progress ) throws IOException
+	{
+		String header = null;
+		List<SortedRow> rows = new ArrayList<SortedRow>();
+		List<File> runs = new ArrayList<File>();
+		boolean success = false;
+
+		try ( RowTokenizer tokenizer = source ) {
+			boolean firstRow = true;
+			long usedMemory = 0;
+			long lineNumber = 0;
+			long lastBytesRead = 0;
+			double[] values = null;
+
+			while ( tokenizer.nextRow() ) {
+				if ( ++lineNumber % LoadProgress.ROWS_PER_UPDATE == 0 ) {
+					long bytesRead = Math.max( tokenizer.getBytesRead(), lastBytesRead );
+					progress.advance( 0, bytesRead - lastBytesRead );
+					lastBytesRead = bytesRead;
+				}
+				if ( firstRow ) {
+					firstRow = false;
+					parser.readLayout( tokenizer );
+
+					if ( withColumnHeaders ) {
+						parser.readDataNames( tokenizer );
+						header = tokenizer.getLine();
+						continue;
+					}
+				}
+
+				// Validate ids while rows are still in file order, so that errors point at the first invalid row.
+				// Line numbers are lost once rows are sorted, so in lenient mode features are validated here as well.
+				try {
+					parser.parseRow( tokenizer );
+					if ( errorReport != null ) {
+						if ( values == null ) {
+							values = new double[parser.getDataColumnCount()];
+						}
+						parser.parseFeatures( tokenizer, values );
+					}
+				}
+				catch ( RuntimeException e ) {
+					if ( errorReport == null ) {
+						throw e;
+					}
+					errorReport.add( lineNumber, tokenizer.getRowOffset(), e.getMessage() );
+					continue;
+				}
+
+				String line = tokenizer.getLine();
+				NodeId nodeId = parser.getAssignedClassId();
+				rows.add( new SortedRow( line, nodeId ) );
+
+				usedMemory += ROW_OVERHEAD + 2L * line.length() + 4L * nodeId.getDepth();
+				if ( usedMemory >= memoryBudget ) {
+					runs.add( writeRun( rows ) );
+					rows.clear();
+					usedMemory = 0;
+				}
+			}
+
+			Collections.sort( rows, ROW_COMPARATOR );
+			if ( !runs.isEmpty() && !rows.isEmpty() ) {
+				runs.add( writeRun( rows ) );
+				rows.clear();
+			}
+
+			progress.advance( 0, Math.max( tokenizer.getBytesRead(), lastBytesRead ) - lastBytesRead );
+
+			while ( runs.size() > MAX_MERGE_FAN_IN ) {
+				runs = mergePass( runs );
+			}
+
+			RowTokenizer result = runs.isEmpty()
+				? new SortedRowsTokenizer( header, rows.iterator() )
+				: new MergingTokenizer( header, runs );
+			success = true;
+			return result;
+		}
+		finally {
+			if ( !success ) {
+				deleteRuns( runs );
+			}
+		}
+	}
+
+	/**
+	 * Sorts the specified rows and writes them to a new temporary file.
+	 */
+	private static File writeRun( List<SortedRow> rows ) throws IOException
+	{
+		Collections.sort( rows, ROW_COMPARATOR );
+
+		File run = File.createTempFile( "hierarchy-run", ".csv" );
+		try ( Writer writer = openWriter( run ) ) {
+			for ( SortedRow row : rows ) {
+				writer.write( row.line );
+				writer.write( '\n' );
+			}
+		}
+		catch ( IOException e ) {
+			run.delete();
+			throw e;
+		}
+		return run;
+	}
+
+	/**
+	 * Merges groups of consecutive runs, so that the order of runs (and thus stability of the sort) is preserved.
+	 *
+	 * @return the merged runs. The specified runs are deleted.
+	 * @throws java.io.InterruptedIOException
+	 *             if the current thread has been interrupted while merging
+	 */
+	private static List<File> mergePass( List<File> runs ) throws IOException
+	{
+		List<File> result = new ArrayList<File>();
+
+		try {
+			for ( int i = 0; i < runs.size(); i += MAX_MERGE_FAN_IN ) {
+				List<File> group = runs.subList( i, Math.min( i + MAX_MERGE_FAN_IN, runs.size() ) );
+
+				File merged = File.createTempFile( "hierarchy-run", ".csv" );
+				result.add( merged );
+
+				try ( MergingTokenizer tokenizer = new MergingTokenizer( null, group ); Writer writer = openWriter( merged ) ) {
+					String line;
+					for ( long lineCount = 1; ( line = tokenizer.readLine() ) != null; ++lineCount ) {
+						writer.write( line );
+						writer.write( '\n' );
+
+						if ( lineCount % LoadProgress.ROWS_PER_UPDATE == 0 ) {
+							LoadProgress.checkInterrupted();
+						}
+					}
+				}
+			}
+		}
+		catch ( IOException | RuntimeException e ) {
+			deleteRuns( result );
+			throw e;
+		}
+
+		return result;
+	}
+
+	private static Writer openWriter( File file ) throws IOException
+	{
+		return new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ) );
+	}
+
+	private static void deleteRuns( List<File> runs )
+	{
+		for ( File run : runs ) {
+			run.delete();
+		}
+	}
+
+	/**
+	 * A buffered row along with its parsed assigned class.
+	 */
+	private static class SortedRow
+	{
+		private final String line;
+		private final NodeId nodeId;
+
+
+		public SortedRow( String line, NodeId nodeId )
+		{
+			this.line = line;
+			this.nodeId = nodeId;
+		}
+	}
+
+	/**
+	 * Supplies the header (if any), followed by rows that have been sorted in memory.
+	 */
+	private static class SortedRowsTokenizer extends SplitRowTokenizer
+	{
+		private String header;
+		private final Iterator<SortedRow> rows;
+
+
+		public SortedRowsTokenizer( String header, Iterator<SortedRow> rows )
+		{
+			this.header = header;
+			this.rows = rows;
+		}
+
+		@Override
+		protected String readLine()
+		{
+			if ( header != null ) {
+				String result = header;
+				header = null;
+				return result;
+			}
+
+			return rows.hasNext() ? rows.next().line : null;
+		}
+
+		@Override
+		public void close()
+		{
+			// Nothing to release.
+		}
+	}
+
+	/**
+	 * Supplies the header (if any), followed by rows merged from sorted runs.
+	 * Closing the tokenizer deletes the runs.
+	 */
+	private static class MergingTokenizer extends SplitRowTokenizer
+	{
+		private String header;
+		private final List<File> runs;
+		private final List<RunReader> readers = new ArrayList<RunReader>();
+		private final PriorityQueue<RunReader> queue;
+
+
+		public MergingTokenizer( String header, List<File> runs ) throws IOException
+		{
+			this.header = header;
+			this.runs = runs;
+			this.queue = new PriorityQueue<RunReader>( Math.max( 1, runs.size() ), RUN_COMPARATOR );
+
+			try {
+				for ( int i = 0; i < runs.size(); ++i ) {
+					RunReader reader = new RunReader( runs.get( i ), i );
+					readers.add( reader );
+					if ( reader.advance() ) {
+						queue.add( reader );
+					}
+				}
+			}
+			catch ( IOException | RuntimeException e ) {
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		protected String readLine() throws IOException
+		{
+			if ( header != null ) {
+				String result = header;
+				header = null;
+				return result;
+			}
+
+			RunReader reader = queue.poll();
+			if ( reader == null ) {
+				return null;
+			}
+
+			String result = reader.line;
+			if ( reader.advance() ) {
+				queue.add( reader );
+			}
+			return result;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			IOException failure = null;
+			for ( RunReader reader : readers ) {
+				try {
+					reader.close();
+				}
+				catch ( IOException e ) {
+					failure = e;
+				}
+			}
+			readers.clear();
+			queue.clear();
+			deleteRuns( runs );
+
+			if ( failure != null ) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * Reads rows of a single run, keeping track of the assigned class of the current row.
+	 */
+	private static class RunReader
+	{
+		private final BufferedReader reader;
+		private final int index;
+		private String line;
+		private NodeId nodeId;
+
+
+		public RunReader( File run, int index ) throws IOException
+		{
+			this.reader = new BufferedReader( new InputStreamReader( new FileInputStream( run ), StandardCharsets.UTF_8 ) );
+			this.index = index;
+		}
+
+		/**
+		 * @return true if the next row has been read, false if the end of the run has been reached.
+		 */
+		public boolean advance() throws IOException
+		{
+			line = reader.readLine();
+			if ( line == null ) {
+				nodeId = null;
+				return false;
+			}
+
+			// Rows have been validated before being written out, so the id is known to be correct.
+			int end = line.indexOf( Constants.DELIMITER );
+			nodeId = NodeId.parseGenerated( end < 0 ? line : line.substring( 0, end ) );
+			return true;
+		}
+
+		public void close() throws IOException
+		{
+			reader.close();
+		}
+	}
+}
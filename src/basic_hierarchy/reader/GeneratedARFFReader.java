@@ -1,25 +1,49 @@
 package basic_hierarchy.reader;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import basic_hierarchy.common.Constants;
 import basic_hierarchy.common.HierarchyBuilder;
+import basic_hierarchy.common.InstanceStorage;
 import basic_hierarchy.implementation.BasicHierarchy;
-import basic_hierarchy.implementation.BasicInstance;
 import basic_hierarchy.implementation.BasicNode;
 import basic_hierarchy.interfaces.DataReader;
 import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.InstanceConsumer;
 import basic_hierarchy.interfaces.Node;
-import weka.core.Instances;
-import weka.core.converters.ConverterUtils.DataSource;
+import basic_hierarchy.interfaces.ProgressListener;
 
 public class GeneratedARFFReader implements DataReader {
 
+	private InstanceStorage instanceStorage = InstanceStorage.DOUBLE;
+
+
+	/**
+	 * @param instanceStorage
+	 *            how feature values of loaded instances are stored. Defaults to {@link InstanceStorage#DOUBLE}.
+	 */
+	public void setInstanceStorage(InstanceStorage instanceStorage)
+	{
+		if(instanceStorage == null)
+		{
+			throw new IllegalArgumentException("Instance storage must not be null.");
+		}
+		this.instanceStorage = instanceStorage;
+	}
+
 	@Override
 	public Hierarchy load(
 		String filePath,
@@ -30,54 +54,118 @@ public class GeneratedARFFReader implements DataReader {
 		boolean useSubtree ) throws IOException
 	{
 		File inputFile = new File(filePath);
-		if(!inputFile.exists() && inputFile.isDirectory())
+		if(!inputFile.exists() || inputFile.isDirectory())
 		{
-			System.err.println("Cannot access to file: " + filePath + ". Does it exist and is it a "
-					+ "weka ARFF file?\n");
-			System.exit(1);
+			throw new IOException("Cannot access to file: " + filePath + ". Does it exist and is it a "
+					+ "weka ARFF file?");
 		}
-		DataSource source = null;
-		Instances data = null;
-		try {
-			source = new DataSource(inputFile.getAbsolutePath());
-			data = source.getDataSet();			
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-			System.exit(1);
+
+		return load(inputFile, withInstancesNameAttribute, withClassAttribute, fixBreadthGaps, useSubtree,
+				new LoadProgress(null, inputFile.length()));
+	}
+
+	/**
+	 * Loads the specified file on the specified executor, the same way as
+	 * {@link #load(String, boolean, boolean, boolean, boolean, boolean)}.
+	 * <p>
+	 * Settings of this reader must not be changed until the load is complete.
+	 * </p>
+	 * 
+	 * @param executor
+	 *            the executor to run the load on
+	 * @param listener
+	 *            listener to notify about progress, or null
+	 * @return future of the loaded hierarchy. Cancelling it with {@code mayInterruptIfRunning} set to true
+	 *         stops the load within a few thousand instances. Errors are reported through {@link Future#get()}.
+	 */
+	public Future<Hierarchy> loadAsync(
+		Executor executor,
+		final String filePath,
+		final boolean withInstancesNameAttribute,
+		final boolean withClassAttribute,
+		final boolean withColumnHeaders,
+		final boolean fixBreadthGaps,
+		final boolean useSubtree,
+		final ProgressListener listener )
+	{
+		return LoadProgress.submit(executor, new Callable<Hierarchy>() {
+			@Override
+			public Hierarchy call() throws IOException
+			{
+				File inputFile = new File(filePath);
+				if(!inputFile.exists() || inputFile.isDirectory())
+				{
+					throw new IOException("Cannot access to file: " + filePath + ". Does it exist and is it a "
+							+ "weka ARFF file?");
+				}
+
+				return load(inputFile, withInstancesNameAttribute, withClassAttribute, fixBreadthGaps, useSubtree,
+						new LoadProgress(listener, inputFile.length()));
+			}
+		});
+	}
+
+	/**
+	 * Reads the specified file incrementally with {@link ARFFParser}, and builds the hierarchy.
+	 */
+	private Hierarchy load(
+		File inputFile,
+		boolean withInstancesNameAttribute,
+		boolean withClassAttribute,
+		boolean fixBreadthGaps,
+		boolean useSubtree,
+		LoadProgress progress ) throws IOException
+	{
+		CountingInputStream counter = new CountingInputStream(new FileInputStream(inputFile));
+		try(ARFFParser parser = openParser(inputFile, counter))
+		{
+			parser.readHeader();
+			Hierarchy hierarchy = load(parser, counter, withInstancesNameAttribute, withClassAttribute,
+					fixBreadthGaps, useSubtree, progress);
+			progress.finish();
+			return hierarchy;
 		}
-		
-		data.setClassIndex(Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE);
-		int assignClassIndex = data.classIndex();
-		
-		System.out.println("Assign class attribute name is: " + data.classAttribute().name()
-				+ "\nNumber of classes: " + data.numClasses());
-		
+	}
+
+	private Hierarchy load(
+		ARFFParser parser,
+		CountingInputStream counter,
+		boolean withInstancesNameAttribute,
+		boolean withClassAttribute,
+		boolean fixBreadthGaps,
+		boolean useSubtree,
+		LoadProgress progress ) throws IOException
+	{
+		int assignClassIndex = Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE;
+
 		BasicNode root = null;
 		ArrayList<BasicNode> nodes = new ArrayList<BasicNode>();
-		int rootIndexInNodes = -1;
 		int numberOfInstances = 0;		
 		HashMap<String, Integer> eachClassAndItsCount = new HashMap<String, Integer>();
 		
-		int numberOfDimensions = data.numAttributes() - 1;//minus assign class attribute
-		if(withClassAttribute)
-		{
-			numberOfDimensions -= 1;
-		}
-		
-		if(withInstancesNameAttribute)
-		{
-			numberOfDimensions -= 1;
-		}
+		int[] featureAttributes = getFeatureAttributes(parser, withClassAttribute, withInstancesNameAttribute);
+		int numberOfDimensions = featureAttributes.length;
 		
-		for(int i = 0; i < data.numInstances(); i++)
+		int instancesSinceUpdate = 0;
+		long lastBytesRead = 0;
+
+		// Index of nodes by their case-insensitive id, so that ids differing only in case share a node.
+		HashMap<String, BasicNode> nodesByKey = new HashMap<String, BasicNode>();
+		BasicNode lastNode = null;
+		String lastAssignClass = null;
+
+		// Reused for all instances if they copy their feature values.
+		double[] featureBuffer = instanceStorage.retainsData() ? null : new double[numberOfDimensions];
+		// Non-zero feature values of sparse rows, passed on without expanding them.
+		int[] sparseIndices = new int[numberOfDimensions];
+		double[] sparseValues = new double[numberOfDimensions];
+		while(parser.nextRow())
 		{
-			weka.core.Instance inst = data.instance(i);
 			
 			String classAttrib = null;
 			if(withClassAttribute)
 			{
-				classAttrib = inst.stringValue(Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE);
+				classAttrib = parser.getString(Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE);
 				if(eachClassAndItsCount.containsKey(classAttrib))
 				{
 					eachClassAndItsCount.put(classAttrib, eachClassAndItsCount.get(classAttrib) + 1);
@@ -91,63 +179,55 @@ public class GeneratedARFFReader implements DataReader {
 			String instanceNameAttrib = null;
 			if(withInstancesNameAttribute)
 			{
-				instanceNameAttrib = inst.stringValue(Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE + (withClassAttribute? 1 : 0));
+				instanceNameAttrib = parser.getString(Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE + (withClassAttribute? 1 : 0));
 			}
 			
-			//assuming that node's instances are grouped in input file
-			//REFACTOR: below could the binary-search be utilised with sorting by ID-comparator
+			String assignClass = parser.getString(assignClassIndex);
 			
-			String assignClass = inst.stringValue(assignClassIndex);
-			
-			double[] instData = new double[numberOfDimensions];
-			int instDataIndex = 0;
-			for(int j = 0; j < inst.numAttributes(); j++)
-			{
-				if(j == Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE)
-					continue;
-				
-				if(withClassAttribute && j == Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE)
-					continue;
-				
-				if(withClassAttribute && withInstancesNameAttribute && j == Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE + 1)
-					continue;
-				
-				if(!withClassAttribute && withInstancesNameAttribute && j == Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE)
-					continue;
-				
-				instData[instDataIndex] = inst.value(j);
-				instDataIndex++;
-			}
-			
-			boolean nodeExist = false;
-			int nodeIndex = -1;
-			for(int nodeIndexIter = 0; nodeIndexIter < nodes.size() && !nodeExist; nodeIndexIter++)
+			// Node of the previous instance is the most likely match, since instances are usually grouped by node.
+			BasicNode node = lastNode;
+			if(!assignClass.equals(lastAssignClass))
 			{
-				if(nodes.get(nodeIndexIter).getId().equalsIgnoreCase(assignClass))
+				String key = caseInsensitiveKey(assignClass);
+				node = nodesByKey.get(key);
+				if(node == null)
 				{
-					nodeExist = true;
-					nodeIndex = nodeIndexIter;
+					node = new BasicNode(assignClass, null, new LinkedList<Node>(),
+							new LinkedList<basic_hierarchy.interfaces.Instance>(), useSubtree);
+					nodes.add(node);
+					nodesByKey.put(key, node);
+					if(root == null && assignClass.equalsIgnoreCase(Constants.ROOT_ID))
+					{
+						root = node;
+					}
 				}
+				lastNode = node;
+				lastAssignClass = assignClass;
 			}
-			if(nodeExist)
+
+			if(parser.isSparseRow())
 			{
-				nodes.get(nodeIndex).addInstance(new BasicInstance(instanceNameAttrib, nodes.get(nodeIndex).getId(), instData, classAttrib));
-				numberOfInstances++;
+				int count = copySparseInstanceData(parser, featureAttributes, sparseIndices, sparseValues);
+				node.addInstance(instanceStorage.createSparseInstance(instanceNameAttrib, node.getId(),
+						numberOfDimensions, sparseIndices, sparseValues, count, classAttrib));
 			}
 			else
 			{
-				BasicNode nodeToAdd = new BasicNode(assignClass, null, new LinkedList<Node>(),
-						new LinkedList<basic_hierarchy.interfaces.Instance>(), useSubtree);
-				nodeToAdd.addInstance(new BasicInstance(instanceNameAttrib, nodeToAdd.getId(), instData, classAttrib));
-				numberOfInstances++;
-				nodes.add(nodeToAdd);
-				if(root == null && assignClass.equalsIgnoreCase(Constants.ROOT_ID))
-				{
-					root = nodes.get(nodes.size()-1);
-					rootIndexInNodes = nodes.size()-1;
-				}
+				double[] instData = featureBuffer != null ? featureBuffer : new double[numberOfDimensions];
+				copyInstanceData(parser, featureAttributes, instData);
+				node.addInstance(instanceStorage.createInstance(instanceNameAttrib, node.getId(), instData, classAttrib));
+			}
+			numberOfInstances++;
+
+			if(++instancesSinceUpdate == LoadProgress.ROWS_PER_UPDATE)
+			{
+				progress.advance(instancesSinceUpdate, counter.getCount() - lastBytesRead);
+				instancesSinceUpdate = 0;
+				lastBytesRead = counter.getCount();
 			}
 		}
+		progress.advance(instancesSinceUpdate, 0);
+		LoadProgress.checkInterrupted();
 		
 		List<? extends Node> allNodes = HierarchyBuilder.buildCompleteHierarchy( root, nodes, fixBreadthGaps, useSubtree );
 
@@ -162,9 +242,214 @@ public class GeneratedARFFReader implements DataReader {
 			}
 		}
 
-		// TODO: Implement loading of data column names
-		String[] dataNames = null;
+		String[] dataNames = getDataNames(parser, featureAttributes);
 		return new BasicHierarchy( root, allNodes, dataNames, eachClassAndItsCount, numberOfInstances );
 	}
 
+	/**
+	 * Creates a key which is equal for two ids if and only if {@link String#equalsIgnoreCase(String)}
+	 * considers the ids equal. Each character is mapped the same way that method compares them.
+	 * 
+	 * @param id
+	 *            the id to create a key for
+	 * @return the key
+	 */
+	private static String caseInsensitiveKey(String id)
+	{
+		char[] key = new char[id.length()];
+		for(int i = 0; i < key.length; i++)
+		{
+			key[i] = Character.toLowerCase(Character.toUpperCase(id.charAt(i)));
+		}
+		return new String(key);
+	}
+
+	/**
+	 * Streams instances from the specified file, reading it incrementally with {@link ARFFParser},
+	 * so that only the file's header is kept in memory. Files compressed with gzip, or stored in a zip
+	 * archive, are decompressed on a separate thread while being read.
+	 */
+	@Override
+	public String[] stream(
+		String filePath,
+		boolean withInstancesNameAttribute,
+		boolean withClassAttribute,
+		boolean withColumnHeaders,
+		InstanceConsumer consumer ) throws IOException
+	{
+		File inputFile = new File(filePath);
+		if(!inputFile.exists() || inputFile.isDirectory())
+		{
+			throw new IOException("Cannot access to file: " + filePath + ". Does it exist and is it a "
+					+ "weka ARFF file?");
+		}
+
+		try(ARFFParser parser = openParser(inputFile, new FileInputStream(inputFile)))
+		{
+			parser.readHeader();
+			return stream(parser, withInstancesNameAttribute, withClassAttribute, consumer);
+		}
+	}
+
+	/**
+	 * @param inputFile
+	 *            the file to read
+	 * @param fileStream
+	 *            stream of the file's contents
+	 * @return parser of the file's contents, decompressed if the file is compressed.
+	 */
+	private static ARFFParser openParser(File inputFile, InputStream fileStream) throws IOException
+	{
+		InputStream in = fileStream;
+		try
+		{
+			if(DecompressingInputStream.isCompressed(inputFile))
+			{
+				in = DecompressingInputStream.open(fileStream, inputFile.getPath());
+			}
+			return new ARFFParser(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+		}
+		catch(IOException | RuntimeException e)
+		{
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Streams instances supplied by the specified parser, which has already read the file's header.
+	 */
+	private String[] stream(
+		ARFFParser parser,
+		boolean withInstancesNameAttribute,
+		boolean withClassAttribute,
+		InstanceConsumer consumer ) throws IOException
+	{
+		int[] featureAttributes = getFeatureAttributes(parser, withClassAttribute, withInstancesNameAttribute);
+
+		double[] instData = new double[featureAttributes.length];
+		while(parser.nextRow())
+		{
+			String classAttrib = null;
+			if(withClassAttribute)
+			{
+				classAttrib = parser.getString(Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE);
+			}
+
+			String instanceNameAttrib = null;
+			if(withInstancesNameAttribute)
+			{
+				instanceNameAttrib = parser.getString(Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE + (withClassAttribute? 1 : 0));
+			}
+
+			copyInstanceData(parser, featureAttributes, instData);
+			consumer.consume(parser.getString(Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE), classAttrib, instanceNameAttrib, instData);
+		}
+
+		return getDataNames(parser, featureAttributes);
+	}
+
+	/**
+	 * Finds the attributes holding feature values, skipping the assign class, true class and
+	 * instance name attributes.
+	 * 
+	 * @param parser
+	 *            parser which has already read the file's header
+	 * @param withClassAttribute
+	 *            whether the file includes the true class attribute
+	 * @param withInstancesNameAttribute
+	 *            whether the file includes the instance name attribute
+	 * @return indices of the feature attributes
+	 * @throws IOException
+	 *             if one of the feature attributes is a string attribute
+	 */
+	private static int[] getFeatureAttributes(ARFFParser parser, boolean withClassAttribute,
+			boolean withInstancesNameAttribute) throws IOException
+	{
+		int firstFeature = Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE
+				+ (withClassAttribute ? 1 : 0) + (withInstancesNameAttribute ? 1 : 0);
+
+		int[] result = new int[Math.max(0, parser.getAttributeCount() - firstFeature)];
+		for(int i = 0; i < result.length; i++)
+		{
+			result[i] = firstFeature + i;
+			if(parser.getAttributeType(result[i]) == ARFFParser.AttributeType.STRING)
+			{
+				throw new IOException("String attribute '" + parser.getAttributeName(result[i])
+						+ "' cannot be used as an instance feature.");
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return names of the feature attributes, as declared in the file's header.
+	 */
+	private static String[] getDataNames(ARFFParser parser, int[] featureAttributes)
+	{
+		String[] dataNames = new String[featureAttributes.length];
+		for(int i = 0; i < featureAttributes.length; i++)
+		{
+			dataNames[i] = parser.getAttributeName(featureAttributes[i]);
+		}
+		return dataNames;
+	}
+
+	/**
+	 * Copies feature values of the current row of the specified parser.
+	 * 
+	 * @param parser
+	 *            the parser to copy values from
+	 * @param featureAttributes
+	 *            indices of the feature attributes
+	 * @param instData
+	 *            array to copy the values into
+	 */
+	private static void copyInstanceData(ARFFParser parser, int[] featureAttributes, double[] instData)
+			throws IOException
+	{
+		for(int i = 0; i < featureAttributes.length; i++)
+		{
+			instData[i] = parser.getValue(featureAttributes[i]);
+		}
+	}
+
+	/**
+	 * Copies the non-zero feature values of the current sparse row of the specified parser.
+	 * Feature attributes must be contiguous, as returned by {@link #getFeatureAttributes(ARFFParser, boolean, boolean)}.
+	 * 
+	 * @param parser
+	 *            the parser to copy values from
+	 * @param featureAttributes
+	 *            indices of the feature attributes
+	 * @param indices
+	 *            array to copy indices of the non-zero values into
+	 * @param values
+	 *            array to copy the non-zero values into
+	 * @return number of non-zero values
+	 */
+	private static int copySparseInstanceData(ARFFParser parser, int[] featureAttributes, int[] indices, double[] values)
+			throws IOException
+	{
+		int count = 0;
+		for(int i = 0; i < parser.getSparseValueCount(); i++)
+		{
+			int attribute = parser.getSparseAttribute(i);
+			int index = featureAttributes.length == 0 ? -1 : attribute - featureAttributes[0];
+			if(index < 0 || index >= featureAttributes.length)
+			{
+				continue;
+			}
+
+			double value = parser.getValue(attribute);
+			if(value != 0)
+			{
+				indices[count] = index;
+				values[count] = value;
+				count++;
+			}
+		}
+		return count;
+	}
+
 }
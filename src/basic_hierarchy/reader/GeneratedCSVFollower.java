@@ -0,0 +1,356 @@
+package basic_hierarchy.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import basic_hierarchy.common.Constants;
+import basic_hierarchy.common.HierarchyBuilder;
+import basic_hierarchy.common.InstanceStorage;
+import basic_hierarchy.common.NodeId;
+import basic_hierarchy.common.NodeIdComparator;
+import basic_hierarchy.implementation.BasicHierarchy;
+import basic_hierarchy.implementation.BasicNode;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.Node;
+
+
+/**
+ * Follows a generated CSV file that is being appended to, parsing only rows that have been appended
+ * since the previous {@link #poll()} into the same hierarchy.
+ * <p>
+ * The first poll reads the whole file, the same way as
+ * {@link GeneratedCSVReader#load(String, boolean, boolean, boolean, boolean, boolean)}. Subsequent polls
+ * add new instances to existing nodes, and link new nodes into the tree (filling gaps in depth, and in breadth
+ * if requested, with {@link HierarchyBuilder}). Only the new instances are summed: their sums are added to the
+ * sums maintained by the nodes they belong to and by their ancestors (see {@link BasicNode}), so the cost of
+ * a poll does not depend on the number of instances loaded before. After every poll, the hierarchy has the same
+ * nodes and instances as if the file had been loaded from scratch, and the same centroids, up to rounding
+ * differences caused by summing instances in a different order.
+ * </p>
+ * <p>
+ * Only complete rows (terminated by a line break) are consumed, so a row that is still being written
+ * is picked up by a later poll. Hierarchies returned by earlier polls share nodes with later ones,
+ * and should not be used once the follower has been polled again.
+ * </p>
+ *
+ * @see GeneratedCSVReader#follow(String, boolean, boolean, boolean, boolean, boolean)
+ */
+public class GeneratedCSVFollower
+{
+	private final File inputFile;
+	private final boolean withColumnHeaders;
+	private final boolean withTrueClassAttribute;
+	private final boolean fixBreadthGaps;
+	private final boolean useSubtree;
+	private final CSVRowParser parser;
+	private final InstanceStorage instanceStorage;
+
+	/** Offset one past the last row consumed so far. */
+	private long offset = 0;
+	private boolean firstRow = true;
+
+	private BasicNode root = null;
+	private final ArrayList<BasicNode> nodes = new ArrayList<BasicNode>();
+	/** All nodes of the hierarchy by id, including artificial ones. */
+	private final HashMap<NodeId, BasicNode> nodesById = new HashMap<NodeId, BasicNode>();
+	private String[] dataNames = null;
+	private final HashMap<String, Integer> eachClassAndItsCount = new HashMap<String, Integer>();
+	private int overallNumberOfInstances = 0;
+	private Hierarchy hierarchy = null;
+
+
+	GeneratedCSVFollower(
+		File inputFile,
+		CSVRowParser parser,
+		InstanceStorage instanceStorage,
+		boolean withTrueClassAttribute,
+		boolean withColumnHeaders,
+		boolean fixBreadthGaps,
+		boolean useSubtree )
+	{
+		this.inputFile = inputFile;
+		this.parser = parser;
+		this.instanceStorage = instanceStorage;
+		this.withTrueClassAttribute = withTrueClassAttribute;
+		this.withColumnHeaders = withColumnHeaders;
+		this.fixBreadthGaps = fixBreadthGaps;
+		this.useSubtree = useSubtree;
+	}
+
+	/**
+	 * @return offset one past the last row consumed so far, in bytes.
+	 */
+	public long getOffset()
+	{
+		return offset;
+	}
+
+	/**
+	 * @return the hierarchy as of the last poll, or null if the follower has not been polled yet.
+	 */
+	public Hierarchy getHierarchy()
+	{
+		return hierarchy;
+	}
+
+	/**
+	 * Parses rows appended to the file since the previous poll, and adds them to the hierarchy.
+	 *
+	 * @return the hierarchy including all rows consumed so far
+	 * @throws IOException
+	 *             if an IO error occurred while reading the file, or the file has been truncated
+	 *             below the offset that has already been consumed
+	 * @throws NumberFormatException
+	 *             if one of the instance features was not a parsable {@code double}. Rows preceding
+	 *             the invalid row have been added, and the next poll resumes at the invalid row.
+	 */
+	public Hierarchy poll() throws IOException
+	{
+		// Instances of each node, with nodes in order of their first appearance among the new rows.
+		LinkedHashMap<NodeId, LinkedList<Instance>> newInstances = new LinkedHashMap<NodeId, LinkedList<Instance>>();
+
+		try ( FileChannel channel = FileChannel.open( inputFile.toPath(), StandardOpenOption.READ ) ) {
+			long size = channel.size();
+			if ( size < offset ) {
+				throw new IOException( "File has been truncated while being followed: " + inputFile.getPath() );
+			}
+
+			long end = findLastRowEnd( channel, offset, size );
+			if ( end > offset ) {
+				try ( ByteRowTokenizer tokenizer = new MappedFileTokenizer( channel, offset, end, MappedFileTokenizer.DEFAULT_WINDOW_SIZE ) ) {
+					readRows( tokenizer, newInstances );
+				}
+			}
+		}
+		finally {
+			// Rows read up to the point of failure are kept, so the hierarchy has to reflect them either way.
+			update( newInstances );
+		}
+
+		return hierarchy;
+	}
+
+	/**
+	 * Parses all rows supplied by the specified tokenizer, advancing {@link #offset} past each of them.
+	 */
+	private void readRows( ByteRowTokenizer tokenizer, Map<NodeId, LinkedList<Instance>> newInstances ) throws IOException
+	{
+		String lastAssignedClass = null;
+		LinkedList<Instance> lastInstances = null;
+		String lastNodeId = null;
+		double[] featureBuffer = null;
+
+		while ( tokenizer.nextRow() ) {
+			if ( firstRow ) {
+				parser.readLayout( tokenizer );
+				firstRow = false;
+
+				if ( withColumnHeaders ) {
+					dataNames = parser.readDataNames( tokenizer );
+					offset = tokenizer.getNextRowOffset();
+					continue;
+				}
+			}
+
+			double[] values = featureBuffer != null ? featureBuffer : new double[parser.getDataColumnCount()];
+			if ( !instanceStorage.retainsData() ) {
+				featureBuffer = values;
+			}
+
+			parser.parseRow( tokenizer );
+			parser.parseFeatures( tokenizer, values );
+
+			String trueClass = parser.getTrueClass();
+			if ( withTrueClassAttribute ) {
+				Integer count = eachClassAndItsCount.get( trueClass );
+				eachClassAndItsCount.put( trueClass, count == null ? 1 : count + 1 );
+			}
+
+			String assignedClass = parser.getAssignedClass();
+			// The parser keeps returning the same string for as long as the id does not change.
+			if ( assignedClass != lastAssignedClass ) {
+				lastAssignedClass = assignedClass;
+				lastInstances = newInstances.get( parser.getAssignedClassId() );
+				if ( lastInstances == null ) {
+					lastInstances = new LinkedList<Instance>();
+					newInstances.put( parser.getAssignedClassId(), lastInstances );
+					lastNodeId = assignedClass;
+				}
+				else {
+					// The id may be formatted differently than in the node's first row.
+					lastNodeId = lastInstances.getFirst().getNodeId();
+				}
+			}
+
+			lastInstances.add( instanceStorage.createInstance( parser.getInstanceName(), lastNodeId, values, trueClass ) );
+			overallNumberOfInstances++;
+			offset = tokenizer.getNextRowOffset();
+		}
+	}
+
+	/**
+	 * Adds the new instances to the hierarchy, and builds a new {@link Hierarchy} out of its nodes.
+	 */
+	private void update( LinkedHashMap<NodeId, LinkedList<Instance>> newInstances )
+	{
+		if ( hierarchy == null ) {
+			buildInitialHierarchy( newInstances );
+		}
+		else if ( !newInstances.isEmpty() ) {
+			extendHierarchy( newInstances );
+		}
+		else {
+			return;
+		}
+
+		hierarchy = new BasicHierarchy( root, nodes, dataNames, eachClassAndItsCount, overallNumberOfInstances );
+	}
+
+	private void buildInitialHierarchy( Map<NodeId, LinkedList<Instance>> newInstances )
+	{
+		ArrayList<BasicNode> fileNodes = new ArrayList<BasicNode>();
+		for ( Map.Entry<NodeId, LinkedList<Instance>> entry : newInstances.entrySet() ) {
+			BasicNode node = new BasicNode( entry.getKey(), null, useSubtree );
+			node.setInstances( entry.getValue() );
+			fileNodes.add( node );
+
+			if ( root == null && node.getId().equalsIgnoreCase( Constants.ROOT_ID ) ) {
+				root = node;
+			}
+		}
+
+		// HierarchyBuilder expects ancestors to precede their descendants.
+		Collections.sort( fileNodes, new NodeIdComparator() );
+		for ( Node node : HierarchyBuilder.buildCompleteHierarchy( root, fileNodes, fixBreadthGaps, useSubtree ) ) {
+			addNode( (BasicNode)node );
+
+			if ( root == null && node.getId().equalsIgnoreCase( Constants.ROOT_ID ) ) {
+				// Root was missing from the file, and has been created artificially.
+				root = (BasicNode)node;
+			}
+		}
+	}
+
+	private void extendHierarchy( Map<NodeId, LinkedList<Instance>> newInstances )
+	{
+		int nodeCount = nodes.size();
+		Set<BasicNode> parentsWithNewChildren = new HashSet<BasicNode>();
+
+		List<BasicNode> newNodes = new ArrayList<BasicNode>();
+		for ( Map.Entry<NodeId, LinkedList<Instance>> entry : newInstances.entrySet() ) {
+			BasicNode node = nodesById.get( entry.getKey() );
+			if ( node == null ) {
+				node = new BasicNode( entry.getKey(), null, useSubtree );
+				node.setInstances( entry.getValue() );
+				newNodes.add( node );
+			}
+			else {
+				// Sums of the new instances are added to those of the node and its ancestors.
+				GeneratedCSVReader.addInstances( node, entry.getKey(), entry.getValue() );
+			}
+		}
+
+		// Link ancestors before their descendants, so that descendants can be attached to them.
+		// With subtree centroids, subtree sums of linked nodes are added to those of their new ancestors.
+		Collections.sort( newNodes, new NodeIdComparator() );
+		for ( BasicNode node : newNodes ) {
+			BasicNode ancestor = findNearestAncestor( node.getNodeId() );
+			List<BasicNode> artificialNodes = HierarchyBuilder.fixDepthGapsBetween( ancestor, node, useSubtree );
+
+			parentsWithNewChildren.add( ancestor );
+			for ( BasicNode artificialNode : artificialNodes ) {
+				addNode( artificialNode );
+				parentsWithNewChildren.add( artificialNode );
+			}
+			addNode( node );
+		}
+
+		for ( BasicNode parent : parentsWithNewChildren ) {
+			if ( fixBreadthGaps ) {
+				for ( BasicNode artificialNode : HierarchyBuilder.fixBreadthGapsInNode( parent, useSubtree ) ) {
+					addNode( artificialNode );
+				}
+			}
+			else {
+				Collections.sort( parent.getChildren(), new NodeIdComparator() );
+			}
+		}
+
+		if ( !useSubtree ) {
+			// Nodes added by this poll hold only new instances, and start maintaining their sums once calculated.
+			for ( int i = nodeCount; i < nodes.size(); ++i ) {
+				nodes.get( i ).recalculateCentroid( false );
+			}
+		}
+
+		if ( nodes.size() != nodeCount ) {
+			Collections.sort( nodes, new NodeIdComparator() );
+		}
+	}
+
+	private void addNode( BasicNode node )
+	{
+		nodes.add( node );
+		nodesById.put( node.getNodeId(), node );
+	}
+
+	/**
+	 * @return the nearest node already in the hierarchy whose id is an ancestor of the specified id.
+	 */
+	private BasicNode findNearestAncestor( NodeId id )
+	{
+		for ( NodeId ancestorId = id.getParent(); ancestorId != null; ancestorId = ancestorId.getParent() ) {
+			BasicNode ancestor = nodesById.get( ancestorId );
+			if ( ancestor != null ) {
+				return ancestor;
+			}
+		}
+
+		throw new RuntimeException(
+			String.format(
+				"Could not find nearest parent for '%s'. This means that something went seriously wrong.",
+				id
+			)
+		);
+	}
+
+	/**
+	 * @return offset one past the last line break in the specified region of the file, or {@code start}
+	 *         if the region does not contain a complete row.
+	 */
+	private static long findLastRowEnd( FileChannel channel, long start, long end ) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate( 1 << 16 );
+
+		while ( end > start ) {
+			long blockStart = Math.max( start, end - buffer.capacity() );
+			buffer.clear();
+			buffer.limit( (int)( end - blockStart ) );
+			while ( buffer.hasRemaining() && channel.read( buffer, blockStart + buffer.position() ) > 0 ) {
+				// Keep reading until the block is full.
+			}
+
+			for ( int i = buffer.position() - 1; i >= 0; --i ) {
+				if ( buffer.get( i ) == '\n' ) {
+					return blockStart + i + 1;
+				}
+			}
+			end = blockStart;
+		}
+
+		return start;
+	}
+}
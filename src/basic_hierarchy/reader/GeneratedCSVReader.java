@@ -4,30 +4,54 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import basic_hierarchy.common.Constants;
 import basic_hierarchy.common.HierarchyBuilder;
+import basic_hierarchy.common.InstanceStorage;
+import basic_hierarchy.common.NodeId;
 import basic_hierarchy.common.NodeIdComparator;
-import basic_hierarchy.common.StringIdComparator;
 import basic_hierarchy.implementation.BasicHierarchy;
-import basic_hierarchy.implementation.BasicInstance;
 import basic_hierarchy.implementation.BasicNode;
 import basic_hierarchy.interfaces.DataReader;
 import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.InstanceConsumer;
 import basic_hierarchy.interfaces.Node;
+import basic_hierarchy.interfaces.ProgressListener;
 
 public class GeneratedCSVReader implements DataReader
 {
-    private static final String REGEX_NODE_ID = "gen(" + Constants.HIERARCHY_BRANCH_SEPARATOR_REGEX + "\\d+)+";
+    /** Number of chunks created per thread of the pool when loading in parallel, to even out the load. */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /** Minimum size of a chunk when loading in parallel, in bytes. */
+    private static final long MIN_CHUNK_SIZE = 1 << 18;
 
     private boolean assertOrder = false;
+    private boolean useMemoryMapping = false;
+    private ForkJoinPool pool = null;
+    private long externalSortMemoryBudget = 0;
+    private int[] projectedColumns = null;
+    private String[] projectedColumnNames = null;
+    private InstanceStorage instanceStorage = InstanceStorage.DOUBLE;
 
 
     public GeneratedCSVReader()
@@ -39,13 +63,98 @@ public class GeneratedCSVReader implements DataReader
      * @param assertOrder
      *            if true, at the end of loading the reader will assert that rows in the
      *            input file were sorted in ascending order (by the assigned class column).
-     *            If the rows were not sorted, then instances will be assigned to incorrect nodes.
+     *            Unsorted files are loaded correctly either way - this only serves to validate input.
      */
     public GeneratedCSVReader( boolean assertOrder )
     {
         this.assertOrder = assertOrder;
     }
 
+    /**
+     * @param useMemoryMapping
+     *            if true, input files will be memory-mapped and tokenized in place, at byte level, instead of
+     *            being decoded into strings line by line. Instance features are then parsed without creating
+     *            a string for each column, which greatly reduces garbage produced while loading large files.
+     *            Compressed files cannot be mapped, but their decompressed contents are tokenized at byte level.
+     *            The resulting hierarchy is the same in both modes.
+     */
+    public void setUseMemoryMapping( boolean useMemoryMapping )
+    {
+        this.useMemoryMapping = useMemoryMapping;
+    }
+
+    /**
+     * @param pool
+     *            if not null, input files will be split into chunks on row boundaries, and the chunks will be
+     *            parsed in parallel on this pool. Files are always memory-mapped in this mode.
+     *            Compressed files cannot be split, and are always loaded sequentially.
+     *            The resulting hierarchy is the same as when loading sequentially, including the order
+     *            of instances within each node. Centroids of nodes are also calculated on this pool, once the
+     *            file has been loaded, even if it was compressed.
+     */
+    public void setForkJoinPool( ForkJoinPool pool )
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * @param memoryBudget
+     *            if positive, rows of input files will be sorted by their assigned class before being loaded,
+     *            using an external merge sort that buffers at most roughly this many bytes of rows in memory,
+     *            and spills sorted runs to temporary files beyond that. Loading then consumes the merged runs
+     *            sequentially, so this setting takes precedence over {@link #setForkJoinPool(ForkJoinPool)}.
+     *            Unsorted files are loaded correctly either way, but sorting them up front keeps each node's
+     *            rows together, and lets {@link #stream(String, boolean, boolean, boolean, InstanceConsumer)}
+     *            supply instances grouped by node, in ascending order of node ids.
+     *            Rows with the same assigned class keep their order from the input file.
+     *            Zero (the default) disables sorting.
+     */
+    public void setExternalSortMemoryBudget( long memoryBudget )
+    {
+        if ( memoryBudget < 0 ) {
+            throw new IllegalArgumentException( "Memory budget must not be negative: " + memoryBudget );
+        }
+        this.externalSortMemoryBudget = memoryBudget;
+    }
+
+    /**
+     * @param columns
+     *            if not null, only data columns with these indices (0 being the first data column) will be
+     *            parsed into instance features, in the specified order. Other data columns are skipped without
+     *            being converted to numbers, and {@link Hierarchy#getDataNames()} only reports the projected
+     *            columns. Replaces any projection set with {@link #setProjectedColumnNames(String...)}.
+     */
+    public void setProjectedColumns( int... columns )
+    {
+        this.projectedColumns = columns == null ? null : columns.clone();
+        this.projectedColumnNames = null;
+    }
+
+    /**
+     * @param names
+     *            if not null, only data columns with these header names will be parsed into instance features,
+     *            in the specified order. Requires files to have column headers.
+     *            Replaces any projection set with {@link #setProjectedColumns(int...)}.
+     * @see #setProjectedColumns(int...)
+     */
+    public void setProjectedColumnNames( String... names )
+    {
+        this.projectedColumnNames = names == null ? null : names.clone();
+        this.projectedColumns = null;
+    }
+
+    /**
+     * @param instanceStorage
+     *            how feature values of loaded instances are stored. Defaults to {@link InstanceStorage#DOUBLE}.
+     */
+    public void setInstanceStorage( InstanceStorage instanceStorage )
+    {
+        if ( instanceStorage == null ) {
+            throw new IllegalArgumentException( "Instance storage must not be null." );
+        }
+        this.instanceStorage = instanceStorage;
+    }
+
     /**
      * This method assumes that data are generated using Michał Spytkowski's data generator, using TSSB method.
      * For more information about the generator, see https://arxiv.org/abs/1606.05681
@@ -54,7 +163,8 @@ public class GeneratedCSVReader implements DataReader
      * Nodes are given in depth-first order.
      * </p>
      * <p>
-     * Files are loaded assuming UTF-8 encoding.
+     * Files are loaded assuming UTF-8 encoding. Files compressed with gzip, or stored in a zip archive
+     * (as its first entry), are recognized by their signature and decompressed while being read.
      * </p>
      * 
      * @throws IOException
@@ -74,6 +184,320 @@ public class GeneratedCSVReader implements DataReader
     {
         // REFACTOR: Could create a factory class to generate nodes.
         // REFACTOR: Skip nodes' elements containing "gen" prefix and assume that every ID prefix always begins with "gen"
+        File inputFile = getInputFile( filePath );
+
+        return load(
+            inputFile,
+            withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+            fixBreadthGaps, useSubtree,
+            new LoadProgress( null, inputFile.length() ), null
+        );
+    }
+
+    /**
+     * Loads the specified file the same way as {@link #load(String, boolean, boolean, boolean, boolean, boolean)},
+     * but leniently: rows that cannot be parsed (because of a wrong number of columns, an invalid node id,
+     * or an unparsable instance feature) are skipped, and recorded in the specified report.
+     * The first row still has to be valid, since it determines the column layout of the file.
+     * <p>
+     * Rows are always tokenized at byte level in this mode, so that errors can be reported with the byte offset
+     * of their row. Byte offsets of rows in compressed files refer to their decompressed contents.
+     * </p>
+     * 
+     * @param errorReport
+     *            report to record skipped rows in, in order of their appearance in the input file
+     */
+    public Hierarchy load(
+        String filePath,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree,
+        ParseErrorReport errorReport ) throws IOException
+    {
+        if ( errorReport == null ) {
+            throw new IllegalArgumentException( "Error report must not be null." );
+        }
+
+        File inputFile = getInputFile( filePath );
+
+        return load(
+            inputFile,
+            withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+            fixBreadthGaps, useSubtree,
+            new LoadProgress( null, inputFile.length() ), errorReport
+        );
+    }
+
+    /**
+     * Loads a file from the specified stream, the same way as
+     * {@link #load(String, boolean, boolean, boolean, boolean, boolean)}. This allows loading piped data
+     * without writing it to a file first.
+     * <p>
+     * The stream is tokenized at byte level as it is read, and always sequentially, even if a pool has been set with
+     * {@link #setForkJoinPool(ForkJoinPool)}. Compressed streams are recognized by their signature.
+     * </p>
+     * 
+     * @param in
+     *            the stream to read. It is read to its end, and closed once loading is complete.
+     */
+    public Hierarchy load(
+        InputStream in,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree ) throws IOException
+    {
+        RowTokenizer tokenizer = new InputStreamTokenizer( DecompressingInputStream.openIfCompressed( in, "input stream" ) );
+
+        return load(
+            tokenizer,
+            withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+            fixBreadthGaps, useSubtree
+        );
+    }
+
+    /**
+     * Loads a file from the specified channel, the same way as {@link #load(InputStream, boolean, boolean, boolean, boolean, boolean)}.
+     * 
+     * @param channel
+     *            the channel to read. It is read to its end, and closed once loading is complete.
+     */
+    public Hierarchy load(
+        ReadableByteChannel channel,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree ) throws IOException
+    {
+        return load(
+            Channels.newInputStream( channel ),
+            withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+            fixBreadthGaps, useSubtree
+        );
+    }
+
+    /**
+     * Loads a file held in memory, the same way as {@link #load(String, boolean, boolean, boolean, boolean, boolean)}.
+     * The buffer is tokenized in place, without copying its contents. It is always loaded sequentially,
+     * and has to contain uncompressed UTF-8 encoded text.
+     * 
+     * @param buffer
+     *            the buffer to read, from its position to its limit. The position of the buffer is not changed.
+     */
+    public Hierarchy load(
+        ByteBuffer buffer,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree ) throws IOException
+    {
+        return load(
+            new ByteRowTokenizer( buffer.slice() ),
+            withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+            fixBreadthGaps, useSubtree
+        );
+    }
+
+    /**
+     * Loads the rows supplied by the specified tokenizer, sorting them first if external sorting has been enabled.
+     * The tokenizer is closed once loading is complete.
+     */
+    private Hierarchy load(
+        RowTokenizer source,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree ) throws IOException
+    {
+        LoadProgress progress = new LoadProgress( null, -1 );
+        try ( RowTokenizer tokenizer = sortIfEnabled( source, withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders, null, progress ) ) {
+            return load(
+                tokenizer,
+                withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+                fixBreadthGaps, useSubtree,
+                progress, null
+            );
+        }
+    }
+
+    /**
+     * Creates a follower for the specified file, which is being appended to. The first
+     * {@link GeneratedCSVFollower#poll()} loads the file the same way as
+     * {@link #load(String, boolean, boolean, boolean, boolean, boolean)}, and subsequent polls only parse
+     * rows that have been appended since. Column projection and instance storage settings of this reader
+     * apply to the follower. The file is always memory-mapped, and cannot be compressed.
+     * 
+     * @return the follower. Nothing is read until it is polled.
+     */
+    public GeneratedCSVFollower follow(
+        String filePath,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree ) throws IOException
+    {
+        File inputFile = getInputFile( filePath );
+        if ( DecompressingInputStream.isCompressed( inputFile ) ) {
+            throw new IllegalArgumentException( "Compressed files cannot be followed: " + filePath );
+        }
+
+        return new GeneratedCSVFollower(
+            inputFile,
+            createParser( withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders ),
+            instanceStorage,
+            withTrueClassAttribute, withColumnHeaders,
+            fixBreadthGaps, useSubtree
+        );
+    }
+
+    /**
+     * Loads the specified file on the specified executor, the same way as
+     * {@link #load(String, boolean, boolean, boolean, boolean, boolean)}.
+     * <p>
+     * Settings of this reader must not be changed until the load is complete.
+     * </p>
+     * 
+     * @param executor
+     *            the executor to run the load on
+     * @param listener
+     *            listener to notify about progress, or null
+     * @return future of the loaded hierarchy. Cancelling it with {@code mayInterruptIfRunning} set to true
+     *         stops the load within a few thousand rows. Errors are reported through {@link Future#get()}.
+     */
+    public Future<Hierarchy> loadAsync(
+        Executor executor,
+        final String filePath,
+        final boolean withInstancesNameAttribute,
+        final boolean withTrueClassAttribute,
+        final boolean withColumnHeaders,
+        final boolean fixBreadthGaps,
+        final boolean useSubtree,
+        final ProgressListener listener )
+    {
+        return LoadProgress.submit(
+            executor,
+            new Callable<Hierarchy>() {
+                @Override
+                public Hierarchy call() throws IOException
+                {
+                    File inputFile = getInputFile( filePath );
+
+                    return load(
+                        inputFile,
+                        withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+                        fixBreadthGaps, useSubtree,
+                        new LoadProgress( listener, inputFile.length() ), null
+                    );
+                }
+            }
+        );
+    }
+
+    /**
+     * @param errorReport
+     *            report to record skipped rows in, or null to fail on the first invalid row
+     * @see #load(String, boolean, boolean, boolean, boolean, boolean)
+     */
+    private Hierarchy load(
+        File inputFile,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree,
+        LoadProgress progress,
+        ParseErrorReport errorReport ) throws IOException
+    {
+        Hierarchy hierarchy;
+
+        if ( pool != null && externalSortMemoryBudget == 0 && !DecompressingInputStream.isCompressed( inputFile ) ) {
+            hierarchy = loadParallel(
+                inputFile,
+                withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+                fixBreadthGaps, useSubtree,
+                progress, errorReport
+            );
+        }
+        else {
+            try ( RowTokenizer tokenizer = openTokenizer( inputFile, withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders, errorReport, progress ) ) {
+                hierarchy = load(
+                    tokenizer,
+                    withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+                    fixBreadthGaps, useSubtree,
+                    progress, errorReport
+                );
+            }
+        }
+
+        progress.finish();
+        return hierarchy;
+    }
+
+    /**
+     * Streams instances from the specified file. Rows are validated the same way as in
+     * {@link #load(String, boolean, boolean, boolean, boolean, boolean)}, and feature values are parsed into
+     * a single reused array. The file is always read sequentially, even if a pool has been set with
+     * {@link #setForkJoinPool(ForkJoinPool)}. Instances are supplied in file order, unless external sorting
+     * has been enabled with {@link #setExternalSortMemoryBudget(long)}.
+     */
+    @Override
+    public String[] stream(
+        String filePath,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        InstanceConsumer consumer ) throws IOException
+    {
+        File inputFile = getInputFile( filePath );
+        String[] dataNames = null;
+
+        LoadProgress progress = new LoadProgress( null, inputFile.length() );
+        try ( RowTokenizer tokenizer = openTokenizer( inputFile, withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders, null, progress ) ) {
+            CSVRowParser parser = createParser( withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders );
+            boolean firstRow = true;
+            double[] values = null;
+
+            while ( tokenizer.nextRow() ) {
+                if ( firstRow ) {
+                    firstRow = false;
+                    parser.readLayout( tokenizer );
+
+                    if ( withColumnHeaders ) {
+                        dataNames = parser.readDataNames( tokenizer );
+                        continue;
+                    }
+                }
+
+                if ( values == null ) {
+                    values = new double[parser.getDataColumnCount()];
+                }
+
+                parser.parseRow( tokenizer );
+                parser.parseFeatures( tokenizer, values );
+
+                consumer.consume( parser.getAssignedClass(), parser.getTrueClass(), parser.getInstanceName(), values );
+            }
+        }
+
+        return dataNames;
+    }
+
+    /**
+     * @param filePath
+     *            path to the input file
+     * @return the input file
+     * @throws RuntimeException
+     *             if the file does not exist, or is a directory
+     */
+    private static File getInputFile( String filePath )
+    {
         File inputFile = new File( filePath );
         if ( !inputFile.exists() || inputFile.isDirectory() ) {
             throw new RuntimeException(
@@ -83,249 +507,531 @@ public class GeneratedCSVReader implements DataReader
                 )
             );
         }
+        return inputFile;
+    }
+
+    /**
+     * Creates a row parser with the column projection of this reader.
+     * 
+     * @throws IllegalArgumentException
+     *             if columns are projected by name, but the file has no column headers
+     */
+    private CSVRowParser createParser(
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders )
+    {
+        CSVRowParser parser = new CSVRowParser( withInstancesNameAttribute, withTrueClassAttribute );
+
+        if ( projectedColumnNames != null ) {
+            if ( !withColumnHeaders ) {
+                throw new IllegalArgumentException( "Columns can only be projected by name in files with column headers." );
+            }
+            parser.setProjectedColumnNames( projectedColumnNames );
+        }
+        else {
+            parser.setProjectedColumns( projectedColumns );
+        }
+
+        return parser;
+    }
+
+    /**
+     * Creates a tokenizer appropriate for the current reader settings.
+     * 
+     * @param inputFile
+     *            the file to read
+     * @param errorReport
+     *            report to record skipped rows in, or null to fail on the first invalid row.
+     *            In lenient mode, rows are always tokenized at byte level, so that their offsets are known.
+     * @param progress
+     *            progress of the load, advanced while rows are being sorted
+     * @return the tokenizer
+     * @throws IOException
+     *             if an IO error occurred while opening the file, or while sorting its rows
+     */
+    private RowTokenizer openTokenizer(
+        File inputFile,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        ParseErrorReport errorReport,
+        LoadProgress progress ) throws IOException
+    {
+        boolean byteLevel = useMemoryMapping || errorReport != null;
+
+        RowTokenizer tokenizer;
+        if ( DecompressingInputStream.isCompressed( inputFile ) ) {
+            CountingInputStream counter = new CountingInputStream( new FileInputStream( inputFile ) );
+            InputStream in = DecompressingInputStream.open( counter, inputFile.getPath() );
+            if ( byteLevel ) {
+                tokenizer = new InputStreamTokenizer( in );
+            }
+            else {
+                tokenizer = new SplitRowTokenizer( new BufferedReader( new InputStreamReader( in, "UTF-8" ) ) );
+            }
+            tokenizer.setByteCounter( counter );
+        }
+        else if ( byteLevel ) {
+            tokenizer = MappedFileTokenizer.open( inputFile );
+        }
+        else {
+            CountingInputStream counter = new CountingInputStream( new FileInputStream( inputFile ) );
+            tokenizer = new SplitRowTokenizer( new BufferedReader( new InputStreamReader( counter, "UTF-8" ) ) );
+            tokenizer.setByteCounter( counter );
+        }
+
+        return sortIfEnabled( tokenizer, withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders, errorReport, progress );
+    }
+
+    /**
+     * Sorts rows supplied by the specified tokenizer if external sorting has been enabled with
+     * {@link #setExternalSortMemoryBudget(long)}.
+     * 
+     * @param tokenizer
+     *            the tokenizer supplying rows of the input file. If rows are sorted, it is closed once all of them
+     *            have been read.
+     * @param errorReport
+     *            report to record skipped rows in, or null to fail on the first invalid row
+     * @param progress
+     *            progress of the load, advanced by the bytes read while sorting. Sorting stops with an
+     *            {@link InterruptedIOException} once the current thread has been interrupted.
+     * @return tokenizer supplying the rows in sorted order, or the specified tokenizer if sorting is disabled.
+     * @throws IOException
+     *             if an IO error occurred while sorting the rows
+     */
+    private RowTokenizer sortIfEnabled(
+        RowTokenizer tokenizer,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        ParseErrorReport errorReport,
+        LoadProgress progress ) throws IOException
+    {
+        if ( externalSortMemoryBudget == 0 ) {
+            return tokenizer;
+        }
 
+        return ExternalRowSorter.sort(
+            tokenizer,
+            createParser( withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders ),
+            withColumnHeaders, externalSortMemoryBudget, errorReport, progress
+        );
+    }
+
+    /**
+     * Builds a {@link Hierarchy} out of the rows supplied by the specified tokenizer.
+     * 
+     * @param errorReport
+     *            report to record skipped rows in, or null to fail on the first invalid row
+     * @see #load(String, boolean, boolean, boolean, boolean, boolean)
+     */
+    private Hierarchy load(
+        RowTokenizer tokenizer,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree,
+        LoadProgress progress,
+        ParseErrorReport errorReport ) throws IOException
+    {
         BasicNode root = null;
         ArrayList<BasicNode> nodes = new ArrayList<BasicNode>();
         String[] dataNames = null;
         HashMap<String, Integer> eachClassAndItsCount = new HashMap<String, Integer>();
         int overallNumberOfInstances = 0;
 
-        Reader reader = new InputStreamReader( new FileInputStream( filePath ), "UTF-8" );
-
-        try ( BufferedReader br = new BufferedReader( reader ) ) {
-            final int optionalColumns = boolToInt( withTrueClassAttribute ) + boolToInt( withInstancesNameAttribute );
-            final int minimumColumnCount = 1 + optionalColumns;
-            int dataColumnCount = -1;
-            int totalColumnCount = -1;
-
-            for ( String inputLine; ( inputLine = br.readLine() ) != null; ) {
-                String[] lineValues = inputLine.split( Constants.DELIMITER );
-
-                if ( dataColumnCount == -1 ) {
-                    // First line encountered.
-
-                    // Make sure that the file is valid -- it needs to have a node ID column,
-                    // at most 2 optional columns, and at least one data column.
-                    if ( lineValues.length <= minimumColumnCount ) {
-                        throw new RuntimeException(
-                            String.format(
-                                "Input data is not formatted correctly. Each line should contain at least a node ID columm and a value column " +
-                                    "(and optionally class attribute and/or instance name).%nLine: %s",
-                                inputLine
-                            )
-                        );
-                    }
-                    else {
-                        // File seems to be valid -- compute column counts for all the other rows.
-                        totalColumnCount = lineValues.length;
-                        dataColumnCount = totalColumnCount - minimumColumnCount;
-                    }
+        // Index of nodes by id, along with the node of the previous row, which is the most likely match.
+        // Ids are compared by their segments, so ids which differ only in formatting refer to the same node.
+        HashMap<NodeId, BasicNode> nodesById = new HashMap<NodeId, BasicNode>();
+        BasicNode lastNode = null;
+        String lastAssignedClassAttr = null;
+        // Whether nodes first appeared in ascending order of their ids.
+        boolean sorted = true;
+        NodeId lastNewNodeId = null;
 
-                    if ( withColumnHeaders ) {
-                        dataNames = new String[dataColumnCount];
-                        for ( int i = 0; i < dataColumnCount; ++i ) {
-                            dataNames[i] = lineValues[minimumColumnCount + i];
-                        }
-                        continue;
-                    }
-                }
+        CSVRowParser parser = createParser( withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders );
+        boolean firstRow = true;
+        // Reused for all rows if instances copy their feature values.
+        double[] featureBuffer = null;
+        int rowsSinceUpdate = 0;
+        long lastBytesRead = 0;
+        long lineNumber = 0;
 
-                // Assert that the row has the expected number of columns.
-                if ( lineValues.length != totalColumnCount ) {
-                    throw new RuntimeException(
-                        String.format(
-                            "Input data not formatted corectly - each line should contain a total of %s columns (this line has %s).%nLine: %s%n",
-                            totalColumnCount, lineValues.length, inputLine
-                        )
-                    );
-                }
+        while ( tokenizer.nextRow() ) {
+            ++lineNumber;
+            if ( firstRow ) {
+                firstRow = false;
+                parser.readLayout( tokenizer );
 
-                String assignedClassAttr = lineValues[0];
-                if ( !isValidNodeId( assignedClassAttr ) ) {
-                    throw new RuntimeException(
-                        String.format(
-                            "Assigned class is not a valid node id: '%s'%nLine:%s%n",
-                            assignedClassAttr, inputLine
-                        )
-                    );
+                if ( withColumnHeaders ) {
+                    dataNames = parser.readDataNames( tokenizer );
+                    continue;
                 }
+            }
 
-                String trueClassAttr = null;
-                if ( withTrueClassAttribute ) {
-                    // If present, true class is always assumed to be in the second column.
-                    trueClassAttr = lineValues[1];
-                    if ( !isValidNodeId( trueClassAttr ) ) {
-                        throw new RuntimeException(
-                            String.format(
-                                "True class is not a valid node id: '%s'%nLine: %s%n",
-                                trueClassAttr, inputLine
-                            )
-                        );
-                    }
-
-                    eachClassAndItsCount.put( trueClassAttr, getOrDefault( eachClassAndItsCount, trueClassAttr, 0 ) + 1 );
+            double[] values = featureBuffer;
+            if ( values == null ) {
+                values = new double[parser.getDataColumnCount()];
+                if ( !instanceStorage.retainsData() ) {
+                    featureBuffer = values;
                 }
+            }
 
-                String instanceNameAttr = null;
-                if ( withInstancesNameAttribute ) {
-                    // If present, instance name is assumed to be in the second column, unless
-                    // true class is also present - then it is assumed to be in the third column.
-                    instanceNameAttr = lineValues[1 + boolToInt( withTrueClassAttribute )];
+            try {
+                parser.parseRow( tokenizer );
+                parser.parseFeatures( tokenizer, values );
+            }
+            catch ( RuntimeException e ) {
+                if ( errorReport == null ) {
+                    throw e;
                 }
+                errorReport.add( lineNumber, tokenizer.getRowOffset(), e.getMessage() );
+                continue;
+            }
+
+            String assignedClassAttr = parser.getAssignedClass();
+            String trueClassAttr = parser.getTrueClass();
+            if ( withTrueClassAttribute ) {
+                eachClassAndItsCount.put( trueClassAttr, getOrDefault( eachClassAndItsCount, trueClassAttr, 0 ) + 1 );
+            }
 
-                double[] values = parseInstanceFeatures( inputLine, lineValues, dataColumnCount, minimumColumnCount );
+            BasicNode node = lastNode;
+            // The parser keeps returning the same string for as long as the id does not change.
+            if ( assignedClassAttr != lastAssignedClassAttr ) {
+                NodeId nodeId = parser.getAssignedClassId();
+                node = nodesById.get( nodeId );
 
-                BasicNode node = findNodeWithId( nodes, assignedClassAttr );
                 if ( node == null ) {
                     // Node for this id doesn't exist yet. Create it.
-                    node = new BasicNode( assignedClassAttr, null, useSubtree );
+                    node = new BasicNode( nodeId, null, useSubtree );
                     nodes.add( node );
+                    nodesById.put( nodeId, node );
+
+                    if ( lastNewNodeId != null && lastNewNodeId.compareTo( nodeId ) > 0 ) {
+                        sorted = false;
+                    }
+                    lastNewNodeId = nodeId;
                 }
 
-                node.addInstance( new BasicInstance( instanceNameAttr, node.getId(), values, trueClassAttr ) );
-                overallNumberOfInstances++;
+                lastNode = node;
+                lastAssignedClassAttr = assignedClassAttr;
+            }
+
+            node.addInstance( instanceStorage.createInstance( parser.getInstanceName(), node.getId(), values, trueClassAttr ) );
+            overallNumberOfInstances++;
 
-                if ( root == null && assignedClassAttr.equalsIgnoreCase( Constants.ROOT_ID ) ) {
-                    root = node;
-                }
+            if ( root == null && assignedClassAttr.equalsIgnoreCase( Constants.ROOT_ID ) ) {
+                root = node;
             }
-        }
 
-        if ( assertOrder ) {
-            List<BasicNode> t = new ArrayList<>( nodes );
-            Collections.sort( t, new NodeIdComparator() );
-            if ( !t.equals( nodes ) ) {
-                throw new RuntimeException( "Nodes in input file were not listed in ascending order." );
+            if ( ++rowsSinceUpdate == LoadProgress.ROWS_PER_UPDATE ) {
+                long bytesRead = Math.max( tokenizer.getBytesRead(), lastBytesRead );
+                progress.advance( rowsSinceUpdate, bytesRead - lastBytesRead );
+                rowsSinceUpdate = 0;
+                lastBytesRead = bytesRead;
             }
         }
 
-        List<? extends Node> allNodes = HierarchyBuilder.buildCompleteHierarchy( root, nodes, fixBreadthGaps, useSubtree );
+        progress.advance( rowsSinceUpdate, 0 );
 
-        if ( root == null ) {
-            // If root was missing from input file, then it must've been created artificially - find it.
-            // List of nodes should be sorted by ID, therefore finding root should have negligible overhead.
-            for ( Node node : allNodes ) {
-                if ( node.getId().equalsIgnoreCase( Constants.ROOT_ID ) ) {
-                    root = (BasicNode)node;
-                    break;
+        return buildHierarchy(
+            root, nodes, sorted,
+            dataNames, eachClassAndItsCount, overallNumberOfInstances,
+            fixBreadthGaps, useSubtree
+        );
+    }
+
+    /**
+     * Loads the specified file by splitting it into chunks and parsing them in parallel on {@link #pool}.
+     * 
+     * @param errorReport
+     *            report to record skipped rows in, or null to fail on the first invalid row
+     * @see #load(String, boolean, boolean, boolean, boolean, boolean)
+     */
+    private Hierarchy loadParallel(
+        File inputFile,
+        boolean withInstancesNameAttribute,
+        boolean withTrueClassAttribute,
+        boolean withColumnHeaders,
+        boolean fixBreadthGaps,
+        boolean useSubtree,
+        LoadProgress progress,
+        ParseErrorReport errorReport ) throws IOException
+    {
+        BasicNode root = null;
+        ArrayList<BasicNode> nodes = new ArrayList<BasicNode>();
+        String[] dataNames = null;
+        HashMap<String, Integer> eachClassAndItsCount = new HashMap<String, Integer>();
+        int overallNumberOfInstances = 0;
+
+        try ( FileChannel channel = FileChannel.open( inputFile.toPath(), StandardOpenOption.READ ) ) {
+            long size = channel.size();
+            long dataStart = 0;
+            // Number of lines preceding the current chunk.
+            long lineOffset = 0;
+
+            // The first row determines the layout of the file, so it has to be read before splitting.
+            CSVRowParser layout = createParser( withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders );
+            MappedFileTokenizer firstRowTokenizer = new MappedFileTokenizer( channel, 0, size, MappedFileTokenizer.DEFAULT_WINDOW_SIZE );
+            if ( firstRowTokenizer.nextRow() ) {
+                layout.readLayout( firstRowTokenizer );
+
+                if ( withColumnHeaders ) {
+                    dataNames = layout.readDataNames( firstRowTokenizer );
+                    dataStart = firstRowTokenizer.getNextRowOffset();
+                    lineOffset = 1;
+                }
+            }
+            else {
+                // Empty file.
+                dataStart = size;
+            }
+
+            List<CSVChunk> chunks = new ArrayList<>();
+            long[] bounds = findChunkBounds( channel, dataStart, size );
+            for ( int i = 0; i < bounds.length - 1; ++i ) {
+                CSVChunk chunk = new CSVChunk(
+                    channel, bounds[i], bounds[i + 1], layout, instanceStorage, progress,
+                    errorReport == null ? -1 : errorReport.getMaxErrors()
+                );
+                chunks.add( chunk );
+                pool.execute( chunk );
+            }
+
+            HashMap<NodeId, BasicNode> nodesById = new HashMap<>();
+            for ( int i = 0; i < chunks.size(); ++i ) {
+                CSVChunk chunk = chunks.get( i );
+                try {
+                    chunk.get();
+                }
+                catch ( InterruptedException e ) {
+                    chunk.failure = new InterruptedIOException( "Loading has been interrupted." );
+                }
+                catch ( ExecutionException e ) {
+                    chunk.failure = e.getCause();
                 }
+
+                if ( chunk.failure != null ) {
+                    // Chunks are inspected in file order, so this is the same error the sequential reader would report.
+                    for ( int j = i; j < chunks.size(); ++j ) {
+                        chunks.get( j ).cancel( false );
+                    }
+                    rethrow( chunk.failure );
+                }
+
+                if ( errorReport != null ) {
+                    errorReport.addAll( chunk.errors, lineOffset );
+                    lineOffset += chunk.rowCount;
+                }
+
+                for ( Map.Entry<NodeId, LinkedList<Instance>> entry : chunk.instancesByNode.entrySet() ) {
+                    NodeId nodeId = entry.getKey();
+
+                    BasicNode node = nodesById.get( nodeId );
+                    if ( node == null ) {
+                        // Node for this id doesn't exist yet. Create it.
+                        node = new BasicNode( nodeId, null, useSubtree );
+                        node.setInstances( entry.getValue() );
+                        nodes.add( node );
+                        nodesById.put( nodeId, node );
+
+                        if ( root == null && nodeId.toString().equalsIgnoreCase( Constants.ROOT_ID ) ) {
+                            root = node;
+                        }
+                    }
+                    else {
+                        addInstances( node, nodeId, entry.getValue() );
+                    }
+                }
+
+                for ( Map.Entry<String, Integer> entry : chunk.classCounts.entrySet() ) {
+                    String trueClassAttr = entry.getKey();
+                    eachClassAndItsCount.put( trueClassAttr, getOrDefault( eachClassAndItsCount, trueClassAttr, 0 ) + entry.getValue() );
+                }
+
+                overallNumberOfInstances += chunk.instanceCount;
             }
         }
 
-        return new BasicHierarchy( root, allNodes, dataNames, eachClassAndItsCount, overallNumberOfInstances );
+        return buildHierarchy(
+            root, nodes, isSortedById( nodes ),
+            dataNames, eachClassAndItsCount, overallNumberOfInstances,
+            fixBreadthGaps, useSubtree
+        );
     }
 
     /**
-     * Converts boolean value to an integer.
+     * Adds instances parsed in another chunk (or poll) to an existing node.
      * 
-     * @param b
-     *            the boolean value to convert
-     * @return 1 if argument is true, 0 otherwise.
+     * @param id
+     *            id of the node as it was written in the first row of the instances, and assigned to them.
+     *            If it is formatted differently than the node's id, the instances are assigned to the node's id,
+     *            as if they had been parsed along with the node.
      */
-    private static int boolToInt( boolean b )
+    static void addInstances( BasicNode node, NodeId id, LinkedList<Instance> instances )
     {
-        return b ? 1 : 0;
+        if ( !id.toString().equals( node.getId() ) ) {
+            for ( Instance instance : instances ) {
+                instance.setNodeId( node.getId() );
+            }
+        }
+        node.addInstances( instances );
     }
 
     /**
-     * {@link Map#getOrDefault(Object, Object)} is available since 1.8, but we need to support 1.7...
+     * Splits the specified region of the file into chunks of roughly equal size, ending on row boundaries.
      * 
-     * @param map
-     *            the map to read from
-     * @param key
-     *            the key whose associated value is to be returned
-     * @param defaultValue
-     *            the default mapping of the key
-     * @return the value to which the specified key is mapped, or {@code defaultValue} if this map contains no mapping for the key
+     * @param channel
+     *            channel of the file to split
+     * @param start
+     *            offset of the first row of the region
+     * @param end
+     *            offset one past the last row of the region
+     * @return offsets at which consecutive chunks begin, followed by {@code end}.
+     * @throws IOException
+     *             if an IO error occurred while reading the file
      */
-    private static <K, V> V getOrDefault( Map<K, V> map, K key, V defaultValue )
+    private long[] findChunkBounds( FileChannel channel, long start, long end ) throws IOException
     {
-        if ( map.containsKey( key ) )
-            return map.get( key );
-        return defaultValue;
+        long length = end - start;
+        long chunkCount = Math.max( 1, Math.min( pool.getParallelism() * CHUNKS_PER_THREAD, length / MIN_CHUNK_SIZE ) );
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add( start );
+
+        ByteBuffer buffer = ByteBuffer.allocate( 1 << 16 );
+        for ( long i = 1; i < chunkCount; ++i ) {
+            long previous = bounds.get( bounds.size() - 1 );
+            long bound = findNextRow( channel, buffer, Math.max( start + length * i / chunkCount, previous ), end );
+            if ( bound > previous && bound < end ) {
+                bounds.add( bound );
+            }
+        }
+
+        bounds.add( end );
+
+        long[] result = new long[bounds.size()];
+        for ( int i = 0; i < result.length; ++i ) {
+            result[i] = bounds.get( i );
+        }
+        return result;
     }
 
     /**
-     * Checks whether the specified string is a valid node id.
-     * 
-     * @param string
-     *            the string to test
-     * @return true if the string is a valid node id, false otherwise.
+     * @return offset of the first row beginning after the specified offset, or {@code end} if there are no more rows.
      */
-    private static boolean isValidNodeId( String string )
+    private static long findNextRow( FileChannel channel, ByteBuffer buffer, long offset, long end ) throws IOException
     {
-        return string.matches( REGEX_NODE_ID );
+        while ( offset < end ) {
+            buffer.clear();
+            int read = channel.read( buffer, offset );
+            if ( read <= 0 ) {
+                break;
+            }
+
+            for ( int i = 0; i < read; ++i ) {
+                if ( buffer.get( i ) == '\n' ) {
+                    return Math.min( offset + i + 1, end );
+                }
+            }
+            offset += read;
+        }
+
+        return end;
     }
 
     /**
-     * Attempts to extract instance features from the specified line.
-     * 
-     * @param inputLine
-     *            the line to read from; used for error reporting.
-     * @param lineValues
-     *            the array of line values, obtained by splitting the input line over the separator char.
-     * @param dataColumnCount
-     *            number of data columns / instance features.
-     * @param minimumColumnCount
-     *            number of columns preceding instance features' columns
-     * @return array of data values - instance features
-     * @throws NumberFormatException
-     *             if one of the data values was not a parsable {@code double}
-     *             (indicating error in input file, or incorrect reader settings)
+     * Rethrows an exception caught on another thread, as-is if possible.
      */
-    private static double[] parseInstanceFeatures( String inputLine, String[] lineValues, int dataColumnCount, int minimumColumnCount )
+    private static void rethrow( Throwable t ) throws IOException
     {
-        double[] values = new double[dataColumnCount];
+        if ( t instanceof IOException ) {
+            throw (IOException)t;
+        }
+        else if ( t instanceof RuntimeException ) {
+            throw (RuntimeException)t;
+        }
+        else if ( t instanceof Error ) {
+            throw (Error)t;
+        }
+        else {
+            throw new RuntimeException( t );
+        }
+    }
 
-        for ( int j = 0; j < dataColumnCount; ++j ) {
-            try {
-                // Data columns are always last.
-                values[j] = Double.parseDouble( lineValues[minimumColumnCount + j] );
-            }
-            catch ( NumberFormatException e ) {
-                throw new NumberFormatException(
-                    String.format(
-                        "Failed to parse '%s' as double. All instance features should be valid floating point numbers.%nLine: %s%n",
-                        lineValues[minimumColumnCount + j], inputLine
-                    )
-                );
+    /**
+     * @return true if the nodes in the specified list are sorted in ascending order of their ids.
+     */
+    private static boolean isSortedById( List<BasicNode> nodes )
+    {
+        NodeIdComparator comparator = new NodeIdComparator();
+        for ( int i = 1; i < nodes.size(); ++i ) {
+            if ( comparator.compare( nodes.get( i - 1 ), nodes.get( i ) ) > 0 ) {
+                return false;
             }
         }
-
-        return values;
+        return true;
     }
 
     /**
-     * Searches the specified list looking for a node with the specified id.
+     * Builds the final hierarchy out of the nodes read from the input file.
      * 
-     * @param nodes
-     *            the list to search in
-     * @param id
-     *            the id to look for
-     * @return the node with the specified id, or null if not found
+     * @param sorted
+     *            whether the nodes are listed in ascending order of their ids. If not, they will be sorted
+     *            before building, since {@link HierarchyBuilder} expects ancestors to precede their descendants.
      */
-    private static BasicNode findNodeWithId( List<BasicNode> nodes, String id )
+    private Hierarchy buildHierarchy(
+        BasicNode root, ArrayList<BasicNode> nodes, boolean sorted,
+        String[] dataNames, HashMap<String, Integer> eachClassAndItsCount, int overallNumberOfInstances,
+        boolean fixBreadthGaps, boolean useSubtree ) throws InterruptedIOException
     {
-        StringIdComparator c = new StringIdComparator();
+        LoadProgress.checkInterrupted();
 
-        // Use binary search to find the node.
-        int low = 0;
-        int high = nodes.size() - 1;
+        if ( !sorted ) {
+            if ( assertOrder ) {
+                throw new RuntimeException( "Nodes in input file were not listed in ascending order." );
+            }
 
-        while ( low <= high ) {
-            int mid = ( low + high ) >>> 1;
-            BasicNode node = nodes.get( mid );
+            Collections.sort( nodes, new NodeIdComparator() );
+        }
 
-            int r = c.compare( node.getId(), id );
+        // External sorting takes precedence over the pool, so that the pool is not used at all.
+        ForkJoinPool centroidPool = externalSortMemoryBudget == 0 ? pool : null;
+        List<? extends Node> allNodes = HierarchyBuilder.buildCompleteHierarchy(
+            root, nodes, fixBreadthGaps, useSubtree, centroidPool
+        );
 
-            if ( r < 0 )
-                low = mid + 1;
-            else if ( r > 0 )
-                high = mid - 1;
-            else
-                return node;
+        if ( root == null ) {
+            // If root was missing from input file, then it must've been created artificially - find it.
+            // List of nodes should be sorted by ID, therefore finding root should have negligible overhead.
+            for ( Node node : allNodes ) {
+                if ( node.getId().equalsIgnoreCase( Constants.ROOT_ID ) ) {
+                    root = (BasicNode)node;
+                    break;
+                }
+            }
         }
 
-        return null;
+        return new BasicHierarchy( root, allNodes, dataNames, eachClassAndItsCount, overallNumberOfInstances );
+    }
+
+    /**
+     * {@link Map#getOrDefault(Object, Object)} is available since 1.8, but we need to support 1.7...
+     * 
+     * @param map
+     *            the map to read from
+     * @param key
+     *            the key whose associated value is to be returned
+     * @param defaultValue
+     *            the default mapping of the key
+     * @return the value to which the specified key is mapped, or {@code defaultValue} if this map contains no mapping for the key
+     */
+    private static <K, V> V getOrDefault( Map<K, V> map, K key, V defaultValue )
+    {
+        if ( map.containsKey( key ) )
+            return map.get( key );
+        return defaultValue;
     }
 }
@@ -0,0 +1,78 @@
+package basic_hierarchy.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+
+/**
+ * {@link ByteRowTokenizer} reading UTF-8 encoded input from an {@link InputStream} into a heap buffer.
+ * The buffer grows as needed to hold the longest row of the input.
+ */
+class InputStreamTokenizer extends ByteRowTokenizer
+{
+	private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+	private boolean endOfInput = false;
+
+
+	/**
+	 * @param in
+	 *            the stream to read. It is closed along with the tokenizer.
+	 */
+	public InputStreamTokenizer( InputStream in )
+	{
+		super( emptyBuffer( INITIAL_BUFFER_SIZE ), 0 );
+		this.in = in;
+	}
+
+	private static ByteBuffer emptyBuffer( int capacity )
+	{
+		ByteBuffer buffer = ByteBuffer.allocate( capacity );
+		buffer.limit( 0 );
+		return buffer;
+	}
+
+	@Override
+	protected boolean refill() throws IOException
+	{
+		if ( endOfInput ) {
+			return false;
+		}
+
+		int remaining = buffer.limit() - position;
+		if ( position == 0 && buffer.limit() == buffer.capacity() ) {
+			// The current row doesn't fit in the buffer.
+			ByteBuffer newBuffer = emptyBuffer( buffer.capacity() * 2 );
+			System.arraycopy( buffer.array(), 0, newBuffer.array(), 0, remaining );
+			buffer = newBuffer;
+		}
+		else {
+			// Discard rows that have already been read.
+			System.arraycopy( buffer.array(), position, buffer.array(), 0, remaining );
+			bufferOffset += position;
+			position = 0;
+		}
+
+		int read = 0;
+		while ( read == 0 ) {
+			read = in.read( buffer.array(), remaining, buffer.capacity() - remaining );
+		}
+
+		if ( read < 0 ) {
+			endOfInput = true;
+			buffer.limit( remaining );
+			return false;
+		}
+
+		buffer.limit( remaining + read );
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+}
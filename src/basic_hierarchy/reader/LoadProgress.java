@@ -0,0 +1,101 @@
+package basic_hierarchy.reader;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.ProgressListener;
+
+
+/**
+ * Tracks progress of a single load, and makes it stop once the loading thread has been interrupted.
+ * <p>
+ * Loading loops are expected to call {@link #advance(long, long)} every {@link #ROWS_PER_UPDATE} rows.
+ * </p>
+ */
+class LoadProgress
+{
+	/** Number of rows after which loading loops report progress and check for interruption. */
+	public static final int ROWS_PER_UPDATE = 4096;
+
+	private final ProgressListener listener;
+	private final long totalBytes;
+	private long rowsRead = 0;
+	private long bytesRead = 0;
+
+
+	/**
+	 * @param listener
+	 *            listener to notify about progress, or null if progress should not be reported
+	 * @param totalBytes
+	 *            size of the input file, in bytes
+	 */
+	public LoadProgress( ProgressListener listener, long totalBytes )
+	{
+		this.listener = listener;
+		this.totalBytes = totalBytes;
+	}
+
+	/**
+	 * Reports rows and bytes processed since the previous call. Can be called from multiple threads.
+	 *
+	 * @param rows
+	 *            number of rows read since the previous call
+	 * @param bytes
+	 *            number of bytes of the input file processed since the previous call
+	 * @throws InterruptedIOException
+	 *             if the current thread has been interrupted
+	 */
+	public void advance( long rows, long bytes ) throws InterruptedIOException
+	{
+		checkInterrupted();
+
+		if ( listener != null ) {
+			synchronized ( this ) {
+				rowsRead += rows;
+				bytesRead += bytes;
+				listener.progress( Math.min( bytesRead, totalBytes ), totalBytes, rowsRead );
+			}
+		}
+	}
+
+	/**
+	 * Reports that the whole input file has been processed.
+	 */
+	public void finish()
+	{
+		if ( listener != null ) {
+			synchronized ( this ) {
+				bytesRead = totalBytes;
+				listener.progress( bytesRead, totalBytes, rowsRead );
+			}
+		}
+	}
+
+	/**
+	 * @throws InterruptedIOException
+	 *             if the current thread has been interrupted
+	 */
+	public static void checkInterrupted() throws InterruptedIOException
+	{
+		if ( Thread.currentThread().isInterrupted() ) {
+			throw new InterruptedIOException( "Loading has been interrupted." );
+		}
+	}
+
+	/**
+	 * Runs the specified load on the specified executor.
+	 *
+	 * @return future of the loaded hierarchy. Cancelling it with {@code mayInterruptIfRunning} set to true
+	 *         interrupts the load.
+	 */
+	public static Future<Hierarchy> submit( Executor executor, Callable<Hierarchy> load )
+	{
+		FutureTask<Hierarchy> task = new FutureTask<Hierarchy>( load );
+		executor.execute( task );
+		return task;
+	}
+}
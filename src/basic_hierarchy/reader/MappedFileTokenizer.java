@@ -0,0 +1,113 @@
+package basic_hierarchy.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * {@link ByteRowTokenizer} reading a region of a file through memory mapping.
+ * <p>
+ * The region is mapped in windows of limited size (a single mapping can't exceed 2GB), each new window
+ * beginning at the first row that did not fit in the previous one.
+ * </p>
+ */
+class MappedFileTokenizer extends ByteRowTokenizer
+{
+	/** Default size of a single mapped window, in bytes. */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final boolean ownsChannel;
+	private final long end;
+	private final int windowSize;
+
+
+	/**
+	 * Creates a tokenizer for the specified region of the file. Rows are expected to begin exactly
+	 * at {@code start}. The channel is not closed when this tokenizer is closed.
+	 *
+	 * @param channel
+	 *            channel of the file to read
+	 * @param start
+	 *            offset of the first byte of the region
+	 * @param end
+	 *            offset one past the last byte of the region
+	 * @param windowSize
+	 *            maximum number of bytes mapped at once. No row can be longer than this.
+	 */
+	public MappedFileTokenizer( FileChannel channel, long start, long end, int windowSize ) throws IOException
+	{
+		this( channel, false, start, end, windowSize );
+	}
+
+	private MappedFileTokenizer( FileChannel channel, boolean ownsChannel, long start, long end, int windowSize )
+		throws IOException
+	{
+		super( channel.map( FileChannel.MapMode.READ_ONLY, start, Math.min( end - start, windowSize ) ), start );
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.end = end;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Creates a tokenizer for the whole specified file. The file is closed when this tokenizer is closed.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the tokenizer
+	 * @throws IOException
+	 *             if the file could not be opened or mapped
+	 */
+	public static MappedFileTokenizer open( File file ) throws IOException
+	{
+		FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+		try {
+			return new MappedFileTokenizer( channel, true, 0, channel.size(), DEFAULT_WINDOW_SIZE );
+		}
+		catch ( IOException | RuntimeException e ) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	protected boolean refill() throws IOException
+	{
+		if ( bufferOffset + buffer.limit() >= end ) {
+			return false;
+		}
+
+		if ( buffer.limit() - position >= windowSize ) {
+			throw new IOException(
+				String.format(
+					"Row starting at offset %s is longer than the mapping window (%s bytes).",
+					bufferOffset + position, windowSize
+				)
+			);
+		}
+
+		long nextOffset = bufferOffset + position;
+		buffer = channel.map( FileChannel.MapMode.READ_ONLY, nextOffset, Math.min( end - nextOffset, windowSize ) );
+		bufferOffset = nextOffset;
+		position = 0;
+
+		return true;
+	}
+
+	@Override
+	public long getBytesRead()
+	{
+		return getNextRowOffset();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if ( ownsChannel ) {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package basic_hierarchy.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Collects rows that could not be parsed during a lenient load, up to a fixed number of rows.
+ * Rows beyond that limit are only counted.
+ */
+public class ParseErrorReport
+{
+	private final int maxErrors;
+	private final List<ParseError> errors = new ArrayList<ParseError>();
+	private long errorCount = 0;
+
+
+	/**
+	 * @param maxErrors
+	 *            maximum number of errors kept in the report
+	 */
+	public ParseErrorReport( int maxErrors )
+	{
+		if ( maxErrors < 0 ) {
+			throw new IllegalArgumentException( "Maximum number of errors must not be negative: " + maxErrors );
+		}
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Records a row that could not be parsed.
+	 *
+	 * @param lineNumber
+	 *            number of the line in the input file, starting at 1
+	 * @param byteOffset
+	 *            offset of the first byte of the line in the input file, or -1 if unknown
+	 * @param reason
+	 *            description of the problem
+	 */
+	void add( long lineNumber, long byteOffset, String reason )
+	{
+		++errorCount;
+		if ( errors.size() < maxErrors ) {
+			errors.add( new ParseError( lineNumber, byteOffset, reason ) );
+		}
+	}
+
+	/**
+	 * Appends errors from a report covering a later part of the same file.
+	 *
+	 * @param report
+	 *            the report to append
+	 * @param lineOffset
+	 *            number of lines preceding the part of the file covered by the report
+	 */
+	void addAll( ParseErrorReport report, long lineOffset )
+	{
+		for ( ParseError error : report.errors ) {
+			if ( errors.size() == maxErrors ) {
+				break;
+			}
+			errors.add( new ParseError( error.lineNumber + lineOffset, error.byteOffset, error.reason ) );
+		}
+		errorCount += report.errorCount;
+	}
+
+	/**
+	 * @return maximum number of errors kept in this report.
+	 */
+	public int getMaxErrors()
+	{
+		return maxErrors;
+	}
+
+	/**
+	 * @return total number of rows that could not be parsed, including those not kept in this report.
+	 */
+	public long getErrorCount()
+	{
+		return errorCount;
+	}
+
+	/**
+	 * @return true if some errors were only counted, and are not included in {@link #getErrors()}.
+	 */
+	public boolean isTruncated()
+	{
+		return errorCount > errors.size();
+	}
+
+	/**
+	 * @return the first {@link #getMaxErrors()} errors, in order of their appearance in the input file.
+	 */
+	public List<ParseError> getErrors()
+	{
+		return Collections.unmodifiableList( errors );
+	}
+
+	/**
+	 * A single row that could not be parsed.
+	 */
+	public static class ParseError
+	{
+		private final long lineNumber;
+		private final long byteOffset;
+		private final String reason;
+
+
+		public ParseError( long lineNumber, long byteOffset, String reason )
+		{
+			this.lineNumber = lineNumber;
+			this.byteOffset = byteOffset;
+			this.reason = reason;
+		}
+
+		/**
+		 * @return number of the line in the input file, starting at 1.
+		 */
+		public long getLineNumber()
+		{
+			return lineNumber;
+		}
+
+		/**
+		 * @return offset of the first byte of the line in the input file (in the decompressed contents,
+		 *         for compressed files), or -1 if unknown.
+		 */
+		public long getByteOffset()
+		{
+			return byteOffset;
+		}
+
+		/**
+		 * @return description of the problem.
+		 */
+		public String getReason()
+		{
+			return reason;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format( "Line %s (offset %s): %s", lineNumber, byteOffset, reason );
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package basic_hierarchy.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+
+/**
+ * Splits {@link basic_hierarchy.common.Constants#DELIMITER}-separated input into rows, and exposes
+ * the columns of the current row.
+ * <p>
+ * Column semantics follow {@link String#split(String)}: trailing empty columns are not counted.
+ * </p>
+ */
+abstract class RowTokenizer implements Closeable
+{
+	private CountingInputStream byteCounter = null;
+
+
+	/**
+	 * Sets the stream counting bytes read from the input file, which is used by {@link #getBytesRead()}.
+	 *
+	 * @param byteCounter
+	 *            the stream wrapping the input file
+	 */
+	public void setByteCounter( CountingInputStream byteCounter )
+	{
+		this.byteCounter = byteCounter;
+	}
+
+	/**
+	 * @return number of bytes of the input file processed so far (possibly including input that has been
+	 *         read ahead), or -1 if unknown.
+	 */
+	public long getBytesRead()
+	{
+		return byteCounter == null ? -1 : byteCounter.getCount();
+	}
+
+	/**
+	 * @return offset of the first byte of the current row within the input, or -1 if unknown.
+	 */
+	public long getRowOffset()
+	{
+		return -1;
+	}
+
+	/**
+	 * Advances to the next row of the input.
+	 *
+	 * @return true if a row was read, false if the end of input has been reached.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the input
+	 */
+	public abstract boolean nextRow() throws IOException;
+
+	/**
+	 * @return number of columns in the current row.
+	 */
+	public abstract int getColumnCount();
+
+	/**
+	 * @param column
+	 *            index of the column to read
+	 * @return value of the specified column in the current row, as a new string.
+	 */
+	public abstract String getColumn( int column );
+
+	/**
+	 * Parses the specified column of the current row as a {@code double}, following the rules
+	 * of {@link Double#parseDouble(String)}.
+	 *
+	 * @param column
+	 *            index of the column to parse
+	 * @return the parsed value
+	 * @throws NumberFormatException
+	 *             if the column is not a parsable {@code double}
+	 */
+	public abstract double getDouble( int column );
+
+	/**
+	 * Checks whether the specified column of the current row is equal to the specified string,
+	 * without creating a new string for the column.
+	 *
+	 * @param column
+	 *            index of the column to compare
+	 * @param value
+	 *            the string to compare against (can be null, in which case this method returns false)
+	 * @return true if the column is equal to the string, false otherwise.
+	 */
+	public abstract boolean columnEquals( int column, String value );
+
+	/**
+	 * @return the whole current row, as a string. Used for error reporting.
+	 */
+	public abstract String getLine();
+}
@@ -0,0 +1,272 @@
+package basic_hierarchy.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import basic_hierarchy.common.Constants;
+import basic_hierarchy.common.HierarchyBuilder;
+import basic_hierarchy.common.NodeIdComparator;
+import basic_hierarchy.implementation.BasicHierarchy;
+import basic_hierarchy.implementation.BasicInstance;
+import basic_hierarchy.implementation.BasicNode;
+import basic_hierarchy.interfaces.DataReader;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.InstanceConsumer;
+import basic_hierarchy.interfaces.Node;
+
+
+/**
+ * {@link DataReader} which loads a uniform random sample of instances, for quick previews of large files.
+ * <p>
+ * Instances are read in a single pass with {@link DataReader#stream(String, boolean, boolean, boolean, InstanceConsumer)}
+ * of the underlying reader, and only the sampled ones are retained. Either at most a fixed number of instances
+ * is kept for each node (using reservoir sampling), or each instance is kept with a fixed probability.
+ * Sampled instances keep their relative order from the input file.
+ * </p>
+ * <p>
+ * The structure of the hierarchy is exact, and so are instance counts: {@link Node#getNodeInstanceCount()},
+ * {@link Hierarchy#getOverallNumberOfInstances()} and class counts report totals of the whole file.
+ * Node representations are computed from sampled instances only.
+ * </p>
+ */
+public class SamplingReader implements DataReader
+{
+	private final DataReader reader;
+	private final int instancesPerNode;
+	private final double fraction;
+	private final long seed;
+
+
+	private SamplingReader( DataReader reader, int instancesPerNode, double fraction, long seed )
+	{
+		this.reader = reader;
+		this.instancesPerNode = instancesPerNode;
+		this.fraction = fraction;
+		this.seed = seed;
+	}
+
+	/**
+	 * Creates a reader keeping a uniform sample of at most the specified number of instances for each node.
+	 *
+	 * @param reader
+	 *            the reader used to stream instances from input files
+	 * @param instancesPerNode
+	 *            maximum number of instances kept for each node
+	 * @param seed
+	 *            seed of the random number generator, so that samples can be reproduced
+	 * @return the sampling reader
+	 */
+	public static SamplingReader perNode( DataReader reader, int instancesPerNode, long seed )
+	{
+		if ( instancesPerNode < 0 ) {
+			throw new IllegalArgumentException( "Number of instances per node must not be negative: " + instancesPerNode );
+		}
+		return new SamplingReader( reader, instancesPerNode, 1, seed );
+	}
+
+	/**
+	 * Creates a reader keeping each instance with the specified probability, so that the sample contains
+	 * approximately the specified fraction of all instances.
+	 *
+	 * @param reader
+	 *            the reader used to stream instances from input files
+	 * @param fraction
+	 *            probability of keeping an instance, between 0 and 1
+	 * @param seed
+	 *            seed of the random number generator, so that samples can be reproduced
+	 * @return the sampling reader
+	 */
+	public static SamplingReader fraction( DataReader reader, double fraction, long seed )
+	{
+		if ( !( fraction >= 0 && fraction <= 1 ) ) {
+			throw new IllegalArgumentException( "Fraction must be between 0 and 1: " + fraction );
+		}
+		return new SamplingReader( reader, Integer.MAX_VALUE, fraction, seed );
+	}
+
+	@Override
+	public Hierarchy load(
+		String filePath,
+		boolean withInstancesNameAttribute,
+		boolean withTrueClassAttribute,
+		boolean withColumnHeaders,
+		boolean fixBreadthGaps,
+		boolean useSubtree ) throws IOException
+	{
+		final Random random = new Random( seed );
+		final LinkedHashMap<String, NodeSample> samples = new LinkedHashMap<String, NodeSample>();
+		final HashMap<String, Integer> eachClassAndItsCount = new HashMap<String, Integer>();
+		final int[] overallNumberOfInstances = { 0 };
+
+		String[] dataNames = reader.stream(
+			filePath, withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+			new InstanceConsumer() {
+				private NodeSample lastSample = null;
+
+
+				@Override
+				public void consume( String nodeId, String trueClass, String instanceName, double[] data )
+				{
+					int row = overallNumberOfInstances[0]++;
+
+					if ( trueClass != null ) {
+						Integer count = eachClassAndItsCount.get( trueClass );
+						eachClassAndItsCount.put( trueClass, count == null ? 1 : count + 1 );
+					}
+
+					NodeSample sample = lastSample;
+					if ( sample == null || !sample.nodeId.equals( nodeId ) ) {
+						sample = samples.get( nodeId );
+						if ( sample == null ) {
+							sample = new NodeSample( nodeId );
+							samples.put( nodeId, sample );
+						}
+						lastSample = sample;
+					}
+
+					int slot = sample.offer( random );
+					if ( slot >= 0 ) {
+						// Data arrays are reused by the reader, so only sampled instances get a copy.
+						sample.store( slot, row, new BasicInstance( instanceName, nodeId, data.clone(), trueClass ) );
+					}
+				}
+			}
+		);
+
+		BasicNode root = null;
+		ArrayList<BasicNode> nodes = new ArrayList<BasicNode>();
+		for ( NodeSample sample : samples.values() ) {
+			BasicNode node = new BasicNode( sample.nodeId, null, false );
+			node.setInstances( sample.getInstances() );
+			node.setNodeInstanceCount( sample.count );
+			nodes.add( node );
+
+			if ( root == null && sample.nodeId.equalsIgnoreCase( Constants.ROOT_ID ) ) {
+				root = node;
+			}
+		}
+
+		// HierarchyBuilder expects ancestors to precede their descendants.
+		Collections.sort( nodes, new NodeIdComparator() );
+		List<? extends Node> allNodes = HierarchyBuilder.buildCompleteHierarchy( root, nodes, fixBreadthGaps, useSubtree );
+
+		if ( root == null ) {
+			// If root was missing from input file, then it must've been created artificially - find it.
+			for ( Node node : allNodes ) {
+				if ( node.getId().equalsIgnoreCase( Constants.ROOT_ID ) ) {
+					root = (BasicNode)node;
+					break;
+				}
+			}
+		}
+
+		return new BasicHierarchy( root, allNodes, dataNames, eachClassAndItsCount, overallNumberOfInstances[0] );
+	}
+
+	/**
+	 * Streams all instances of the file with the underlying reader. No sampling is performed.
+	 */
+	@Override
+	public String[] stream(
+		String filePath,
+		boolean withInstancesNameAttribute,
+		boolean withTrueClassAttribute,
+		boolean withColumnHeaders,
+		InstanceConsumer consumer ) throws IOException
+	{
+		return reader.stream( filePath, withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders, consumer );
+	}
+
+	/**
+	 * Sampled instances of a single node, along with the total number of its instances.
+	 */
+	private class NodeSample
+	{
+		private final String nodeId;
+		private int count = 0;
+		private Instance[] instances = new Instance[4];
+		/** Index of each sampled instance in the input file, used to restore file order. */
+		private int[] rows = new int[4];
+		private int size = 0;
+
+
+		public NodeSample( String nodeId )
+		{
+			this.nodeId = nodeId;
+		}
+
+		/**
+		 * Counts another instance of this node, and decides whether it should be sampled.
+		 *
+		 * @return slot in which the instance should be stored, or -1 if it should be skipped.
+		 */
+		public int offer( Random random )
+		{
+			++count;
+
+			if ( fraction < 1 && random.nextDouble() >= fraction ) {
+				return -1;
+			}
+			if ( size < instancesPerNode ) {
+				return size;
+			}
+
+			// Reservoir is full - replace one of the sampled instances with probability k/n.
+			int slot = random.nextInt( count );
+			return slot < instancesPerNode ? slot : -1;
+		}
+
+		public void store( int slot, int row, Instance instance )
+		{
+			if ( slot == size ) {
+				if ( size == instances.length ) {
+					int capacity = (int)Math.min( (long)size * 2, instancesPerNode );
+					Instance[] newInstances = new Instance[capacity];
+					int[] newRows = new int[capacity];
+					System.arraycopy( instances, 0, newInstances, 0, size );
+					System.arraycopy( rows, 0, newRows, 0, size );
+					instances = newInstances;
+					rows = newRows;
+				}
+				++size;
+			}
+
+			instances[slot] = instance;
+			rows[slot] = row;
+		}
+
+		/**
+		 * @return sampled instances, in order of their appearance in the input file.
+		 */
+		public LinkedList<Instance> getInstances()
+		{
+			Integer[] order = new Integer[size];
+			for ( int i = 0; i < size; ++i ) {
+				order[i] = i;
+			}
+
+			Arrays.sort( order, new Comparator<Integer>() {
+				@Override
+				public int compare( Integer o1, Integer o2 )
+				{
+					return Integer.compare( rows[o1], rows[o2] );
+				}
+			} );
+
+			LinkedList<Instance> result = new LinkedList<Instance>();
+			for ( Integer i : order ) {
+				result.add( instances[i] );
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package basic_hierarchy.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import basic_hierarchy.common.Constants;
+import basic_hierarchy.common.HierarchyBuilder;
+import basic_hierarchy.common.InstanceStorage;
+import basic_hierarchy.common.NodeId;
+import basic_hierarchy.common.NodeIdComparator;
+import basic_hierarchy.implementation.BasicHierarchy;
+import basic_hierarchy.implementation.BasicNode;
+import basic_hierarchy.interfaces.DataReader;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.InstanceConsumer;
+import basic_hierarchy.interfaces.Node;
+
+
+/**
+ * {@link DataReader} which loads a dataset split into several files (shards) as a single hierarchy.
+ * <p>
+ * Shards are streamed in parallel with {@link DataReader#stream(String, boolean, boolean, boolean, InstanceConsumer)}
+ * of the underlying reader, and their nodes, class counts and instance counts are merged once all of them have
+ * been read. The hierarchy is built only once, out of the merged nodes. Instances of a node are ordered by shard,
+ * and then by their order within the shard. All shards must have the same column headers.
+ * </p>
+ * <p>
+ * {@link #load(String, boolean, boolean, boolean, boolean, boolean)} accepts either a single file, or a directory,
+ * in which case all files in the directory (excluding hidden files and subdirectories) are loaded as shards,
+ * in order of their names.
+ * </p>
+ */
+public class ShardedReader implements DataReader
+{
+	private final DataReader reader;
+	private final ForkJoinPool pool;
+	private InstanceStorage instanceStorage = InstanceStorage.DOUBLE;
+
+
+	/**
+	 * @param reader
+	 *            the reader used to stream instances from each shard. Its
+	 *            {@link DataReader#stream(String, boolean, boolean, boolean, InstanceConsumer)} method has to be safe
+	 *            to call concurrently.
+	 * @param pool
+	 *            the pool to read shards, and to calculate centroids of the merged hierarchy on
+	 */
+	public ShardedReader( DataReader reader, ForkJoinPool pool )
+	{
+		if ( reader == null || pool == null ) {
+			throw new IllegalArgumentException( "Reader and pool must not be null." );
+		}
+		this.reader = reader;
+		this.pool = pool;
+	}
+
+	/**
+	 * @param instanceStorage
+	 *            how feature values of loaded instances are stored. Defaults to {@link InstanceStorage#DOUBLE}.
+	 */
+	public void setInstanceStorage( InstanceStorage instanceStorage )
+	{
+		if ( instanceStorage == null ) {
+			throw new IllegalArgumentException( "Instance storage must not be null." );
+		}
+		this.instanceStorage = instanceStorage;
+	}
+
+	@Override
+	public Hierarchy load(
+		String filePath,
+		boolean withInstancesNameAttribute,
+		boolean withTrueClassAttribute,
+		boolean withColumnHeaders,
+		boolean fixBreadthGaps,
+		boolean useSubtree ) throws IOException
+	{
+		return load(
+			listShards( filePath ),
+			withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+			fixBreadthGaps, useSubtree
+		);
+	}
+
+	/**
+	 * Loads the specified shards as a single hierarchy.
+	 *
+	 * @param shards
+	 *            the files to read, in order
+	 * @see DataReader#load(String, boolean, boolean, boolean, boolean, boolean)
+	 */
+	public Hierarchy load(
+		List<File> shards,
+		boolean withInstancesNameAttribute,
+		boolean withTrueClassAttribute,
+		boolean withColumnHeaders,
+		boolean fixBreadthGaps,
+		boolean useSubtree ) throws IOException
+	{
+		if ( shards.isEmpty() ) {
+			throw new IllegalArgumentException( "At least one shard is required." );
+		}
+
+		List<Shard> tasks = new ArrayList<Shard>();
+		for ( File shard : shards ) {
+			Shard task = new Shard( shard, withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders );
+			tasks.add( task );
+			pool.execute( task );
+		}
+
+		BasicNode root = null;
+		ArrayList<BasicNode> nodes = new ArrayList<BasicNode>();
+		HashMap<NodeId, BasicNode> nodesById = new HashMap<NodeId, BasicNode>();
+		HashMap<String, Integer> eachClassAndItsCount = new HashMap<String, Integer>();
+		int overallNumberOfInstances = 0;
+
+		for ( int i = 0; i < tasks.size(); ++i ) {
+			Shard task = tasks.get( i );
+			task.join();
+
+			if ( task.failure == null && !Arrays.equals( task.dataNames, tasks.get( 0 ).dataNames ) ) {
+				task.failure = new RuntimeException(
+					String.format(
+						"Shard '%s' has different column headers than shard '%s'.",
+						task.file.getPath(), tasks.get( 0 ).file.getPath()
+					)
+				);
+			}
+
+			if ( task.failure != null ) {
+				// Shards are inspected in order, so the reported error does not depend on scheduling.
+				for ( int j = i + 1; j < tasks.size(); ++j ) {
+					tasks.get( j ).cancel( false );
+				}
+				rethrow( task.failure );
+			}
+
+			for ( Map.Entry<NodeId, LinkedList<Instance>> entry : task.instancesByNode.entrySet() ) {
+				NodeId nodeId = entry.getKey();
+
+				BasicNode node = nodesById.get( nodeId );
+				if ( node == null ) {
+					node = new BasicNode( nodeId, null, useSubtree );
+					node.setInstances( entry.getValue() );
+					nodes.add( node );
+					nodesById.put( nodeId, node );
+
+					if ( root == null && node.getId().equalsIgnoreCase( Constants.ROOT_ID ) ) {
+						root = node;
+					}
+				}
+				else {
+					GeneratedCSVReader.addInstances( node, nodeId, entry.getValue() );
+				}
+			}
+
+			for ( Map.Entry<String, Integer> entry : task.classCounts.entrySet() ) {
+				Integer count = eachClassAndItsCount.get( entry.getKey() );
+				eachClassAndItsCount.put( entry.getKey(), count == null ? entry.getValue() : count + entry.getValue() );
+			}
+
+			overallNumberOfInstances += task.instanceCount;
+		}
+
+		// HierarchyBuilder expects ancestors to precede their descendants.
+		Collections.sort( nodes, new NodeIdComparator() );
+		List<? extends Node> allNodes = HierarchyBuilder.buildCompleteHierarchy( root, nodes, fixBreadthGaps, useSubtree, pool );
+
+		if ( root == null ) {
+			// If root was missing from input files, then it must've been created artificially - find it.
+			for ( Node node : allNodes ) {
+				if ( node.getId().equalsIgnoreCase( Constants.ROOT_ID ) ) {
+					root = (BasicNode)node;
+					break;
+				}
+			}
+		}
+
+		return new BasicHierarchy( root, allNodes, tasks.get( 0 ).dataNames, eachClassAndItsCount, overallNumberOfInstances );
+	}
+
+	/**
+	 * Streams all instances of the specified file or directory with the underlying reader, one shard after another.
+	 */
+	@Override
+	public String[] stream(
+		String filePath,
+		boolean withInstancesNameAttribute,
+		boolean withTrueClassAttribute,
+		boolean withColumnHeaders,
+		InstanceConsumer consumer ) throws IOException
+	{
+		String[] dataNames = null;
+		for ( File shard : listShards( filePath ) ) {
+			dataNames = reader.stream( shard.getPath(), withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders, consumer );
+		}
+		return dataNames;
+	}
+
+	/**
+	 * @param filePath
+	 *            path to a file, or to a directory of shards
+	 * @return the shards to read, in order
+	 * @throws IOException
+	 *             if the directory cannot be listed, or does not contain any files
+	 */
+	private static List<File> listShards( String filePath ) throws IOException
+	{
+		File file = new File( filePath );
+		if ( !file.isDirectory() ) {
+			return Collections.singletonList( file );
+		}
+
+		File[] files = file.listFiles();
+		if ( files == null ) {
+			throw new IOException( "Cannot list directory: " + filePath );
+		}
+		Arrays.sort( files );
+
+		List<File> result = new ArrayList<File>();
+		for ( File shard : files ) {
+			if ( shard.isFile() && !shard.isHidden() ) {
+				result.add( shard );
+			}
+		}
+
+		if ( result.isEmpty() ) {
+			throw new IOException( "Directory does not contain any files: " + filePath );
+		}
+		return result;
+	}
+
+	/**
+	 * Rethrows an exception caught on another thread, as-is if possible.
+	 */
+	private static void rethrow( Throwable t ) throws IOException
+	{
+		if ( t instanceof IOException ) {
+			throw (IOException)t;
+		}
+		else if ( t instanceof RuntimeException ) {
+			throw (RuntimeException)t;
+		}
+		else if ( t instanceof Error ) {
+			throw (Error)t;
+		}
+		else {
+			throw new RuntimeException( t );
+		}
+	}
+
+	/**
+	 * Reads a single shard. Any exception raised while reading is stored in {@link #failure},
+	 * to be rethrown on the merging thread.
+	 */
+	private class Shard extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final File file;
+		private final boolean withInstancesNameAttribute;
+		private final boolean withTrueClassAttribute;
+		private final boolean withColumnHeaders;
+
+		/**
+		 * Instances of each node, with nodes in order of their first appearance in the shard. Instances are assigned
+		 * to the id as it was written in the first row of the node, which is the key's text.
+		 */
+		private final LinkedHashMap<NodeId, LinkedList<Instance>> instancesByNode = new LinkedHashMap<NodeId, LinkedList<Instance>>();
+		private final Map<String, Integer> classCounts = new HashMap<String, Integer>();
+		private int instanceCount = 0;
+		private String[] dataNames = null;
+		private Throwable failure = null;
+
+
+		public Shard( File file, boolean withInstancesNameAttribute, boolean withTrueClassAttribute, boolean withColumnHeaders )
+		{
+			this.file = file;
+			this.withInstancesNameAttribute = withInstancesNameAttribute;
+			this.withTrueClassAttribute = withTrueClassAttribute;
+			this.withColumnHeaders = withColumnHeaders;
+		}
+
+		@Override
+		protected void compute()
+		{
+			try {
+				dataNames = reader.stream(
+					file.getPath(), withInstancesNameAttribute, withTrueClassAttribute, withColumnHeaders,
+					new InstanceConsumer() {
+						private String lastNodeId = null;
+						private LinkedList<Instance> lastInstances = null;
+						private String lastAssignedNodeId = null;
+
+
+						@Override
+						public void consume( String nodeId, String trueClass, String instanceName, double[] data )
+						{
+							if ( trueClass != null ) {
+								Integer count = classCounts.get( trueClass );
+								classCounts.put( trueClass, count == null ? 1 : count + 1 );
+							}
+
+							if ( lastInstances == null || !lastNodeId.equals( nodeId ) ) {
+								lastNodeId = nodeId;
+								NodeId parsedId = NodeId.parse( nodeId );
+								lastInstances = instancesByNode.get( parsedId );
+								if ( lastInstances == null ) {
+									lastInstances = new LinkedList<Instance>();
+									instancesByNode.put( parsedId, lastInstances );
+									lastAssignedNodeId = nodeId;
+								}
+								else {
+									// The id may be formatted differently than in the node's first row.
+									lastAssignedNodeId = lastInstances.getFirst().getNodeId();
+								}
+							}
+
+							// Data arrays are reused by the reader, so they have to be copied if the instance keeps them.
+							double[] values = instanceStorage.retainsData() ? data.clone() : data;
+							lastInstances.add( instanceStorage.createInstance( instanceName, lastAssignedNodeId, values, trueClass ) );
+							instanceCount++;
+						}
+					}
+				);
+			}
+			catch ( Throwable e ) {
+				failure = e;
+			}
+		}
+	}
+}
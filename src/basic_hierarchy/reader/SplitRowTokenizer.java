@@ -0,0 +1,94 @@
+package basic_hierarchy.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import basic_hierarchy.common.Constants;
+
+
+/**
+ * {@link RowTokenizer} reading lines from a {@link BufferedReader} and splitting them over
+ * {@link Constants#DELIMITER}.
+ * <p>
+ * Subclasses can supply lines from elsewhere by overriding {@link #readLine()}.
+ * </p>
+ */
+class SplitRowTokenizer extends RowTokenizer
+{
+	private final BufferedReader reader;
+	private String line;
+	private String[] lineValues;
+
+
+	public SplitRowTokenizer( BufferedReader reader )
+	{
+		this.reader = reader;
+	}
+
+	/**
+	 * Constructor for subclasses which override {@link #readLine()} and {@link #close()}.
+	 */
+	protected SplitRowTokenizer()
+	{
+		this( null );
+	}
+
+	/**
+	 * @return the next line of input, or null if the end of input has been reached.
+	 * @throws IOException
+	 *             if an IO error occurred while reading the input
+	 */
+	protected String readLine() throws IOException
+	{
+		return reader.readLine();
+	}
+
+	@Override
+	public boolean nextRow() throws IOException
+	{
+		line = readLine();
+		if ( line == null ) {
+			lineValues = null;
+			return false;
+		}
+
+		lineValues = line.split( Constants.DELIMITER );
+		return true;
+	}
+
+	@Override
+	public int getColumnCount()
+	{
+		return lineValues.length;
+	}
+
+	@Override
+	public String getColumn( int column )
+	{
+		return lineValues[column];
+	}
+
+	@Override
+	public double getDouble( int column )
+	{
+		return Double.parseDouble( lineValues[column] );
+	}
+
+	@Override
+	public boolean columnEquals( int column, String value )
+	{
+		return lineValues[column].equals( value );
+	}
+
+	@Override
+	public String getLine()
+	{
+		return line;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+}
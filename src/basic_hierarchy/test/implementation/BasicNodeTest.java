@@ -8,6 +8,7 @@ import basic_hierarchy.implementation.BasicNode;
 import basic_hierarchy.common.Constants;
 import org.junit.Before;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 
 import static org.junit.Assert.*;
@@ -56,4 +57,120 @@ public class BasicNodeTest {
                 TestCommon.DOUBLE_COMPARISION_DELTA);
     }
 
-}
\ No newline at end of file
+    @org.junit.Test
+    public void centroidsFollowAddedRemovedAndMovedInstances() throws Exception {
+        node.recalculateSubtreeCentroids();
+
+        Instance added = new BasicInstance("fifth", child.getId(), new double[]{1.0, 3.5}, null);
+        child.addInstance(added);
+        assertCentroidsRecalculated();
+
+        Instance removed = node.getNodeInstances().getFirst();
+        assertTrue(node.removeInstance(removed));
+        assertFalse(node.removeInstance(removed));
+        assertCentroidsRecalculated();
+
+        double[] subtreeCentroid = node.getNodeRepresentation().getData();
+        assertTrue(child.moveInstance(added, node));
+        assertEquals(node.getId(), added.getNodeId());
+        assertTrue(node.getNodeInstances().contains(added));
+        assertFalse(child.getNodeInstances().contains(added));
+        assertArrayEquals(subtreeCentroid, node.getNodeRepresentation().getData(), 0);
+        assertCentroidsRecalculated();
+
+        LinkedList<Instance> replaced = new LinkedList<>();
+        replaced.add(new BasicInstance("sixth", child.getId(), new double[]{-2.0, 1.0}, null));
+        child.setInstances(replaced);
+        assertCentroidsRecalculated();
+
+        // Node centroids keep being maintained, and match recalculated ones exactly.
+        node.recalculateCentroid(false);
+        node.addInstance(new BasicInstance("seventh", node.getId(), new double[]{0.1, 0.2}, null));
+        double[] nodeCentroid = node.getNodeRepresentation().getData();
+        node.recalculateCentroid(false);
+        assertArrayEquals(nodeCentroid, node.getNodeRepresentation().getData(), 0);
+    }
+
+    @org.junit.Test
+    public void linkedChildrenAreAddedToMaintainedSums() throws Exception {
+        node.recalculateSubtreeCentroids();
+
+        // An empty child does not change the sums, which keep being maintained.
+        BasicNode empty = new BasicNode(TestCommon.getIDOfChildCluster(node.getId(), 1), node, true);
+        node.addChild(empty);
+        child.addInstance(new BasicInstance("fifth", child.getId(), new double[]{1.0, 3.5}, null));
+        double[] subtreeCentroid = node.getNodeRepresentation().getData();
+
+        BasicNode grandchild = new BasicNode(TestCommon.getIDOfChildCluster(empty.getId(), 0), empty, true);
+        LinkedList<Instance> grandchildInstances = new LinkedList<>();
+        grandchildInstances.add(new BasicInstance("first", grandchild.getId(), new double[]{8.0, -3.0}, null));
+        grandchild.setInstances(grandchildInstances);
+        empty.addChild(grandchild);
+        assertFalse(Arrays.equals(subtreeCentroid, node.getNodeRepresentation().getData()));
+
+        LinkedList<Node> children = new LinkedList<>(node.getChildren());
+        children.remove(child);
+        node.setChildren(children);
+        grandchild.addInstance(new BasicInstance("second", grandchild.getId(), new double[]{-1.0, 2.0}, null));
+
+        double[] expected = node.getNodeRepresentation().getData();
+        double[] expectedGrandchild = grandchild.getNodeRepresentation().getData();
+        node.recalculateSubtreeCentroids();
+        assertArrayEquals(node.getNodeRepresentation().getData(), expected, TestCommon.DOUBLE_COMPARISION_DELTA);
+        assertArrayEquals(new double[]{3.5, -0.5}, expectedGrandchild, TestCommon.DOUBLE_COMPARISION_DELTA);
+        assertArrayEquals(expectedGrandchild, empty.getNodeRepresentation().getData(), 0);
+    }
+
+    @org.junit.Test
+    public void instancesAddedToListDirectlyAreSummedOnNextChange() throws Exception {
+        node.recalculateSubtreeCentroids();
+
+        child.getNodeInstances().add(new BasicInstance("fifth", child.getId(), new double[]{1.0, 3.5}, null));
+        child.addInstance(new BasicInstance("sixth", child.getId(), new double[]{-2.0, 1.0}, null));
+        assertCentroidsRecalculated();
+
+        LinkedList<Instance> added = new LinkedList<>();
+        added.add(new BasicInstance("seventh", child.getId(), new double[]{0.5, 0.5}, null));
+        added.add(new BasicInstance("eighth", child.getId(), new double[]{4.0, -1.0}, null));
+        child.addInstances(added);
+        assertEquals(8, child.getNodeInstances().size());
+        assertCentroidsRecalculated();
+    }
+
+    @org.junit.Test
+    public void newNodesDoNotSumInstancesUntilRecalculated() throws Exception {
+        final int[] reads = new int[1];
+        LinkedList<Instance> instances = new LinkedList<>();
+        for (int i = 0; i < 3; ++i) {
+            instances.add(new BasicInstance("instance" + i, Constants.ROOT_ID, new double[]{i, 2.0 * i}, null) {
+                @Override
+                public double[] getData() {
+                    ++reads[0];
+                    return super.getData();
+                }
+            });
+        }
+
+        BasicNode loaded = new BasicNode(Constants.ROOT_ID, null, true);
+        loaded.setInstances(new LinkedList<>(instances.subList(0, 2)));
+        loaded.addInstance(instances.getLast());
+        assertEquals(0, reads[0]);
+
+        // Sums are maintained once the centroid has been recalculated.
+        loaded.recalculateCentroid(false);
+        int readsAfterRecalculation = reads[0];
+        assertTrue(readsAfterRecalculation >= instances.size());
+        loaded.removeInstance(instances.getFirst());
+        assertEquals(readsAfterRecalculation + 1, reads[0]);
+        assertArrayEquals(new double[]{1.5, 3.0}, loaded.getNodeRepresentation().getData(), 0);
+    }
+
+    private void assertCentroidsRecalculated() {
+        double[] subtreeCentroid = node.getNodeRepresentation().getData();
+        double[] childCentroid = child.getNodeRepresentation().getData();
+
+        node.recalculateSubtreeCentroids();
+        assertArrayEquals(node.getNodeRepresentation().getData(), subtreeCentroid, TestCommon.DOUBLE_COMPARISION_DELTA);
+        assertArrayEquals(child.getNodeRepresentation().getData(), childCentroid, TestCommon.DOUBLE_COMPARISION_DELTA);
+    }
+}
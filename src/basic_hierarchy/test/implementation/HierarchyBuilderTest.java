@@ -1,7 +1,12 @@
 package basic_hierarchy.test.implementation;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -9,7 +14,10 @@ import org.junit.Test;
 
 import basic_hierarchy.common.Constants;
 import basic_hierarchy.common.HierarchyBuilder;
+import basic_hierarchy.implementation.BasicInstance;
 import basic_hierarchy.implementation.BasicNode;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.Node;
 
 
 public class HierarchyBuilderTest
@@ -88,4 +96,187 @@ public class HierarchyBuilderTest
 			Assert.assertEquals( leaf.getParent(), artificial1 );
 		}
 	}
+
+	@Test
+	public void buildCompleteHierarchyLinksNodesInInputOrder() throws Exception
+	{
+		List<BasicNode> input = new ArrayList<>();
+		List<String> ids = new ArrayList<>();
+		ids.add( Constants.ROOT_ID );
+		for ( int i = 0; i < ids.size() && ids.size() < 2000; ++i ) {
+			for ( int j = 0; j < 3; ++j ) {
+				ids.add( ids.get( i ) + "." + j );
+			}
+		}
+		for ( String id : ids.subList( 1, ids.size() ) ) {
+			input.add( new BasicNode( id, null, false ) );
+		}
+		Collections.shuffle( input, new Random( 0 ) );
+
+		List<BasicNode> shuffled = new ArrayList<>( input );
+		List<? extends Node> all = HierarchyBuilder.buildCompleteHierarchy( null, input, false, false );
+
+		// The root was missing from the input, so it has been created artificially.
+		Assert.assertEquals( ids.size(), all.size() );
+
+		for ( BasicNode node : shuffled ) {
+			String id = node.getId();
+			Node parent = node.getParent();
+			Assert.assertNotNull( id, parent );
+			Assert.assertEquals( id.substring( 0, id.lastIndexOf( '.' ) ), parent.getId() );
+
+			// Children are listed in the order of the input.
+			int previous = -1;
+			for ( Node child : node.getChildren() ) {
+				int index = shuffled.indexOf( child );
+				Assert.assertTrue( index > previous );
+				previous = index;
+			}
+		}
+	}
+
+	@Test
+	public void fixDepthGapsSharesArtificialAncestors() throws Exception
+	{
+		// Leaves 8 levels below the root, with none of their ancestors present.
+		List<BasicNode> input = new ArrayList<>();
+		input.add( root );
+		Set<String> missing = new HashSet<>();
+		Random random = new Random( 0 );
+		for ( int i = 0; i < 5000; ++i ) {
+			StringBuilder id = new StringBuilder( root.getId() );
+			for ( int depth = 0; depth < 8; ++depth ) {
+				id.append( '.' ).append( random.nextInt( 3 ) );
+				missing.add( id.toString() );
+			}
+			input.add( new BasicNode( id.toString() + "." + i, null, false ) );
+		}
+
+		List<BasicNode> artificial = HierarchyBuilder.fixDepthGaps( root, input, false );
+
+		Set<String> artificialIds = new HashSet<>();
+		for ( BasicNode node : artificial ) {
+			Assert.assertTrue( artificialIds.add( node.getId() ) );
+		}
+		Assert.assertEquals( missing, artificialIds );
+
+		for ( BasicNode node : input.subList( 1, input.size() ) ) {
+			Node ancestor = node;
+			for ( int depth = 9; depth > 0; --depth ) {
+				Assert.assertNotNull( ancestor.getParent() );
+				Assert.assertTrue( ancestor.getParent().getChildren().contains( ancestor ) );
+				ancestor = ancestor.getParent();
+			}
+			Assert.assertSame( root, ancestor );
+		}
+	}
+
+	@Test
+	public void subtreeCentroidsMatchMeansWithinErrorBound() throws Exception
+	{
+		// Values of widely different magnitudes, so that the order of additions affects the results.
+		List<? extends Node> all = HierarchyBuilder.buildCompleteHierarchy( null, createRandomNodes( 300, 8 ), false, true );
+		int inexactCount = 0;
+
+		for ( Node node : all ) {
+			double[] centroid = node.getNodeRepresentation().getData();
+
+			// Recalculating a single node's centroid has to give exactly the same result.
+			( (BasicNode)node ).recalculateCentroid( true );
+			Assert.assertArrayEquals( node.getId(), node.getNodeRepresentation().getData(), centroid, 0 );
+
+			// Means of subtree instances, summed one by one in pre-order.
+			List<Instance> instances = node.getSubtreeInstances();
+			int n = instances.size();
+			double[] expected = new double[n == 0 ? 0 : 2];
+			double[] absoluteSums = new double[expected.length];
+			for ( Instance instance : instances ) {
+				for ( int i = 0; i < expected.length; ++i ) {
+					expected[i] += instance.getData()[i];
+					absoluteSums[i] += Math.abs( instance.getData()[i] );
+				}
+			}
+
+			for ( int i = 0; i < expected.length; ++i ) {
+				expected[i] /= n;
+
+				if ( node.getChildren().isEmpty() ) {
+					Assert.assertEquals( node.getId(), expected[i], centroid[i], 0 );
+				}
+				else {
+					// Error bound documented in BasicNode.recalculateSubtreeCentroids().
+					double tolerance = 2 * ( n - 1 ) * ( Math.ulp( 1.0 ) / 2 ) * absoluteSums[i] / n + Math.ulp( expected[i] );
+					Assert.assertEquals( node.getId(), expected[i], centroid[i], tolerance );
+					if ( expected[i] != centroid[i] ) {
+						++inexactCount;
+					}
+				}
+			}
+		}
+
+		// Subtree centroids are not bit-for-bit equal to means summed in pre-order, only within the bound.
+		Assert.assertTrue( inexactCount > 0 );
+	}
+
+	@Test
+	public void parallelCentroidsMatchSequentialCentroids() throws Exception
+	{
+		List<BasicNode> nodes = createRandomNodes( 2000 );
+		HierarchyBuilder.buildCompleteHierarchy( null, nodes, false, false );
+
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			for ( boolean useSubtree : new boolean[] { false, true } ) {
+				HierarchyBuilder.recalculateCentroids( nodes, useSubtree );
+				List<double[]> expected = new ArrayList<>();
+				for ( BasicNode node : nodes ) {
+					expected.add( node.getNodeRepresentation().getData() );
+					node.setRepresentation( null );
+				}
+
+				HierarchyBuilder.recalculateCentroids( nodes, useSubtree, pool, 10 );
+				for ( int i = 0; i < nodes.size(); ++i ) {
+					Assert.assertArrayEquals( nodes.get( i ).getId(), expected.get( i ), nodes.get( i ).getNodeRepresentation().getData(), 0 );
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return nodes with random ids, at most 5 levels below the root, each with up to 3 instances.
+	 *         The root is not included.
+	 */
+	private static List<BasicNode> createRandomNodes( int count )
+	{
+		return createRandomNodes( count, 0 );
+	}
+
+	/**
+	 * @param magnitudes
+	 *            values of each instance are scaled by a random power of ten, from {@code -magnitudes}
+	 *            to {@code magnitudes}
+	 * @see #createRandomNodes(int)
+	 */
+	private static List<BasicNode> createRandomNodes( int count, int magnitudes )
+	{
+		List<BasicNode> result = new ArrayList<>();
+		Random random = new Random( 0 );
+		for ( int i = 0; i < count; ++i ) {
+			StringBuilder id = new StringBuilder( Constants.ROOT_ID );
+			for ( int depth = random.nextInt( 5 ); depth > 0; --depth ) {
+				id.append( '.' ).append( random.nextInt( 3 ) );
+			}
+			BasicNode node = new BasicNode( id.toString() + "." + i, null, true );
+			for ( int j = random.nextInt( 4 ); j > 0; --j ) {
+				double scale = magnitudes == 0 ? 1 : Math.pow( 10, random.nextInt( 2 * magnitudes + 1 ) - magnitudes );
+				double[] data = { random.nextGaussian() * scale, random.nextDouble() * scale };
+				node.addInstance( new BasicInstance( null, node.getId(), data, null ) );
+			}
+			result.add( node );
+		}
+		return result;
+	}
 }
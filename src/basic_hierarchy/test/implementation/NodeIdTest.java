@@ -0,0 +1,80 @@
+package basic_hierarchy.test.implementation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import basic_hierarchy.common.NodeId;
+
+
+public class NodeIdTest
+{
+	@Test
+	public void parsedIdExposesSegmentsAndAncestors()
+	{
+		NodeId id = NodeId.parse( "gen.0.12.3" );
+
+		Assert.assertEquals( 3, id.getDepth() );
+		Assert.assertEquals( 12, id.getSegment( 1 ) );
+		Assert.assertEquals( 3, id.getLastSegment() );
+		Assert.assertEquals( "gen.0.12.3", id.toString() );
+
+		NodeId parent = id.getParent();
+		Assert.assertEquals( "gen.0.12", parent.toString() );
+		Assert.assertEquals( NodeId.parse( "gen.0.12" ), parent );
+		Assert.assertEquals( NodeId.parse( "gen.0.12" ).hashCode(), parent.hashCode() );
+		Assert.assertTrue( parent.isParentOf( id ) );
+		Assert.assertTrue( id.getAncestor( 1 ).isAncestorOf( id ) );
+		Assert.assertFalse( id.isAncestorOf( id ) );
+		Assert.assertEquals( "gen", id.getAncestor( 0 ).toString() );
+		Assert.assertNull( id.getAncestor( 0 ).getParent() );
+
+		Assert.assertEquals( "gen.0.12.5", parent.getChild( 5 ).toString() );
+		Assert.assertEquals( id, parent.getChild( 3 ) );
+
+		// The prefix is not a part of the id.
+		Assert.assertEquals( id, NodeId.parse( "GEN.0.12.3" ) );
+		Assert.assertEquals( "GEN.0", NodeId.parse( "GEN.0.12.3" ).getAncestor( 1 ).toString() );
+	}
+
+	@Test
+	public void parseGeneratedRejectsInvalidIds()
+	{
+		Assert.assertEquals( NodeId.parse( "gen.0.1" ), NodeId.parseGenerated( "gen.0.1" ) );
+
+		for ( String invalid : new String[] { "gen", "gen.", "gen.0.", "gen..0", "gen.0.a", "Gen.0", "root.0" } ) {
+			Assert.assertNull( invalid, NodeId.parseGenerated( invalid ) );
+		}
+
+		try {
+			NodeId.parseGenerated( "gen.0.99999999999" );
+			Assert.fail();
+		}
+		catch ( NumberFormatException e ) {
+			// Expected.
+		}
+	}
+
+	@Test
+	public void idsAreOrderedBySegments()
+	{
+		List<String> expected = Arrays.asList( "gen.0", "gen.0.1", "gen.0.1.0", "gen.0.2", "gen.0.10", "gen.1" );
+
+		List<NodeId> ids = new ArrayList<>();
+		for ( String id : expected ) {
+			ids.add( NodeId.parse( id ) );
+		}
+		Collections.reverse( ids );
+		Collections.sort( ids );
+
+		List<String> sorted = new ArrayList<>();
+		for ( NodeId id : ids ) {
+			sorted.add( id.toString() );
+		}
+		Assert.assertEquals( expected, sorted );
+	}
+}
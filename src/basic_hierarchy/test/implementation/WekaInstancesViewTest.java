@@ -0,0 +1,167 @@
+package basic_hierarchy.test.implementation;
+
+import java.lang.reflect.Field;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import basic_hierarchy.common.Constants;
+import basic_hierarchy.common.InstanceStorage;
+import basic_hierarchy.common.WekaInstancesView;
+import basic_hierarchy.implementation.BasicHierarchy;
+import basic_hierarchy.implementation.BasicNode;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.Node;
+import basic_hierarchy.test.TestCommon;
+import weka.core.FastVector;
+import weka.core.Instances;
+
+
+public class WekaInstancesViewTest
+{
+	@Test
+	public void viewPresentsNodesClassesAndFeatures()
+	{
+		Hierarchy hierarchy = TestCommon.getTwoGroupsHierarchy();
+		Instances view = new WekaInstancesView( hierarchy );
+
+		Assert.assertEquals( 4, view.numAttributes() );
+		Assert.assertEquals( 4, view.numInstances() );
+		Assert.assertEquals( -1, view.classIndex() );
+
+		String[][] expected = {
+			{ "gen.0", "gen.0", "1", "2" },
+			{ "gen.0", "gen.0", "3", "4" },
+			{ "gen.0.0", "gen.0.0", "1.5", "2.5" },
+			{ "gen.0.0", "gen.0", "3.5", "4.5" },
+		};
+		String[] rows = { "gen.0,gen.0,1,2", "gen.0,gen.0,3,4", "gen.0.0,gen.0.0,1.5,2.5", "gen.0.0,gen.0,3.5,4.5" };
+		for ( int i = 0; i < expected.length; ++i ) {
+			weka.core.Instance instance = view.instance( i );
+			Assert.assertEquals( expected[i][0], instance.stringValue( Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE ) );
+			Assert.assertEquals( expected[i][1], instance.stringValue( Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE ) );
+			Assert.assertEquals( Double.parseDouble( expected[i][2] ), instance.value( 2 ), 0 );
+			Assert.assertEquals( Double.parseDouble( expected[i][3] ), instance.value( 3 ), 0 );
+			Assert.assertEquals( rows[i], instance.toString() );
+		}
+
+		Instances subtree = new WekaInstancesView( hierarchy, hierarchy.getRoot().getChildren().getFirst() );
+		Assert.assertEquals( 2, subtree.numInstances() );
+		Assert.assertEquals( 1, subtree.attribute( Constants.INDEX_OF_ASSIGN_CLASS_IN_WEKA_INSTANCE ).numValues() );
+		Assert.assertEquals( "gen.0", subtree.instance( 1 ).stringValue( Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE ) );
+	}
+
+	@Test
+	public void viewReadsEveryStorage()
+	{
+		for ( InstanceStorage storage : InstanceStorage.values() ) {
+			LinkedList<Instance> instances = new LinkedList<Instance>();
+			instances.add( storage.createInstance( "a", Constants.ROOT_ID, new double[] { 0, 1.5, 0, -2 }, null ) );
+			instances.add( storage.createInstance( "b", Constants.ROOT_ID, new double[] { 3, 0, 0, 0 }, "x" ) );
+			BasicNode root = new BasicNode( Constants.ROOT_ID, null, new LinkedList<Node>(), instances, false );
+			LinkedList<Node> groups = new LinkedList<Node>();
+			groups.add( root );
+			Hierarchy hierarchy = new BasicHierarchy( root, groups, new HashMap<String, Integer>(), 2 );
+
+			Instances view = new WekaInstancesView( hierarchy );
+			Assert.assertArrayEquals( new double[] { 0, Double.NaN, 0, 1.5, 0, -2 }, view.instance( 0 ).toDoubleArray(), 0 );
+			Assert.assertTrue( view.instance( 0 ).isMissing( Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE ) );
+			Assert.assertEquals( "x", view.instance( 1 ).stringValue( Constants.INDEX_OF_GROUND_TRUTH_IN_WEKA_INSTANCE ) );
+			Assert.assertEquals( 3, view.instance( 1 ).value( 2 ), 0 );
+			Assert.assertEquals( 0, view.instance( 1 ).value( 5 ), 0 );
+		}
+	}
+
+	@Test
+	public void changesAreNotReflectedInHierarchy()
+	{
+		Hierarchy hierarchy = TestCommon.getTwoGroupsHierarchy();
+		Instances view = new WekaInstancesView( hierarchy );
+
+		view.instance( 0 ).setValue( 2, 10 );
+		Assert.assertEquals( 10, view.instance( 0 ).value( 2 ), 0 );
+		Assert.assertEquals( 1, hierarchy.getRoot().getNodeInstances().getFirst().getData()[0], 0 );
+
+		Instances copy = new Instances( view );
+		copy.instance( 1 ).setValue( 3, 20 );
+		Assert.assertEquals( 4, view.instance( 1 ).value( 3 ), 0 );
+
+		view.deleteAttributeAt( 2 );
+		Assert.assertEquals( 3, view.numAttributes() );
+		Assert.assertEquals( 4.5, view.instance( 3 ).value( 2 ), 0 );
+		Assert.assertEquals( 2, hierarchy.getRoot().getNodeInstances().getFirst().getData().length );
+	}
+
+	@Test
+	public void copyConstructorSeesValues()
+	{
+		Hierarchy hierarchy = TestCommon.getTwoGroupsHierarchy();
+		Instances view = new WekaInstancesView( hierarchy );
+
+		weka.core.Instance copy = new weka.core.Instance( view.instance( 0 ) );
+		Assert.assertArrayEquals( view.instance( 0 ).toDoubleArray(), copy.toDoubleArray(), 0 );
+		Assert.assertEquals( 2, copy.value( 3 ), 0 );
+
+		copy.setValue( 3, 20 );
+		Assert.assertEquals( 2, view.instance( 0 ).value( 3 ), 0 );
+
+		Enumeration<?> instances = view.enumerateInstances();
+		instances.nextElement();
+		copy = new weka.core.Instance( (weka.core.Instance)instances.nextElement() );
+		Assert.assertEquals( 4, copy.value( 3 ), 0 );
+		Assert.assertEquals( 4.5, new weka.core.Instance( view.lastInstance() ).value( 3 ), 0 );
+	}
+
+	@Test
+	public void retrievedValuesAreNotKeptByView() throws Exception
+	{
+		Hierarchy hierarchy = TestCommon.getTwoGroupsHierarchy();
+		Instances view = new WekaInstancesView( hierarchy );
+
+		// Weka needs the node and class values in front of the features, so each retrieval copies the values.
+		Assert.assertNotSame( view.instance( 0 ), view.instance( 0 ) );
+		Assert.assertEquals( 0, getKeptValueCount( view ) );
+
+		Enumeration<?> instances = view.enumerateInstances();
+		while ( instances.hasMoreElements() ) {
+			Assert.assertNotNull( instances.nextElement() );
+		}
+		for ( int i = 0; i < view.numInstances(); ++i ) {
+			view.instance( i ).value( 2 );
+		}
+		Assert.assertEquals( 0, getKeptValueCount( view ) );
+
+		// Only changed instances are kept, and changes made through separate retrievals are combined.
+		weka.core.Instance first = view.instance( 1 );
+		weka.core.Instance second = view.instance( 1 );
+		first.setValue( 2, 10 );
+		second.setValue( 3, 20 );
+		Assert.assertEquals( 1, getKeptValueCount( view ) );
+		Assert.assertSame( view.instance( 1 ), view.instance( 1 ) );
+		Assert.assertArrayEquals( new double[] { 0, 0, 10, 20 }, view.instance( 1 ).toDoubleArray(), 0 );
+	}
+
+	/**
+	 * @return number of instances stored by the view which hold an array of values
+	 */
+	private static int getKeptValueCount( Instances view ) throws Exception
+	{
+		Field instancesField = Instances.class.getDeclaredField( "m_Instances" );
+		instancesField.setAccessible( true );
+		Field valuesField = weka.core.Instance.class.getDeclaredField( "m_AttValues" );
+		valuesField.setAccessible( true );
+
+		FastVector instances = (FastVector)instancesField.get( view );
+		int result = 0;
+		for ( int i = 0; i < instances.size(); ++i ) {
+			if ( valuesField.get( instances.elementAt( i ) ) != null ) {
+				++result;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,318 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.common.InstanceStorage;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.InstanceConsumer;
+import basic_hierarchy.interfaces.Node;
+import basic_hierarchy.interfaces.ProgressListener;
+import basic_hierarchy.reader.GeneratedARFFReader;
+import weka.core.Instances;
+
+
+public class GeneratedARFFReaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.arff" );
+
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( input ), "UTF-8" ) ) {
+			writer.write( "@relation test\n\n" );
+			writer.write( "@attribute class {gen.0,gen.0.0,gen.0.1,gen.0.1.0}\n" );
+			writer.write( "@attribute trueclass {gen.0,gen.0.0,gen.0.1,gen.0.1.0}\n" );
+			writer.write( "@attribute name string\n" );
+			writer.write( "@attribute x numeric\n" );
+			writer.write( "@attribute y numeric\n\n" );
+			writer.write( "@data\n" );
+
+			String[] ids = { "gen.0", "gen.0.0", "gen.0.1", "gen.0.1.0" };
+			for ( int i = 0; i < 3000; ++i ) {
+				String id = ids[i * ids.length / 3000];
+				writer.write( id + "," + ids[i % ids.length] + ",i" + i + "," + ( i * 0.5 ) + "," + ( -i ) + "\n" );
+			}
+		}
+	}
+
+	@Test
+	public void streamMatchesLoad() throws Exception
+	{
+		List<String> streamed = stream( input );
+
+		Assert.assertEquals( 3000, streamed.size() );
+		Assert.assertEquals( load( input ), streamed );
+	}
+
+	@Test
+	public void compressedInputMatchesPlain() throws Exception
+	{
+		List<String> expected = load( input );
+
+		File gzip = ReaderTestCommon.gzip( input, folder.newFile( "input.arff.gz" ) );
+		Assert.assertEquals( expected, load( gzip ) );
+		Assert.assertEquals( expected, stream( gzip ) );
+
+		File zip = ReaderTestCommon.zip( input, folder.newFile( "input.zip" ) );
+		Assert.assertEquals( expected, load( zip ) );
+		Assert.assertEquals( expected, stream( zip ) );
+	}
+
+	@Test
+	public void floatStorageRoundsFeatures() throws Exception
+	{
+		GeneratedARFFReader reader = new GeneratedARFFReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, false, false, true );
+
+		reader.setInstanceStorage( InstanceStorage.FLOAT );
+		ReaderTestCommon.assertFloatStorage( expected, reader.load( input.getPath(), true, true, false, false, true ) );
+	}
+
+	@Test
+	public void asyncLoadMatchesLoad() throws Exception
+	{
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final long[] last = { -1, -1, -1 };
+			Future<Hierarchy> future = new GeneratedARFFReader().loadAsync(
+				executor, input.getPath(), true, true, false, false, false,
+				new ProgressListener() {
+					@Override
+					public void progress( long bytesRead, long totalBytes, long rowsRead )
+					{
+						last[0] = bytesRead;
+						last[1] = totalBytes;
+						last[2] = rowsRead;
+					}
+				}
+			);
+
+			List<String> loaded = new ArrayList<>();
+			for ( Instance instance : future.get().getRoot().getSubtreeInstances() ) {
+				loaded.add( describe( instance.getNodeId(), instance.getTrueClass(), instance.getInstanceName(), instance.getData() ) );
+			}
+
+			Assert.assertEquals( load( input ), loaded );
+			Assert.assertArrayEquals( new long[] { input.length(), input.length(), 3000 }, last );
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void rejectedHeaderIsReported() throws Exception
+	{
+		File dated = folder.newFile( "dated.arff" );
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( dated ), "UTF-8" ) ) {
+			writer.write( "@relation test\n\n" );
+			writer.write( "@attribute class {gen.0}\n" );
+			writer.write( "@attribute when date \"yyyy-MM-dd\"\n\n" );
+			writer.write( "@data\n" );
+			writer.write( "gen.0,\"2016-01-01\"\n" );
+		}
+
+		try {
+			new GeneratedARFFReader().load( dated.getPath(), false, false, false, false, false );
+			Assert.fail();
+		}
+		catch ( IOException e ) {
+			Assert.assertTrue( e.getMessage(), e.getMessage().contains( "Unsupported type" ) );
+		}
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			new GeneratedARFFReader().loadAsync( executor, dated.getPath(), false, false, false, false, false, null ).get();
+			Assert.fail();
+		}
+		catch ( ExecutionException e ) {
+			Assert.assertTrue( e.getCause() instanceof IOException );
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void inaccessibleFileIsReported() throws Exception
+	{
+		String[] paths = { new File( folder.getRoot(), "missing.arff" ).getPath(), folder.getRoot().getPath() };
+		for ( String path : paths ) {
+			try {
+				new GeneratedARFFReader().load( path, false, false, false, false, false );
+				Assert.fail( path );
+			}
+			catch ( IOException e ) {
+				Assert.assertTrue( e.getMessage(), e.getMessage().contains( path ) );
+			}
+		}
+	}
+
+	@Test
+	public void parsedValuesMatchWeka() throws Exception
+	{
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( input ), "UTF-8" ) ) {
+			writer.write( "% A comment.\n@RELATION 'quoted relation'\n\n" );
+			writer.write( "@ATTRIBUTE class {gen.0, 'gen.0.0', \"gen.0.1\"}\n" );
+			writer.write( "@attribute trueclass {gen.0,gen.0.0,gen.0.1}\n" );
+			writer.write( "@attribute name string\n" );
+			writer.write( "@attribute 'first feature' REAL\n" );
+			writer.write( "@attribute kind {low,high}\n" );
+			writer.write( "@attribute count integer\n" );
+			writer.write( "\n@data\n" );
+			writer.write( "gen.0,gen.0,'a, b',1.5,high,3\n" );
+			writer.write( "% Another comment.\n" );
+			writer.write( "'gen.0.0' , gen.0.1 , \"c \\\"d\\\"\" , ? , low , -2\n" );
+			writer.write( "gen.0.1,gen.0,'?',1e-3,?,7\n" );
+		}
+
+		List<String> expected = new ArrayList<>();
+		try ( Reader reader = new InputStreamReader( new FileInputStream( input ), "UTF-8" ) ) {
+			Instances data = new Instances( reader );
+			for ( int i = 0; i < data.numInstances(); ++i ) {
+				weka.core.Instance instance = data.instance( i );
+				double[] values = { instance.value( 3 ), instance.value( 4 ), instance.value( 5 ) };
+				expected.add( describe( instance.stringValue( 0 ), instance.stringValue( 1 ), instance.stringValue( 2 ), values ) );
+			}
+		}
+
+		Assert.assertEquals( expected, load( input ) );
+		Assert.assertEquals( expected, stream( input ) );
+
+		Hierarchy hierarchy = new GeneratedARFFReader().load( input.getPath(), true, true, false, false, false );
+		Assert.assertArrayEquals( new String[] { "first feature", "kind", "count" }, hierarchy.getDataNames() );
+	}
+
+	@Test
+	public void idsDifferingInCaseShareNode() throws Exception
+	{
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( input ), "UTF-8" ) ) {
+			writer.write( "@relation test\n" );
+			writer.write( "@attribute class string\n" );
+			writer.write( "@attribute x numeric\n" );
+			writer.write( "@data\n" );
+			writer.write( "Gen.0,1\ngen.0.1,2\nGEN.0,3\nGEN.0.1,4\ngen.0.1,5\n" );
+		}
+
+		Hierarchy hierarchy = new GeneratedARFFReader().load( input.getPath(), false, false, false, false, false );
+
+		Assert.assertEquals( 2, hierarchy.getNumberOfGroups() );
+		Assert.assertEquals( "Gen.0", hierarchy.getRoot().getId() );
+		Assert.assertEquals( 2, hierarchy.getRoot().getNodeInstances().size() );
+
+		Node child = hierarchy.getRoot().getChildren().getFirst();
+		Assert.assertEquals( "gen.0.1", child.getId() );
+		Assert.assertEquals( 3, child.getNodeInstances().size() );
+		for ( Instance instance : child.getNodeInstances() ) {
+			Assert.assertEquals( "gen.0.1", instance.getNodeId() );
+		}
+	}
+
+	@Test
+	public void sparseRowsMatchDenseRows() throws Exception
+	{
+		File sparse = folder.newFile( "sparse.arff" );
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( sparse ), "UTF-8" ) ) {
+			boolean data = false;
+			for ( String line : Files.readAllLines( input.toPath(), StandardCharsets.UTF_8 ) ) {
+				if ( !data ) {
+					data = line.equals( "@data" );
+					writer.write( line + "\n" );
+					continue;
+				}
+
+				// Zeros and first labels of nominal attributes are implied by sparse rows, so they are omitted.
+				String[] values = line.split( "," );
+				StringBuilder row = new StringBuilder();
+				for ( int i = 0; i < values.length; ++i ) {
+					boolean implied = i < 2 ? values[i].equals( "gen.0" ) : i > 2 && Double.parseDouble( values[i] ) == 0;
+					if ( !implied ) {
+						row.append( row.length() == 0 ? "{" : ", " ).append( i ).append( ' ' ).append( values[i] );
+					}
+				}
+				writer.write( row.append( "}\n" ).toString() );
+			}
+		}
+
+		List<String> expected = load( input );
+		Assert.assertEquals( expected, load( sparse ) );
+		Assert.assertEquals( expected, stream( sparse ) );
+
+		GeneratedARFFReader reader = new GeneratedARFFReader();
+		Hierarchy dense = reader.load( input.getPath(), true, true, false, false, true );
+		reader.setInstanceStorage( InstanceStorage.SPARSE );
+		for ( File file : new File[] { input, sparse } ) {
+			Hierarchy loaded = reader.load( file.getPath(), true, true, false, false, true );
+			Assert.assertEquals( dense.getNumberOfGroups(), loaded.getNumberOfGroups() );
+			for ( int i = 0; i < dense.getNumberOfGroups(); ++i ) {
+				Node expectedNode = dense.getGroups()[i];
+				Node node = loaded.getGroups()[i];
+				Assert.assertEquals( expectedNode.getId(), node.getId() );
+				Assert.assertArrayEquals(
+					expectedNode.getNodeRepresentation().getData(), node.getNodeRepresentation().getData(), 1e-9
+				);
+			}
+		}
+	}
+
+	private static List<String> load( File file ) throws IOException
+	{
+		Hierarchy hierarchy = new GeneratedARFFReader().load( file.getPath(), true, true, false, false, false );
+
+		List<String> loaded = new ArrayList<>();
+		for ( Instance instance : hierarchy.getRoot().getSubtreeInstances() ) {
+			loaded.add( describe( instance.getNodeId(), instance.getTrueClass(), instance.getInstanceName(), instance.getData() ) );
+		}
+		return loaded;
+	}
+
+	private static List<String> stream( File file ) throws IOException
+	{
+		final List<String> streamed = new ArrayList<>();
+		new GeneratedARFFReader().stream(
+			file.getPath(), true, true, false,
+			new InstanceConsumer() {
+				@Override
+				public void consume( String nodeId, String trueClass, String instanceName, double[] data )
+				{
+					streamed.add( describe( nodeId, trueClass, instanceName, data ) );
+				}
+			}
+		);
+		return streamed;
+	}
+
+	private static String describe( String nodeId, String trueClass, String instanceName, double[] data )
+	{
+		return nodeId + ";" + trueClass + ";" + instanceName + ";" + Arrays.toString( data );
+	}
+}
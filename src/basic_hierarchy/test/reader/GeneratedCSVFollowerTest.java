@@ -0,0 +1,168 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedList;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.implementation.BasicInstance;
+import basic_hierarchy.implementation.BasicNode;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.Node;
+import basic_hierarchy.reader.GeneratedCSVFollower;
+import basic_hierarchy.reader.GeneratedCSVReader;
+
+
+public class GeneratedCSVFollowerTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+	File followed;
+	byte[] contents;
+
+
+	@Before
+	public void setup() throws Exception
+	{
+		input = folder.newFile( "input.csv" );
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+		// Rows of new nodes with gaps in depth and breadth, out of order.
+		try ( OutputStream out = new FileOutputStream( input, true ) ) {
+			out.write( "gen.0.2.4.1;gen.0.2;x;1;2\ngen.0.1.3;gen.0.1;y;3;4\ngen.0;gen.0;z;5;6\n".getBytes( StandardCharsets.UTF_8 ) );
+		}
+
+		contents = Files.readAllBytes( input.toPath() );
+		followed = folder.newFile( "followed.csv" );
+	}
+
+	@Test
+	public void followedHierarchyMatchesReload() throws Exception
+	{
+		assertFollowMatchesReload( true, true );
+	}
+
+	@Test
+	public void followedHierarchyMatchesReloadWithoutFixingBreadthGaps() throws Exception
+	{
+		assertFollowMatchesReload( false, false );
+	}
+
+	@Test
+	public void idsDifferingOnlyByLeadingZerosReferToSameNode() throws Exception
+	{
+		String first = "class;true;name;x;y\ngen.0;gen.0;a;1;2\ngen.0.1;gen.0.1;b;2;3\n";
+		String second = "gen.0.01;gen.0.1;c;3;4\ngen.00.1.0;gen.0.1;d;4;5\ngen.0.001.00;gen.0.1;e;5;6\n";
+		ReaderTestCommon.writeFile( followed, first );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader( false );
+		GeneratedCSVFollower follower = reader.follow( followed.getPath(), true, true, true, false, true );
+		follower.poll();
+
+		ReaderTestCommon.writeFile( followed, first, second );
+		Hierarchy actual = follower.poll();
+		Assert.assertEquals( 3, actual.getNumberOfGroups() );
+		Assert.assertEquals( "gen.0.1", actual.getGroups()[1].getId() );
+		Assert.assertEquals( 2, actual.getGroups()[1].getNodeInstances().size() );
+		Assert.assertEquals( "gen.00.1.0", actual.getGroups()[2].getId() );
+		Assert.assertSame( actual.getGroups()[1], actual.getGroups()[2].getParent() );
+
+		Hierarchy expected = reader.load( followed.getPath(), true, true, true, false, true );
+		ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+	}
+
+	@Test
+	public void pollDoesNotReadPreviouslyLoadedInstances() throws Exception
+	{
+		assertPollReadsOnlyNewInstances( true, true );
+		assertPollReadsOnlyNewInstances( false, false );
+	}
+
+	private void assertPollReadsOnlyNewInstances( boolean fixBreadthGaps, boolean useSubtree ) throws Exception
+	{
+		GeneratedCSVReader reader = new GeneratedCSVReader( false );
+		GeneratedCSVFollower follower = reader.follow( followed.getPath(), true, true, true, fixBreadthGaps, useSubtree );
+
+		int half = lastRowEnd( contents.length / 2 );
+		try ( OutputStream out = new FileOutputStream( followed ) ) {
+			out.write( contents, 0, half );
+		}
+		Hierarchy hierarchy = follower.poll();
+
+		// Replace loaded instances with ones counting reads of their feature values.
+		final int[] reads = new int[1];
+		for ( Node node : hierarchy.getGroups() ) {
+			LinkedList<Instance> counted = new LinkedList<Instance>();
+			for ( Instance instance : node.getNodeInstances() ) {
+				counted.add(
+					new BasicInstance( instance.getInstanceName(), instance.getNodeId(), instance.getData(), instance.getTrueClass() ) {
+						@Override
+						public double[] getData()
+						{
+							++reads[0];
+							return super.getData();
+						}
+					}
+				);
+			}
+			( (BasicNode)node ).setInstances( counted );
+		}
+		reads[0] = 0;
+
+		try ( OutputStream out = new FileOutputStream( followed, true ) ) {
+			out.write( contents, half, contents.length - half );
+		}
+		Hierarchy actual = follower.poll();
+		Assert.assertEquals( 0, reads[0] );
+
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, fixBreadthGaps, useSubtree );
+		ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+	}
+
+	private void assertFollowMatchesReload( boolean fixBreadthGaps, boolean useSubtree ) throws Exception
+	{
+		GeneratedCSVReader reader = new GeneratedCSVReader( false );
+		GeneratedCSVFollower follower = reader.follow( followed.getPath(), true, true, true, fixBreadthGaps, useSubtree );
+
+		// Header only, and then parts of the file ending in the middle of a row.
+		int[] ends = { 0, 10, contents.length / 3, contents.length / 2, contents.length - 30, contents.length };
+		for ( int end : ends ) {
+			try ( OutputStream out = new FileOutputStream( followed ) ) {
+				out.write( contents, 0, end );
+			}
+
+			Hierarchy actual = follower.poll();
+			int consumed = lastRowEnd( end );
+			Assert.assertEquals( consumed, follower.getOffset() );
+
+			File complete = folder.newFile();
+			try ( OutputStream out = new FileOutputStream( complete ) ) {
+				out.write( contents, 0, consumed );
+			}
+			if ( consumed > 0 ) {
+				Hierarchy expected = reader.load( complete.getPath(), true, true, true, fixBreadthGaps, useSubtree );
+				ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+			}
+		}
+	}
+
+	private int lastRowEnd( int end )
+	{
+		for ( int i = end - 1; i >= 0; --i ) {
+			if ( contents[i] == '\n' ) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+}
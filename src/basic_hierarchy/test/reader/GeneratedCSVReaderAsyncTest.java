@@ -0,0 +1,162 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.ProgressListener;
+import basic_hierarchy.reader.GeneratedCSVReader;
+
+
+public class GeneratedCSVReaderAsyncTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+	}
+
+	@Test
+	public void asyncLoadReportsProgress() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, false, true );
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		try {
+			final long[] last = { -1, -1, -1 };
+			ProgressListener listener = new ProgressListener() {
+				@Override
+				public void progress( long bytesRead, long totalBytes, long rowsRead )
+				{
+					Assert.assertTrue( bytesRead >= last[0] && rowsRead >= last[2] );
+					last[0] = bytesRead;
+					last[1] = totalBytes;
+					last[2] = rowsRead;
+				}
+			};
+
+			Future<Hierarchy> future = reader.loadAsync( executor, input.getPath(), true, true, true, false, true, listener );
+			ReaderTestCommon.assertHierarchiesEqual( expected, future.get() );
+			Assert.assertArrayEquals( new long[] { input.length(), input.length(), 40000 }, last );
+
+			last[0] = last[1] = last[2] = -1;
+			reader.setForkJoinPool( pool );
+			future = reader.loadAsync( executor, input.getPath(), true, true, true, false, true, listener );
+			ReaderTestCommon.assertHierarchiesEqual( expected, future.get() );
+			Assert.assertArrayEquals( new long[] { input.length(), input.length(), 40000 }, last );
+		}
+		finally {
+			pool.shutdown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void asyncLoadStopsWhenCancelled() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final CountDownLatch started = new CountDownLatch( 1 );
+			final long[] rows = { 0 };
+			Future<Hierarchy> future = new GeneratedCSVReader().loadAsync(
+				executor, input.getPath(), true, true, true, false, true,
+				new ProgressListener() {
+					@Override
+					public void progress( long bytesRead, long totalBytes, long rowsRead )
+					{
+						rows[0] = rowsRead;
+						started.countDown();
+						try {
+							// Give the test time to cancel the load.
+							Thread.sleep( 1000 );
+						}
+						catch ( InterruptedException e ) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}
+			);
+
+			started.await();
+			Assert.assertTrue( future.cancel( true ) );
+			executor.shutdown();
+			Assert.assertTrue( executor.awaitTermination( 5, TimeUnit.SECONDS ) );
+			Assert.assertTrue( rows[0] < 40000 );
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void asyncLoadStopsWhenCancelledWhileSorting() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		reader.setExternalSortMemoryBudget( 1 << 16 );
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final CountDownLatch started = new CountDownLatch( 1 );
+			final long[] progress = { -1, -1 };
+			Future<Hierarchy> future = reader.loadAsync(
+				executor, input.getPath(), true, true, true, false, true,
+				new ProgressListener() {
+					@Override
+					public void progress( long bytesRead, long totalBytes, long rowsRead )
+					{
+						if ( progress[0] < 0 ) {
+							progress[0] = bytesRead;
+							progress[1] = rowsRead;
+						}
+						started.countDown();
+						try {
+							// Give the test time to cancel the load.
+							Thread.sleep( 1000 );
+						}
+						catch ( InterruptedException e ) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}
+			);
+
+			started.await();
+			Assert.assertTrue( future.cancel( true ) );
+			executor.shutdown();
+			Assert.assertTrue( executor.awaitTermination( 5, TimeUnit.SECONDS ) );
+
+			// Progress has been reported by the sort, which reads bytes, but leaves counting rows to the load.
+			Assert.assertTrue( progress[0] > 0 && progress[0] < input.length() );
+			Assert.assertEquals( 0, progress[1] );
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+}
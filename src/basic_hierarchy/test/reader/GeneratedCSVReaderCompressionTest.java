@@ -0,0 +1,148 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.ProgressListener;
+import basic_hierarchy.reader.GeneratedCSVReader;
+
+
+public class GeneratedCSVReaderCompressionTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+	}
+
+	@Test( timeout = 60000 )
+	public void compressedLoadStopsEarly() throws Exception
+	{
+		// Large enough for the decompressed data to fill all buffers ahead of the parser.
+		ReaderTestCommon.writeGeneratedFile( input, 200000, "gen.0;gen.0;invalid;x;1\n" );
+		File gzip = ReaderTestCommon.gzip( input, folder.newFile( "large.csv.gz" ) );
+
+		try {
+			new GeneratedCSVReader().load( gzip.getPath(), true, true, true, false, true );
+			Assert.fail();
+		}
+		catch ( RuntimeException e ) {
+			// Expected - closing the input must not wait for the rest of the file to be decompressed.
+		}
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final CountDownLatch started = new CountDownLatch( 1 );
+			Future<Hierarchy> future = new GeneratedCSVReader().loadAsync(
+				executor, gzip.getPath(), true, true, true, false, true,
+				new ProgressListener() {
+					@Override
+					public void progress( long bytesRead, long totalBytes, long rowsRead )
+					{
+						started.countDown();
+						try {
+							Thread.sleep( 1000 );
+						}
+						catch ( InterruptedException e ) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}
+			);
+
+			started.await();
+			Assert.assertTrue( future.cancel( true ) );
+			executor.shutdown();
+			Assert.assertTrue( executor.awaitTermination( 5, TimeUnit.SECONDS ) );
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void compressedLoadMatchesPlain() throws Exception
+	{
+		ReaderTestCommon.writeFile(
+			input,
+			"class;true;name;x;y\r\n",
+			"gen.0;gen.0;a;1.0;2\r\n",
+			"gen.0;gen.0.1;b;-0.5;1e3\r\n",
+			"gen.0.0;gen.0;c;0.1;3.14159265358979323846\r\n",
+			"gen.0.0.1;gen.0;e;1.7976931348623157E308;4.9e-324\r\n",
+			"gen.0.2;gen.0.2;g;NaN;-Infinity"
+		);
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		reader.setUseMemoryMapping( true );
+		ReaderTestCommon.assertHierarchiesEqual(
+			reader.load( input.getPath(), true, true, true, true, true ),
+			reader.load( ReaderTestCommon.gzip( input, folder.newFile( "small.csv.gz" ) ).getPath(), true, true, true, true, true )
+		);
+
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+		File gzip = ReaderTestCommon.gzip( input, folder.newFile( "input.csv.gz" ) );
+		File zip = ReaderTestCommon.zip( input, folder.newFile( "input.zip" ) );
+
+		reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, false, true );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( gzip.getPath(), true, true, true, false, true ) );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( zip.getPath(), true, true, true, false, true ) );
+
+		reader.setUseMemoryMapping( true );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( gzip.getPath(), true, true, true, false, true ) );
+
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		try {
+			reader.setForkJoinPool( pool );
+			ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( zip.getPath(), true, true, true, false, true ) );
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void truncatedCompressedInputIsReported() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+		File gzip = ReaderTestCommon.gzip( input, folder.newFile( "input.csv.gz" ) );
+
+		byte[] bytes = Files.readAllBytes( gzip.toPath() );
+		try ( OutputStream out = new FileOutputStream( gzip ) ) {
+			out.write( bytes, 0, bytes.length / 2 );
+		}
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		reader.setUseMemoryMapping( true );
+		try {
+			reader.load( gzip.getPath(), true, true, true, false, true );
+			Assert.fail( "Expected truncated input to be reported." );
+		}
+		catch ( IOException e ) {
+			// Expected.
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.reader.GeneratedCSVReader;
+
+
+public class GeneratedCSVReaderInMemoryTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+	}
+
+	@Test
+	public void inMemoryAndStreamLoadsMatchFile() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+		File gzip = ReaderTestCommon.gzip( input, folder.newFile( "input.csv.gz" ) );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, false, true );
+
+		// Leading bytes outside of the buffer's position should be ignored.
+		byte[] contents = Files.readAllBytes( input.toPath() );
+		ByteBuffer buffer = ByteBuffer.allocate( contents.length + 3 );
+		buffer.put( new byte[] { 'x', 'y', 'z' } ).put( contents ).position( 3 );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( buffer, true, true, true, false, true ) );
+		Assert.assertEquals( 3, buffer.position() );
+
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( new FileInputStream( gzip ), true, true, true, false, true ) );
+		ReaderTestCommon.assertHierarchiesEqual(
+			expected,
+			reader.load( FileChannel.open( input.toPath(), StandardOpenOption.READ ), true, true, true, false, true )
+		);
+	}
+
+	@Test
+	public void bufferIsReadFromItsPositionToItsLimit() throws Exception
+	{
+		ReaderTestCommon.writeFile(
+			input,
+			"class;true;name;x;y\n",
+			"gen.0;gen.0;a;1;2\n",
+			"gen.0.1;gen.0.1;b;3;4\n",
+			"gen.0.1;gen.0;c;5;6"
+		);
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, false, true );
+
+		// Bytes before the position and after the limit would be invalid rows.
+		byte[] contents = Files.readAllBytes( input.toPath() );
+		byte[] prefix = "gen.x;;;\n".getBytes( StandardCharsets.UTF_8 );
+		byte[] suffix = "\ngen.y;;;".getBytes( StandardCharsets.UTF_8 );
+		byte[] bytes = new byte[prefix.length + contents.length + suffix.length];
+		System.arraycopy( prefix, 0, bytes, 0, prefix.length );
+		System.arraycopy( contents, 0, bytes, prefix.length, contents.length );
+		System.arraycopy( suffix, 0, bytes, prefix.length + contents.length, suffix.length );
+
+		ByteBuffer direct = ByteBuffer.allocateDirect( bytes.length );
+		direct.put( bytes ).position( prefix.length ).limit( prefix.length + contents.length );
+		ByteBuffer[] buffers = {
+			ByteBuffer.wrap( bytes, prefix.length, contents.length ),
+			ByteBuffer.wrap( bytes, prefix.length, contents.length ).asReadOnlyBuffer(),
+			direct,
+		};
+
+		for ( ByteBuffer buffer : buffers ) {
+			// The buffer is left as it was, so it can be loaded again.
+			for ( int i = 0; i < 2; ++i ) {
+				ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( buffer, true, true, true, false, true ) );
+				Assert.assertEquals( prefix.length, buffer.position() );
+				Assert.assertEquals( prefix.length + contents.length, buffer.limit() );
+			}
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.reader.GeneratedCSVReader;
+import basic_hierarchy.reader.ParseErrorReport;
+
+
+public class GeneratedCSVReaderLenientTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+	}
+
+	@Test
+	public void lenientLoadSkipsAndReportsInvalidRows() throws Exception
+	{
+		ReaderTestCommon.writeFile(
+			input,
+			"class;true;name;x;y\n",
+			"gen.0;gen.0;a;1;2\n",
+			"gen.0;gen.0;b;1;oops\n",
+			"gen.x;gen.0;c;1;2\n",
+			"gen.x;gen.0;d;1;2\n",
+			"gen.0.1;gen.0.1;e;3\n",
+			"gen.0.1;gen.0.1;f;3;4\n"
+		);
+		File valid = folder.newFile( "valid.csv" );
+		ReaderTestCommon.writeFile( valid, "class;true;name;x;y\n", "gen.0;gen.0;a;1;2\n", "gen.0.1;gen.0.1;f;3;4\n" );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( valid.getPath(), true, true, true, false, true );
+
+		ParseErrorReport report = new ParseErrorReport( 10 );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( input.getPath(), true, true, true, false, true, report ) );
+
+		Assert.assertEquals( 4, report.getErrorCount() );
+		Assert.assertFalse( report.isTruncated() );
+		long[] lineNumbers = { 3, 4, 5, 6 };
+		long[] byteOffsets = { 38, 59, 77, 95 };
+		for ( int i = 0; i < lineNumbers.length; ++i ) {
+			Assert.assertEquals( lineNumbers[i], report.getErrors().get( i ).getLineNumber() );
+			Assert.assertEquals( byteOffsets[i], report.getErrors().get( i ).getByteOffset() );
+		}
+		Assert.assertTrue( report.getErrors().get( 0 ).getReason().contains( "'oops'" ) );
+	}
+
+	@Test
+	public void lenientLoadReportIsSameInEveryMode() throws Exception
+	{
+		String invalidRow = "gen.0;gen.0;bad;1;2;3\n";
+		ReaderTestCommon.writeGeneratedFile( input, 40000, invalidRow );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		ParseErrorReport expected = new ParseErrorReport( 2 );
+		Hierarchy hierarchy = reader.load( input.getPath(), true, true, true, false, true, expected );
+
+		Assert.assertEquals( 3, expected.getErrorCount() );
+		Assert.assertTrue( expected.isTruncated() );
+		Assert.assertEquals( 2, expected.getErrors().size() );
+		Assert.assertEquals( 40000 - 3, hierarchy.getOverallNumberOfInstances() );
+
+		byte[] contents = Files.readAllBytes( input.toPath() );
+		for ( int i = 0; i < expected.getErrors().size(); ++i ) {
+			ParseErrorReport.ParseError error = expected.getErrors().get( i );
+			Assert.assertEquals( 10000 * ( i + 1 ) + 2, error.getLineNumber() );
+
+			String row = new String( contents, (int)error.getByteOffset(), invalidRow.length(), StandardCharsets.UTF_8 );
+			Assert.assertEquals( invalidRow, row );
+		}
+
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			reader.setForkJoinPool( pool );
+			ParseErrorReport actual = new ParseErrorReport( 2 );
+			ReaderTestCommon.assertHierarchiesEqual( hierarchy, reader.load( input.getPath(), true, true, true, false, true, actual ) );
+			assertReportsEqual( expected, actual );
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		reader.setExternalSortMemoryBudget( 1 << 16 );
+		ParseErrorReport actual = new ParseErrorReport( 2 );
+		ReaderTestCommon.assertHierarchiesEqual( hierarchy, reader.load( input.getPath(), true, true, true, false, true, actual ) );
+		assertReportsEqual( expected, actual );
+	}
+
+	@Test
+	public void lenientParallelLoadReportsRowsAroundChunkBounds() throws Exception
+	{
+		// Rows of equal length, in a file large enough to be split into 8 chunks of equal size on 2 threads.
+		int rowCount = 1 << 16;
+		int chunkCount = 8;
+		String header = "class;true;name;x;y\n";
+		String validRow = "gen.0;gen.0;i%07d;%07d;2.5\n";
+		String invalidRow = "gen.0;gen.0;i%07d;%07d;2.x\n";
+		int rowLength = String.format( Locale.ROOT, validRow, 0, 0 ).length();
+
+		// Invalidate the last rows before and the first rows after each chunk bound.
+		TreeSet<Integer> invalidRows = new TreeSet<Integer>();
+		for ( int i = 1; i < chunkCount; ++i ) {
+			for ( int row = rowCount / chunkCount * i - 2; row < rowCount / chunkCount * i + 2; ++row ) {
+				invalidRows.add( row );
+			}
+		}
+
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( input ), "UTF-8" ) ) {
+			writer.write( header );
+			for ( int i = 0; i < rowCount; ++i ) {
+				writer.write( String.format( Locale.ROOT, invalidRows.contains( i ) ? invalidRow : validRow, i, i % 1000 ) );
+			}
+		}
+		Assert.assertEquals( header.length() + (long)rowCount * rowLength, input.length() );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		ParseErrorReport expected = new ParseErrorReport( invalidRows.size() );
+		Hierarchy hierarchy = reader.load( input.getPath(), true, true, true, false, true, expected );
+
+		Assert.assertEquals( rowCount - invalidRows.size(), hierarchy.getOverallNumberOfInstances() );
+		Assert.assertEquals( invalidRows.size(), expected.getErrorCount() );
+		Assert.assertFalse( expected.isTruncated() );
+		int i = 0;
+		for ( int row : invalidRows ) {
+			ParseErrorReport.ParseError error = expected.getErrors().get( i++ );
+			Assert.assertEquals( row + 2, error.getLineNumber() );
+			Assert.assertEquals( header.length() + (long)row * rowLength, error.getByteOffset() );
+		}
+
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		try {
+			reader.setForkJoinPool( pool );
+			for ( boolean useMemoryMapping : new boolean[] { false, true } ) {
+				reader.setUseMemoryMapping( useMemoryMapping );
+
+				ParseErrorReport actual = new ParseErrorReport( invalidRows.size() );
+				ReaderTestCommon.assertHierarchiesEqual( hierarchy, reader.load( input.getPath(), true, true, true, false, true, actual ) );
+				assertReportsEqual( expected, actual );
+
+				// The limit keeps the first rows of the file, though they come from several chunks.
+				actual = new ParseErrorReport( 10 );
+				reader.load( input.getPath(), true, true, true, false, true, actual );
+				Assert.assertEquals( invalidRows.size(), actual.getErrorCount() );
+				Assert.assertTrue( actual.isTruncated() );
+				Assert.assertEquals( 10, actual.getErrors().size() );
+				for ( int j = 0; j < 10; ++j ) {
+					Assert.assertEquals( expected.getErrors().get( j ).toString(), actual.getErrors().get( j ).toString() );
+				}
+
+				actual = new ParseErrorReport( 0 );
+				reader.load( input.getPath(), true, true, true, false, true, actual );
+				Assert.assertEquals( invalidRows.size(), actual.getErrorCount() );
+				Assert.assertTrue( actual.getErrors().isEmpty() );
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void assertReportsEqual( ParseErrorReport expected, ParseErrorReport actual )
+	{
+		Assert.assertEquals( expected.getErrorCount(), actual.getErrorCount() );
+		Assert.assertEquals( expected.getErrors().size(), actual.getErrors().size() );
+		for ( int i = 0; i < expected.getErrors().size(); ++i ) {
+			Assert.assertEquals( expected.getErrors().get( i ).toString(), actual.getErrors().get( i ).toString() );
+		}
+	}
+}
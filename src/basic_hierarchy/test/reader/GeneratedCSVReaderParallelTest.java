@@ -0,0 +1,79 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.reader.GeneratedCSVReader;
+
+
+public class GeneratedCSVReaderParallelTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+	}
+
+	@Test
+	public void parallelLoadMatchesSequential() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, false, true );
+
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			reader.setForkJoinPool( pool );
+			Hierarchy actual = reader.load( input.getPath(), true, true, true, false, true );
+
+			ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void parallelLoadReportsFirstError() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, "gen.0;gen.0;bad;1;2;3\n" );
+
+		String expected = null;
+		try {
+			new GeneratedCSVReader().load( input.getPath(), true, true, true, false, false );
+			Assert.fail( "Expected the invalid row to be reported." );
+		}
+		catch ( RuntimeException e ) {
+			expected = e.getMessage();
+		}
+
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			GeneratedCSVReader reader = new GeneratedCSVReader();
+			reader.setForkJoinPool( pool );
+			reader.load( input.getPath(), true, true, true, false, false );
+			Assert.fail( "Expected the invalid row to be reported." );
+		}
+		catch ( RuntimeException e ) {
+			Assert.assertEquals( expected, e.getMessage() );
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
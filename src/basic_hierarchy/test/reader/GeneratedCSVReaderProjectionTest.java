@@ -0,0 +1,143 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.reader.GeneratedCSVReader;
+import basic_hierarchy.reader.ParseErrorReport;
+
+
+public class GeneratedCSVReaderProjectionTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+	}
+
+	@Test
+	public void projectedLoadOnlyIncludesProjectedColumns() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy full = reader.load( input.getPath(), true, true, true, false, true );
+
+		reader.setProjectedColumns( 1, 0 );
+		assertProjection( full, reader.load( input.getPath(), true, true, true, false, true ), 1, 0 );
+
+		reader.setProjectedColumnNames( "y" );
+		reader.setUseMemoryMapping( true );
+		assertProjection( full, reader.load( input.getPath(), true, true, true, false, true ), 1 );
+
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		try {
+			reader.setForkJoinPool( pool );
+			assertProjection( full, reader.load( input.getPath(), true, true, true, false, true ), 1 );
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		reader = new GeneratedCSVReader();
+		reader.setProjectedColumnNames( "z" );
+		try {
+			reader.load( input.getPath(), true, true, true, false, true );
+			Assert.fail( "Expected missing column to be reported." );
+		}
+		catch ( RuntimeException e ) {
+			Assert.assertTrue( e.getMessage().contains( "'z'" ) );
+		}
+	}
+
+	@Test
+	public void skippedColumnsAreNotParsed() throws Exception
+	{
+		ReaderTestCommon.writeFile(
+			input,
+			"class;true;name;x;y;z\n",
+			"gen.0;gen.0;a;1.2.3;1;-\n",
+			"gen.0;gen.0;b;;2;1e\n",
+			"gen.0.1;gen.0.1;c;abc;3;NaNx\n",
+			"gen.0.1;gen.0.1;d;0x10;4;+\n"
+		);
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		reader.setProjectedColumnNames( "y" );
+		assertProjectedValues( reader, 1, 2, 3, 4 );
+
+		reader.setUseMemoryMapping( true );
+		assertProjectedValues( reader, 1, 2, 3, 4 );
+
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		try {
+			reader.setForkJoinPool( pool );
+			assertProjectedValues( reader, 1, 2, 3, 4 );
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		// Malformed values are still reported in projected columns.
+		reader = new GeneratedCSVReader();
+		reader.setProjectedColumns( 1, 2 );
+		try {
+			reader.load( input.getPath(), true, true, true, false, true );
+			Assert.fail( "Expected the invalid value to be reported." );
+		}
+		catch ( NumberFormatException e ) {
+			Assert.assertTrue( e.getMessage().contains( "'-'" ) );
+		}
+
+		ParseErrorReport report = new ParseErrorReport( 10 );
+		reader.setProjectedColumns( 1 );
+		reader.load( input.getPath(), true, true, true, false, true, report );
+		Assert.assertEquals( 0, report.getErrorCount() );
+	}
+
+	private void assertProjectedValues( GeneratedCSVReader reader, double... expected ) throws IOException
+	{
+		Hierarchy hierarchy = reader.load( input.getPath(), true, true, true, false, true );
+		Assert.assertArrayEquals( new String[] { "y" }, hierarchy.getDataNames() );
+
+		int i = 0;
+		for ( Instance instance : hierarchy.getRoot().getSubtreeInstances() ) {
+			Assert.assertArrayEquals( new double[] { expected[i++] }, instance.getData(), 0 );
+		}
+		Assert.assertEquals( expected.length, i );
+	}
+
+	private static void assertProjection( Hierarchy full, Hierarchy projected, int... columns )
+	{
+		Assert.assertEquals( columns.length, projected.getDataNames().length );
+		for ( int i = 0; i < columns.length; ++i ) {
+			Assert.assertEquals( full.getDataNames()[columns[i]], projected.getDataNames()[i] );
+		}
+
+		Iterator<Instance> it = projected.getRoot().getSubtreeInstances().iterator();
+		for ( Instance expected : full.getRoot().getSubtreeInstances() ) {
+			double[] data = it.next().getData();
+			Assert.assertEquals( columns.length, data.length );
+			for ( int i = 0; i < columns.length; ++i ) {
+				Assert.assertEquals( expected.getData()[columns[i]], data[i], 0 );
+			}
+		}
+		Assert.assertFalse( it.hasNext() );
+	}
+}
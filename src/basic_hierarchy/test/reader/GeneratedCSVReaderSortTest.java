@@ -0,0 +1,131 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.reader.GeneratedCSVReader;
+
+
+public class GeneratedCSVReaderSortTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+	}
+
+	@Test
+	public void unsortedLoadMatchesSorted() throws Exception
+	{
+		File sorted = folder.newFile( "sorted.csv" );
+		ReaderTestCommon.writeFile(
+			sorted,
+			"gen.0;gen.0;a;1;2\n",
+			"gen.0;gen.0;d;4;5\n",
+			"gen.0.1;gen.0.1;b;2;3\n",
+			"gen.0.1;gen.0.1;e;5;6\n",
+			"gen.0.1.0;gen.0.1;f;6;7\n",
+			"gen.0.2;gen.0;c;3;4\n"
+		);
+		ReaderTestCommon.writeFile(
+			input,
+			"gen.0.1.0;gen.0.1;f;6;7\n",
+			"gen.0;gen.0;a;1;2\n",
+			"gen.0.1;gen.0.1;b;2;3\n",
+			"gen.0.2;gen.0;c;3;4\n",
+			"gen.0;gen.0;d;4;5\n",
+			"gen.0.1;gen.0.1;e;5;6\n"
+		);
+
+		GeneratedCSVReader reader = new GeneratedCSVReader( false );
+		Hierarchy expected = reader.load( sorted.getPath(), true, true, false, true, true );
+		Hierarchy actual = reader.load( input.getPath(), true, true, false, true, true );
+		ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		try {
+			reader.setForkJoinPool( pool );
+			actual = reader.load( input.getPath(), true, true, false, true, true );
+			ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		try {
+			new GeneratedCSVReader( true ).load( input.getPath(), true, true, false, true, true );
+			Assert.fail( "Expected unsorted input to be reported." );
+		}
+		catch ( RuntimeException e ) {
+			Assert.assertTrue( e.getMessage().contains( "ascending order" ) );
+		}
+	}
+
+	@Test
+	public void externallySortedLoadMatchesSorted() throws Exception
+	{
+		File sorted = folder.newFile( "sorted.csv" );
+		ReaderTestCommon.writeGeneratedFile( sorted, 20000, null );
+
+		// Interleave rows of different nodes at random, keeping the order of rows within each node.
+		List<String> lines = Files.readAllLines( sorted.toPath(), StandardCharsets.UTF_8 );
+		Map<String, LinkedList<String>> linesByNode = new LinkedHashMap<>();
+		for ( String line : lines.subList( 1, lines.size() ) ) {
+			String id = line.substring( 0, line.indexOf( ';' ) );
+			if ( !linesByNode.containsKey( id ) ) {
+				linesByNode.put( id, new LinkedList<String>() );
+			}
+			linesByNode.get( id ).add( line );
+		}
+
+		List<LinkedList<String>> remaining = new ArrayList<>( linesByNode.values() );
+		Random random = new Random( 0 );
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( input ), "UTF-8" ) ) {
+			writer.write( lines.get( 0 ) + "\n" );
+			while ( !remaining.isEmpty() ) {
+				int i = random.nextInt( remaining.size() );
+				writer.write( remaining.get( i ).removeFirst() + "\n" );
+				if ( remaining.get( i ).isEmpty() ) {
+					remaining.remove( i );
+				}
+			}
+		}
+
+		Hierarchy expected = new GeneratedCSVReader().load( sorted.getPath(), true, true, true, false, true );
+
+		// Small enough to require several runs and more than one merge pass.
+		GeneratedCSVReader reader = new GeneratedCSVReader( true );
+		reader.setExternalSortMemoryBudget( 1 << 14 );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( input.getPath(), true, true, true, false, true ) );
+
+		// Large enough to sort in memory.
+		reader.setExternalSortMemoryBudget( 1 << 26 );
+		reader.setUseMemoryMapping( true );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( input.getPath(), true, true, true, false, true ) );
+	}
+}
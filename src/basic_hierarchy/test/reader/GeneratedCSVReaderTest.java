@@ -0,0 +1,187 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.common.InstanceStorage;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.InstanceConsumer;
+import basic_hierarchy.interfaces.Node;
+import basic_hierarchy.reader.GeneratedCSVReader;
+
+
+public class GeneratedCSVReaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+
+
+	@Before
+	public void setup() throws IOException
+	{
+		input = folder.newFile( "input.csv" );
+
+		ReaderTestCommon.writeFile(
+			input,
+			"class;true;name;x;y\r\n",
+			"gen.0;gen.0;a;1.0;2\r\n",
+			"gen.0;gen.0.1;b;-0.5;1e3\r\n",
+			"gen.0.0;gen.0;c;0.1;3.14159265358979323846\r\n",
+			"gen.0.0.1;gen.0.0.1;d;+7;-0.0\r\n",
+			"gen.0.0.1;gen.0;e;1.7976931348623157E308;4.9e-324\r\n",
+			"gen.0.2;gen.0.2;f;0.30000000000000004;  12 \r\n",
+			"gen.0.2;gen.0.2;g;NaN;-Infinity"
+		);
+	}
+
+	@Test
+	public void memoryMappedLoadMatchesDefault() throws Exception
+	{
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, true, true );
+
+		reader.setUseMemoryMapping( true );
+		Hierarchy actual = reader.load( input.getPath(), true, true, true, true, true );
+
+		ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+		Assert.assertEquals( 7, actual.getOverallNumberOfInstances() );
+		Assert.assertArrayEquals( new String[] { "x", "y" }, actual.getDataNames() );
+	}
+
+	@Test
+	public void memoryMappedLoadReportsInvalidValues() throws Exception
+	{
+		ReaderTestCommon.writeFile( input, "gen.0;1.0\n", "gen.0;1.0x\n" );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		reader.setUseMemoryMapping( true );
+
+		try {
+			reader.load( input.getPath(), false, false, false, false, false );
+			Assert.fail( "Expected the invalid value to be reported." );
+		}
+		catch ( NumberFormatException e ) {
+			Assert.assertTrue( e.getMessage().contains( "'1.0x'" ) );
+		}
+	}
+
+	@Test
+	public void idsDifferingOnlyByLeadingZerosReferToSameNode() throws Exception
+	{
+		ReaderTestCommon.writeFile(
+			input,
+			"gen.0;gen.0;a;1;2\n",
+			"gen.0.1;gen.0.1;b;2;3\n",
+			"gen.0.01;gen.0.1;c;3;4\n",
+			"gen.0.2;gen.0;d;4;5\n",
+			"gen.00.001;gen.0.1;e;5;6\n"
+		);
+
+		Hierarchy hierarchy = new GeneratedCSVReader().load( input.getPath(), true, true, false, false, false );
+		Assert.assertEquals( 3, hierarchy.getNumberOfGroups() );
+
+		Node node = hierarchy.getGroups()[1];
+		Assert.assertEquals( "gen.0.1", node.getId() );
+		Assert.assertEquals( 3, node.getNodeInstances().size() );
+		for ( Instance instance : node.getNodeInstances() ) {
+			Assert.assertEquals( "gen.0.1", instance.getNodeId() );
+		}
+		Assert.assertArrayEquals( new double[] { 10 / 3.0, 13 / 3.0 }, node.getNodeRepresentation().getData(), 0 );
+
+		// Rows of each node other than the first one spell its id with leading zeros, also in other chunks.
+		File padded = folder.newFile( "padded.csv" );
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+		List<String> lines = Files.readAllLines( input.toPath(), StandardCharsets.UTF_8 );
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( padded ), "UTF-8" ) ) {
+			String lastId = null;
+			for ( String line : lines ) {
+				String id = line.substring( 0, line.indexOf( ';' ) );
+				writer.write( ( id.equals( lastId ) ? id.replace( ".", ".0" ) + line.substring( id.length() ) : line ) + "\n" );
+				lastId = id;
+			}
+		}
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, true, true );
+		ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( padded.getPath(), true, true, true, true, true ) );
+
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			reader.setForkJoinPool( pool );
+			ReaderTestCommon.assertHierarchiesEqual( expected, reader.load( padded.getPath(), true, true, true, true, true ) );
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void streamVisitsEveryInstanceInFileOrder() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 5000, null );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy hierarchy = reader.load( input.getPath(), true, true, true, false, false );
+
+		final Iterator<Instance> expected = hierarchy.getRoot().getSubtreeInstances().iterator();
+		final int[] count = { 0 };
+
+		reader.setUseMemoryMapping( true );
+		String[] dataNames = reader.stream(
+			input.getPath(), true, true, true,
+			new InstanceConsumer() {
+				@Override
+				public void consume( String nodeId, String trueClass, String instanceName, double[] data )
+				{
+					Instance instance = expected.next();
+					Assert.assertEquals( instance.getNodeId(), nodeId );
+					Assert.assertEquals( instance.getTrueClass(), trueClass );
+					Assert.assertEquals( instance.getInstanceName(), instanceName );
+					Assert.assertArrayEquals( instance.getData(), data, 0 );
+					count[0]++;
+				}
+			}
+		);
+
+		Assert.assertEquals( 5000, count[0] );
+		Assert.assertArrayEquals( hierarchy.getDataNames(), dataNames );
+	}
+
+	@Test
+	public void floatStorageRoundsFeatures() throws Exception
+	{
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+
+		GeneratedCSVReader reader = new GeneratedCSVReader();
+		Hierarchy expected = reader.load( input.getPath(), true, true, true, false, true );
+
+		reader.setInstanceStorage( InstanceStorage.FLOAT );
+		ReaderTestCommon.assertFloatStorage( expected, reader.load( input.getPath(), true, true, true, false, true ) );
+
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		try {
+			reader.setForkJoinPool( pool );
+			ReaderTestCommon.assertFloatStorage( expected, reader.load( input.getPath(), true, true, true, false, true ) );
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
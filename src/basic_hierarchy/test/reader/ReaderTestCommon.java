@@ -0,0 +1,160 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+
+import basic_hierarchy.common.Constants;
+import basic_hierarchy.implementation.FloatInstance;
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.Node;
+import basic_hierarchy.test.TestCommon;
+
+
+/**
+ * Input files and assertions shared by the reader tests.
+ */
+public class ReaderTestCommon
+{
+	static void writeFile( File file, String... lines ) throws IOException
+	{
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) ) {
+			for ( String line : lines ) {
+				writer.write( line );
+			}
+		}
+	}
+
+	/**
+	 * Writes a file with the specified number of rows, sorted by node id, optionally replacing
+	 * every 10000th row with the specified invalid row.
+	 */
+	static void writeGeneratedFile( File file, int rowCount, String invalidRow ) throws IOException
+	{
+		Random random = new Random( 0 );
+
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) ) {
+			writer.write( "class;true;name;x;y\n" );
+
+			String id = "gen.0";
+			for ( int i = 0; i < rowCount; ++i ) {
+				if ( random.nextInt( 200 ) == 0 && id.split( "\\." ).length < 6 ) {
+					id = id + "." + random.nextInt( 3 );
+				}
+				else if ( random.nextInt( 200 ) == 0 && id.length() > Constants.ROOT_ID.length() ) {
+					// Move on to a later sibling of the node or of its parent, keeping the rows sorted.
+					if ( random.nextBoolean() && id.split( "\\." ).length > 3 ) {
+						id = id.substring( 0, id.lastIndexOf( '.' ) );
+					}
+					int separator = id.lastIndexOf( '.' );
+					id = id.substring( 0, separator + 1 ) + ( Integer.parseInt( id.substring( separator + 1 ) ) + 1 );
+				}
+
+				if ( invalidRow != null && i > 0 && i % 10000 == 0 ) {
+					writer.write( invalidRow );
+				}
+				else {
+					writer.write(
+						id + ";" + id + ";i" + i + ";" + random.nextGaussian() + ";" + random.nextInt( 1000 ) / 8.0 + "\n"
+					);
+				}
+			}
+		}
+	}
+
+	static File gzip( File source, File target ) throws IOException
+	{
+		try ( OutputStream out = new GZIPOutputStream( new FileOutputStream( target ) ) ) {
+			Files.copy( source.toPath(), out );
+		}
+		return target;
+	}
+
+	static File zip( File source, File target ) throws IOException
+	{
+		try ( ZipOutputStream out = new ZipOutputStream( new FileOutputStream( target ) ) ) {
+			out.putNextEntry( new ZipEntry( "data/" ) );
+			out.closeEntry();
+			out.putNextEntry( new ZipEntry( "data/" + source.getName() ) );
+			Files.copy( source.toPath(), out );
+			out.closeEntry();
+		}
+		return target;
+	}
+
+	static void assertHierarchiesEqual( Hierarchy expected, Hierarchy actual )
+	{
+		Assert.assertEquals( expected.getOverallNumberOfInstances(), actual.getOverallNumberOfInstances() );
+		Assert.assertArrayEquals( expected.getDataNames(), actual.getDataNames() );
+		Assert.assertArrayEquals( expected.getClasses(), actual.getClasses() );
+		Assert.assertArrayEquals( expected.getClassesCount(), actual.getClassesCount() );
+		Assert.assertEquals( expected.getNumberOfGroups(), actual.getNumberOfGroups() );
+		Assert.assertEquals( expected.getRoot().getId(), actual.getRoot().getId() );
+
+		for ( int i = 0; i < expected.getNumberOfGroups(); ++i ) {
+			Node expectedNode = expected.getGroups()[i];
+			Node actualNode = actual.getGroups()[i];
+
+			Assert.assertEquals( expectedNode.getId(), actualNode.getId() );
+			Assert.assertEquals( expectedNode.getChildren().size(), actualNode.getChildren().size() );
+			Assert.assertArrayEquals(
+				expectedNode.getNodeRepresentation().getData(),
+				actualNode.getNodeRepresentation().getData(),
+				TestCommon.DOUBLE_COMPARISION_DELTA
+			);
+			Assert.assertEquals( expectedNode.getNodeInstances().size(), actualNode.getNodeInstances().size() );
+
+			Iterator<Instance> it = actualNode.getNodeInstances().iterator();
+			for ( Instance expectedInstance : expectedNode.getNodeInstances() ) {
+				Instance actualInstance = it.next();
+				Assert.assertEquals( expectedInstance.getInstanceName(), actualInstance.getInstanceName() );
+				Assert.assertEquals( expectedInstance.getNodeId(), actualInstance.getNodeId() );
+				Assert.assertEquals( expectedInstance.getTrueClass(), actualInstance.getTrueClass() );
+				Assert.assertArrayEquals( expectedInstance.getData(), actualInstance.getData(), 0 );
+			}
+		}
+	}
+
+	static void assertFloatStorage( Hierarchy expected, Hierarchy actual )
+	{
+		Assert.assertEquals( expected.getNumberOfGroups(), actual.getNumberOfGroups() );
+
+		for ( int i = 0; i < expected.getNumberOfGroups(); ++i ) {
+			Node expectedNode = expected.getGroups()[i];
+			Node actualNode = actual.getGroups()[i];
+
+			Assert.assertEquals( expectedNode.getId(), actualNode.getId() );
+			Assert.assertArrayEquals(
+				expectedNode.getNodeRepresentation().getData(),
+				actualNode.getNodeRepresentation().getData(),
+				1e-6
+			);
+
+			Iterator<Instance> it = actualNode.getNodeInstances().iterator();
+			for ( Instance expectedInstance : expectedNode.getNodeInstances() ) {
+				FloatInstance actualInstance = (FloatInstance)it.next();
+				Assert.assertEquals( expectedInstance.getInstanceName(), actualInstance.getInstanceName() );
+
+				double[] expectedData = expectedInstance.getData();
+				float[] actualData = actualInstance.getFloatData();
+				Assert.assertEquals( expectedData.length, actualData.length );
+				for ( int j = 0; j < expectedData.length; ++j ) {
+					Assert.assertEquals( (float)expectedData[j], actualData[j], 0 );
+				}
+			}
+			Assert.assertFalse( it.hasNext() );
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.interfaces.Instance;
+import basic_hierarchy.interfaces.Node;
+import basic_hierarchy.reader.GeneratedCSVReader;
+import basic_hierarchy.reader.SamplingReader;
+
+
+public class SamplingReaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+	Hierarchy full;
+
+
+	@Before
+	public void setup() throws Exception
+	{
+		input = folder.newFile( "input.csv" );
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+		full = new GeneratedCSVReader().load( input.getPath(), true, true, true, false, false );
+	}
+
+	@Test
+	public void perNodeSampleIsBoundedAndCountsAreExact() throws Exception
+	{
+		Hierarchy sampled = SamplingReader.perNode( new GeneratedCSVReader(), 10, 0 )
+			.load( input.getPath(), true, true, true, false, false );
+
+		assertExactCounts( sampled );
+		for ( int i = 0; i < full.getNumberOfGroups(); ++i ) {
+			Node node = sampled.getGroups()[i];
+			Assert.assertEquals( Math.min( 10, node.getNodeInstanceCount() ), node.getNodeInstances().size() );
+		}
+	}
+
+	@Test
+	public void fractionSampleHasExpectedSize() throws Exception
+	{
+		Hierarchy sampled = SamplingReader.fraction( new GeneratedCSVReader(), 0.1, 0 )
+			.load( input.getPath(), true, true, true, false, false );
+
+		assertExactCounts( sampled );
+		int size = sampled.getRoot().getSubtreeInstances().size();
+		Assert.assertTrue( "Unexpected sample size: " + size, size > 3600 && size < 4400 );
+	}
+
+	private void assertExactCounts( Hierarchy sampled )
+	{
+		Assert.assertEquals( full.getOverallNumberOfInstances(), sampled.getOverallNumberOfInstances() );
+		Assert.assertArrayEquals( full.getDataNames(), sampled.getDataNames() );
+		Assert.assertArrayEquals( full.getClasses(), sampled.getClasses() );
+		Assert.assertArrayEquals( full.getClassesCount(), sampled.getClassesCount() );
+		Assert.assertEquals( full.getNumberOfGroups(), sampled.getNumberOfGroups() );
+
+		for ( int i = 0; i < full.getNumberOfGroups(); ++i ) {
+			Node expected = full.getGroups()[i];
+			Node actual = sampled.getGroups()[i];
+
+			Assert.assertEquals( expected.getId(), actual.getId() );
+			Assert.assertEquals( expected.getChildren().size(), actual.getChildren().size() );
+			Assert.assertEquals( expected.getNodeInstances().size(), actual.getNodeInstanceCount() );
+
+			// Sampled instances should appear in the same order as in the file.
+			Iterator<Instance> it = expected.getNodeInstances().iterator();
+			for ( Instance instance : actual.getNodeInstances() ) {
+				Instance match = it.next();
+				while ( !match.getInstanceName().equals( instance.getInstanceName() ) ) {
+					match = it.next();
+				}
+				Assert.assertArrayEquals( match.getData(), instance.getData(), 0 );
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package basic_hierarchy.test.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import basic_hierarchy.interfaces.Hierarchy;
+import basic_hierarchy.reader.GeneratedCSVReader;
+import basic_hierarchy.reader.ShardedReader;
+
+
+public class ShardedReaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File input;
+	File shards;
+	ForkJoinPool pool;
+
+
+	@Before
+	public void setup() throws Exception
+	{
+		input = folder.newFile( "input.csv" );
+		ReaderTestCommon.writeGeneratedFile( input, 40000, null );
+		shards = folder.newFolder( "shards" );
+		pool = new ForkJoinPool( 4 );
+
+		// Split rows of the input file into consecutive shards, each with its own header.
+		List<String> lines = Files.readAllLines( input.toPath(), StandardCharsets.UTF_8 );
+		int shardCount = 4;
+		int rowsPerShard = ( lines.size() - 1 + shardCount - 1 ) / shardCount;
+		for ( int i = 0; i < shardCount; ++i ) {
+			File shard = new File( shards, "part-" + i + ".csv" );
+			try ( Writer writer = new OutputStreamWriter( new FileOutputStream( shard ), "UTF-8" ) ) {
+				writer.write( lines.get( 0 ) + "\n" );
+				for ( int row = 1 + i * rowsPerShard; row < Math.min( lines.size(), 1 + ( i + 1 ) * rowsPerShard ); ++row ) {
+					writer.write( lines.get( row ) + "\n" );
+				}
+			}
+		}
+	}
+
+	@After
+	public void teardown()
+	{
+		pool.shutdown();
+	}
+
+	@Test
+	public void shardedLoadMatchesSingleFile() throws Exception
+	{
+		Hierarchy expected = new GeneratedCSVReader().load( input.getPath(), true, true, true, false, true );
+		Hierarchy actual = new ShardedReader( new GeneratedCSVReader(), pool )
+			.load( shards.getPath(), true, true, true, false, true );
+
+		ReaderTestCommon.assertHierarchiesEqual( expected, actual );
+	}
+
+	@Test
+	public void mismatchedHeadersAreReported() throws Exception
+	{
+		ReaderTestCommon.writeFile( new File( shards, "part-9.csv" ), "class;true;name;x;z\n", "gen.0;gen.0;a;1;2\n" );
+
+		try {
+			new ShardedReader( new GeneratedCSVReader(), pool ).load( shards.getPath(), true, true, true, false, true );
+			Assert.fail( "Expected the mismatched headers to be reported." );
+		}
+		catch ( RuntimeException e ) {
+			Assert.assertTrue( e.getMessage().contains( "part-9.csv" ) );
+		}
+	}
+}